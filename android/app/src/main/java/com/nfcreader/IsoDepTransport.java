@@ -0,0 +1,32 @@
+package com.nfcreader;
+
+import android.nfc.tech.IsoDep;
+
+import java.io.IOException;
+
+/**
+ * {@link ApduTransport} sobre a conexão IsoDep de um cartão físico
+ */
+public class IsoDepTransport implements ApduTransport {
+
+    private final IsoDep isoDep;
+
+    public IsoDepTransport(IsoDep isoDep) {
+        this.isoDep = isoDep;
+    }
+
+    @Override
+    public byte[] transceive(byte[] command) throws IOException {
+        return isoDep.transceive(command);
+    }
+
+    @Override
+    public int getTimeout() {
+        return isoDep.getTimeout();
+    }
+
+    @Override
+    public void setTimeout(int timeoutMillis) {
+        isoDep.setTimeout(timeoutMillis);
+    }
+}
@@ -5,46 +5,96 @@ import android.nfc.NfcAdapter;
 import android.nfc.Tag;
 import android.nfc.tech.IsoDep;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import android.os.Vibrator;
 import android.content.Context;
 import android.os.VibrationEffect;
+import android.util.Base64;
 
-import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.ActivityEventListener;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
-import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 
-// Adicionar as bibliotecas EMV
-import com.github.devnied.emvnfccard.utils.TlvUtil;
-import com.payneteasy.tlv.BerTag;
-import com.payneteasy.tlv.BerTlv;
-import com.payneteasy.tlv.BerTlvParser;
-import com.payneteasy.tlv.BerTlvs;
-
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
 
-public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAdapter.ReaderCallback, ActivityEventListener, LifecycleEventListener {
+/**
+ * Módulo nativo de leitura NFC (TurboModule). A interface vem de NativeNfcReaderSpec, gerada
+ * pelo codegen a partir de app/services/NativeNfcReader.ts; os eventos saem pelos emissores
+ * tipados da spec. O resultado de cada leitura é codificado uma vez em {@link CardResultFrame}
+ * e o mesmo bloco vai para o evento onCardRead e para a promise. Por padrão o PAN não sai do
+ * nativo: o JS recebe o token, o PAN mascarado e o BIN. O token usa a chave do app
+ * (setPanTokenizationKey) ou, sem ela, uma chave aleatória do processo; o PAN em claro só chega
+ * ao JS com setClearPanResults(true).
+ */
+public class NfcReaderModule extends NativeNfcReaderSpec implements NfcAdapter.ReaderCallback, ActivityEventListener, LifecycleEventListener {
 
     private static final String TAG = "NfcReaderModule";
+    // no modo sessão, o mesmo cartão visto de novo dentro desta janela é ignorado
+    private static final long SESSION_DEBOUNCE_MILLIS = 2000;
+    // tempo para reaproximar o cartão perdido no meio da leitura antes de desistir
+    private static final int DEFAULT_TAG_LOST_GRACE_MILLIS = 5000;
     private final ReactApplicationContext reactContext;
     private NfcAdapter nfcAdapter;
-    private Promise readPromise;
-    private boolean isReading = false;
-    private boolean isProcessingTag = false;
+    // pedidos de leitura pendentes; quem tira um pedido daqui é o único a resolvê-lo ou rejeitá-lo.
+    // O lock do registro também guarda as trocas de estado que dependem de haver pedidos
+    private final ReadRequests<Promise> readRequests = new ReadRequests<>();
+    // IDLE, ARMED, READING, CANCELLING: trocas atômicas entre a thread do JS, a do callback NFC e o ciclo de vida
+    private final ReadSession readSession = new ReadSession();
+    // IsoDep da leitura em curso; fechado por stopCardReading para interromper o comando pendente
+    private volatile IsoDep activeIsoDep;
+    // campos e prazo do startReaderSession, somados aos dos pedidos a cada toque
+    private volatile int sessionFields = CardFields.NONE;
+    private volatile int sessionDeadlineMillis = 0;
+    // modo sessão: o reader mode continua ativo entre um cartão e outro
+    private volatile boolean sessionMode = false;
+    private byte[] lastTagId;
+    // token (nunca o PAN) do último cartão da sessão, para reconhecer a releitura
+    private String lastCardToken;
+    private long lastTagSeenAt;
+    private final EmvCardReader cardReader = new EmvCardReader();
+    private final ReaderStats readerStats = new ReaderStats();
+    // vibração, eventos e logs fora da thread do callback NFC
+    private final SideEffectExecutor sideEffects = new SideEffectExecutor("NfcReaderSideEffects");
+    // diário persistente das sessões; null se o arquivo não pôde ser aberto
+    private SessionJournal journal;
+    // captura opcional dos APDUs de cada leitura, para reproduzir na JVM
+    private volatile boolean captureTranscripts = false;
+    private volatile boolean captureMaskPan = true;
+    private volatile ApduTranscript lastTranscript;
+    // bloco binário do resultado, reaproveitado entre as leituras (só usado no callback NFC)
+    private final CardResultFrame resultFrame = new CardResultFrame();
+    // retomada da leitura quando o cartão sai do campo depois do GPO
+    private volatile boolean tagLostRecovery = true;
+    private volatile int tagLostGraceMillis = DEFAULT_TAG_LOST_GRACE_MILLIS;
+    // prazo da leitura suspensa; null quando não há leitura aguardando o cartão (guardado por this)
+    private Runnable suspendedReadExpiry;
+    // bandeira, PAN e registros entregues antes do fim da leitura, em poucos eventos por toque
+    private final ReadProgress readProgress = new ReadProgress(this::sendProgressEvent);
+    // o PAN é trocado por token ainda na thread da leitura (só usado nela); sem a chave do app
+    // vale uma chave aleatória do processo
+    private volatile PanTokenizer panTokenizer = PanTokenizer.withRandomKey();
+    // opt-in: o PAN em claro (e as respostas brutas, que o contêm) vão para o JS
+    private volatile boolean clearPanResults = false;
+    private volatile boolean rawRecordCapture = false;
+    // renova o estoque de Unpredictable Numbers na fila de efeitos, fora da leitura
+    private final Runnable prefetchUnpredictableNumbers = cardReader.getUnpredictableNumbers()::prefetch;
 
     public NfcReaderModule(ReactApplicationContext reactContext) {
         super(reactContext);
@@ -53,6 +103,21 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
         reactContext.addLifecycleEventListener(this);
         
         nfcAdapter = NfcAdapter.getDefaultAdapter(reactContext);
+        // desligado até o JS pedir (setReadProgressEvents)
+        readProgress.setMaxEvents(0);
+        cardReader.setProgressListener(readProgress);
+        cardReader.setCancellation(readSession::isCancelled);
+        // o PAN fica mascarado no rastreamento enquanto não for pedido em claro
+        cardReader.setMaskPanInTrace(true);
+        // semeia o SecureRandom antes do primeiro toque
+        sideEffects.post(prefetchUnpredictableNumbers);
+
+        try {
+            journal = new SessionJournal(new File(reactContext.getFilesDir(), "nfc-journal"), SessionJournal.DEFAULT_MAX_BYTES);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Diário de sessões indisponível", e);
+        }
+        cardReader.setResumeAfterTagLost(tagLostRecovery);
         
         // Registrar para ouvir eventos do MainActivity
         reactContext.addActivityEventListener(new ActivityEventListener() {
@@ -69,7 +134,7 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
                     NfcAdapter.ACTION_NDEF_DISCOVERED.equals(intent.getAction())) {
                     
                     Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
-                    if (tag != null && isReading) {
+                    if (tag != null && readSession.isActive()) {
                         Log.d(TAG, "Processando tag do intent onNewIntent");
                         onTagDiscovered(tag);
                     }
@@ -79,11 +144,6 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
     }
 
     @Override
-    public String getName() {
-        return "NfcReader";
-    }
-
-    @ReactMethod
     public void isSupported(final Promise promise) {
         if (nfcAdapter != null) {
             promise.resolve(true);
@@ -92,7 +152,7 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
         }
     }
 
-    @ReactMethod
+    @Override
     public void isEnabled(final Promise promise) {
         if (nfcAdapter != null && nfcAdapter.isEnabled()) {
             promise.resolve(true);
@@ -101,8 +161,51 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
         }
     }
 
-    @ReactMethod
-    public void startCardReading(final Promise promise) {
+    /**
+     * Pede a leitura de um cartão. fields lista os campos necessários (cardNumber, expiryDate,
+     * cardType); nulo ou vazio equivale a cardNumber + expiryDate. Vários chamadores podem pedir
+     * ao mesmo tempo: o primeiro arma o reader mode e os seguintes entram na mesma espera, cada
+     * um com seus campos e prazos. O toque lê o cartão uma vez, para a união dos campos pedidos,
+     * e a mesma resposta resolve todos os pedidos que ele atende.
+     *
+     * deadlineMillis é o prazo de cada toque, contado desde a descoberta da tag (com vários
+     * pedidos vale o menor); esgotado, a leitura falha com READ_TIMEOUT. timeoutMillis é quanto
+     * este pedido espera por um cartão: esgotado, só ele é rejeitado com READ_TIMEOUT. 0 desliga
+     * cada um deles. requestId identifica o pedido em cancelCardReading.
+     */
+    @Override
+    public void startCardReading(@Nullable ReadableArray fields, double deadlineMillis, double timeoutMillis, double requestId, final Promise promise) {
+        startReading(fields, deadlineMillis, timeoutMillis, (int) requestId, promise, false);
+    }
+
+    /**
+     * Inicia uma sessão contínua para cartões em sequência: o reader mode fica ativo entre
+     * os toques e cada cartão gera seu próprio evento onCardRead ou nfcReadingError. O mesmo
+     * cartão parado no campo é ignorado. A promise resolve com true quando a sessão está
+     * armada; a sessão termina em stopCardReading ou quando o app vai para segundo plano.
+     * Pedidos de startCardReading feitos durante a sessão são atendidos pelo próximo cartão.
+     */
+    @Override
+    public void startReaderSession(@Nullable ReadableArray fields, double deadlineMillis, final Promise promise) {
+        startReading(fields, deadlineMillis, 0, 0, promise, true);
+    }
+
+    /**
+     * Retira um pedido de startCardReading, rejeitado com READ_CANCELLED. Os outros pedidos
+     * continuam aguardando; sem nenhum (e fora do modo sessão) a leitura é parada.
+     */
+    @Override
+    public void cancelCardReading(double requestId) {
+        ReadRequests.Request<Promise> request = readRequests.remove((int) requestId);
+        if (request == null) {
+            return;
+        }
+        request.getHandle().reject("READ_CANCELLED", "Leitura cancelada");
+        stopReading(true);
+    }
+
+    private void startReading(@Nullable ReadableArray fields, double deadlineMillis, double timeoutMillis, final int requestId,
+            final Promise promise, boolean session) {
         Activity currentActivity = getCurrentActivity();
         if (currentActivity == null) {
             promise.reject("NO_ACTIVITY", "No activity found");
@@ -119,16 +222,51 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
             return;
         }
 
-        if (isReading) {
+        int required = parseRequiredFields(fields);
+        int deadline = (int) Math.min(Integer.MAX_VALUE, Math.max(0, deadlineMillis));
+        boolean armed;
+        boolean accepted;
+        synchronized (readRequests) {
+            armed = readSession.arm();
+            if (session) {
+                accepted = armed;
+                if (armed) {
+                    sessionFields = required;
+                    sessionDeadlineMillis = deadline;
+                    sessionMode = true;
+                }
+            } else {
+                // com a leitura armada ou em curso o pedido só entra na espera; durante o
+                // cancelamento não há toque que possa atendê-lo
+                accepted = armed || !readSession.isCancelled();
+                if (accepted) {
+                    if (armed) {
+                        sessionFields = CardFields.NONE;
+                        sessionDeadlineMillis = 0;
+                        sessionMode = false;
+                    }
+                    readRequests.add(new ReadRequests.Request<>(requestId, required, deadline, promise));
+                }
+            }
+        }
+        if (!accepted) {
             promise.reject("ALREADY_READING", "NFC card reading already in progress");
             return;
         }
+        if (!session && timeoutMillis > 0) {
+            final int timeout = (int) Math.min(Integer.MAX_VALUE, timeoutMillis);
+            sideEffects.postDelayed(() -> expireRequest(requestId, timeout), timeout);
+        }
+        if (!armed) {
+            Log.d(TAG, "Pedido " + requestId + " aguardando a leitura já armada (" + readRequests.size() + " pedidos)");
+            return;
+        }
 
         try {
-            this.readPromise = promise;
-            isReading = true;
+            lastTagId = null;
+            lastCardToken = null;
             
-            Log.d(TAG, "Iniciando leitura do cartão NFC");
+            Log.d(TAG, session ? "Iniciando sessão contínua de leitura NFC" : "Iniciando leitura do cartão NFC");
             
             
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
@@ -140,48 +278,664 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
                 
                 // Enviar evento indicando que a leitura começou
                 WritableMap startParams = Arguments.createMap();
-                startParams.putString("status", "waiting");
+                startParams.putString("status", session ? "session" : "waiting");
                 sendEvent("nfcReadingStarted", startParams);
+                if (session) {
+                    promise.resolve(true);
+                }
             } else {
-                promise.reject("SDK_TOO_OLD", "Reader mode not supported on this device");
+                failStart(session ? promise : null, "SDK_TOO_OLD", "Reader mode not supported on this device");
             }
         } catch (Exception ex) {
             Log.e(TAG, "Erro ao iniciar leitura NFC", ex);
-            promise.reject("START_FAILED", ex.getMessage());
-            stopCardReading();
+            // os pedidos são rejeitados aqui, não pelo stopCardReading
+            failStart(session ? promise : null, "START_FAILED", ex.getMessage());
+            readerStopped();
+        }
+    }
+
+    /**
+     * desfaz o arm de startReading e rejeita a sessão e todos os pedidos que entraram nela
+     */
+    private void failStart(@Nullable Promise sessionPromise, String code, String message) {
+        List<ReadRequests.Request<Promise>> pending;
+        synchronized (readRequests) {
+            readSession.cancel();
+            sessionMode = false;
+            pending = readRequests.takeAll();
+        }
+        if (sessionPromise != null) {
+            sessionPromise.reject(code, message);
         }
+        for (ReadRequests.Request<Promise> request : pending) {
+            request.getHandle().reject(code, message);
+        }
+    }
+
+    /**
+     * timeoutMillis do pedido esgotado sem cartão; os outros pedidos não são afetados
+     */
+    private void expireRequest(int requestId, int timeoutMillis) {
+        ReadRequests.Request<Promise> request = readRequests.remove(requestId);
+        if (request == null) {
+            return;
+        }
+        Log.d(TAG, "Pedido " + requestId + " sem cartão em " + timeoutMillis + " ms");
+        request.getHandle().reject("READ_TIMEOUT", "Nenhum cartão lido em " + timeoutMillis + " ms");
+        stopReading(true);
     }
 
-    @ReactMethod
+    private static int parseRequiredFields(@Nullable ReadableArray fields) {
+        if (fields == null || fields.size() == 0) {
+            return CardFields.DEFAULT;
+        }
+        int mask = CardFields.NONE;
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.getString(i);
+            int field = CardFields.fromName(name);
+            if (field == CardFields.NONE) {
+                Log.w(TAG, "Campo desconhecido ignorado: " + name);
+            }
+            mask |= field;
+        }
+        return mask != CardFields.NONE ? mask : CardFields.DEFAULT;
+    }
+
+    /**
+     * Para a leitura ou a sessão. Com um cartão sendo lido, a leitura é cancelada: o IsoDep é
+     * fechado para interromper o comando pendente e nenhum outro APDU é enviado. Todos os
+     * pedidos pendentes são rejeitados com READ_CANCELLED; para retirar só um, cancelCardReading.
+     */
+    @Override
     public void stopCardReading() {
-        if (isReading && nfcAdapter != null) {
-            Activity currentActivity = getCurrentActivity();
-            if (currentActivity != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-                nfcAdapter.disableReaderMode(currentActivity);
-                Log.d(TAG, "Leitura NFC interrompida");
+        stopReading(false);
+    }
+
+    /**
+     * @param unattendedOnly só para se ninguém mais aguarda o cartão: nenhum pedido pendente e
+     *                       fora do modo sessão
+     */
+    private void stopReading(boolean unattendedOnly) {
+        ReadSession.State previous;
+        List<ReadRequests.Request<Promise>> pending;
+        synchronized (readRequests) {
+            if (unattendedOnly && (sessionMode || !readRequests.isEmpty())) {
+                return;
             }
-            isReading = false;
-            
-            // Enviar evento indicando que a leitura foi interrompida
-            WritableMap stopParams = Arguments.createMap();
-            stopParams.putString("status", "stopped");
-            sendEvent("nfcReadingStopped", stopParams);
+            previous = readSession.cancel();
+            pending = readRequests.takeAll();
+        }
+        for (ReadRequests.Request<Promise> request : pending) {
+            request.getHandle().reject("READ_CANCELLED", "Leitura cancelada");
+        }
+        if (previous == ReadSession.State.IDLE || previous == ReadSession.State.CANCELLING) {
+            return;
+        }
+        cancelSuspendedRead();
+        if (previous == ReadSession.State.READING) {
+            IsoDep isoDep = activeIsoDep;
+            if (isoDep != null) {
+                closeIsoDep(isoDep);
+            }
+        }
+        readerStopped();
+    }
+
+    /**
+     * desliga o reader mode e avisa o JS; chamado uma vez por sessão, por quem a levou a IDLE
+     */
+    private void readerStopped() {
+        Activity currentActivity = getCurrentActivity();
+        if (nfcAdapter != null && currentActivity != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            nfcAdapter.disableReaderMode(currentActivity);
+            Log.d(TAG, "Leitura NFC interrompida");
+        }
+        sessionMode = false;
+        lastCardToken = null;
+
+        // Enviar evento indicando que a leitura foi interrompida
+        WritableMap stopParams = Arguments.createMap();
+        stopParams.putString("status", "stopped");
+        sendEvent("nfcReadingStopped", stopParams);
+    }
+
+    private static void closeIsoDep(IsoDep isoDep) {
+        try {
+            if (isoDep.isConnected()) {
+                isoDep.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao fechar IsoDep", e);
+        }
+    }
+
+    /**
+     * Define o nível do log de rastreamento da leitura: OFF, INFO, DEBUG ou VERBOSE.
+     * Com OFF (padrão) nenhuma mensagem é registrada nem formatada.
+     */
+    @Override
+    public void setTraceLevel(String level) {
+        try {
+            cardReader.getTrace().setLevel(TraceLog.Level.valueOf(level));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Nível de trace inválido: " + level);
+        }
+    }
+
+    /**
+     * Liga ou desliga a retomada da leitura quando o cartão sai do campo depois do GPO. Ligada
+     * (padrão, 5 s), a promise não é rejeitada na perda do cartão: o evento nfcReadSuspended
+     * pede para reaproximá-lo e, se ele voltar em até graceMillis, a leitura continua dos
+     * registros que faltavam sem novo GET PROCESSING OPTIONS (que incrementa o ATC do cartão).
+     */
+    @Override
+    public void setTagLostRecovery(boolean enabled, double graceMillis) {
+        tagLostGraceMillis = graceMillis > 0 ? (int) graceMillis : DEFAULT_TAG_LOST_GRACE_MILLIS;
+        tagLostRecovery = enabled;
+        cardReader.setResumeAfterTagLost(enabled);
+        if (!enabled) {
+            cancelSuspendedRead();
+        }
+    }
+
+    /**
+     * Bandeiras cujas aplicações são selecionadas primeiro em cartões com mais de uma aplicação
+     * (por exemplo ["Elo", "Visa"]); as demais seguem a prioridade anunciada pelo cartão
+     */
+    @Override
+    public void setPreferredBrands(ReadableArray brands) {
+        List<String> preferred = new ArrayList<>();
+        for (int i = 0; i < brands.size(); i++) {
+            preferred.add(brands.getString(i));
+        }
+        cardReader.setPreferredBrands(preferred);
+    }
+
+    /**
+     * Retorna o log de rastreamento da última leitura, formatado neste momento; o PAN vem
+     * mascarado a menos que setClearPanResults(true)
+     */
+    @Override
+    public void getTraceLog(final Promise promise) {
+        promise.resolve(cardReader.getTrace().render());
+    }
+
+    /**
+     * Liga ou desliga a captura dos APDUs de cada leitura (comando, resposta e tempos).
+     * Com maskPan os dígitos do PAN, exceto os 6 primeiros e os 4 últimos, são trocados por 0
+     * antes de gravar. A captura da última leitura fica disponível em getLastTranscript.
+     */
+    @Override
+    public void setTranscriptCapture(boolean enabled, boolean maskPan) {
+        captureMaskPan = maskPan;
+        captureTranscripts = enabled;
+        if (!enabled) {
+            lastTranscript = null;
+        }
+    }
+
+    /**
+     * Inclui no resultado de cada leitura as respostas brutas (TLV) do GPO e dos READ RECORD,
+     * que chegam ao JS como ArrayBuffer. As respostas contêm o PAN em claro, por isso só são
+     * capturadas com setClearPanResults(true).
+     */
+    @Override
+    public void setRawRecordCapture(boolean enabled) {
+        rawRecordCapture = enabled;
+        cardReader.setCaptureRecords(enabled && clearPanResults);
+    }
+
+    /**
+     * Opt-in para receber o PAN em claro no resultado e nos eventos de progresso, no lugar de
+     * cardToken, maskedPan e bin; também libera a captura de respostas brutas e o PAN em claro no
+     * getTraceLog. Desligado por padrão.
+     */
+    @Override
+    public void setClearPanResults(boolean enabled) {
+        clearPanResults = enabled;
+        cardReader.setCaptureRecords(rawRecordCapture && enabled);
+        cardReader.setMaskPanInTrace(!enabled);
+    }
+
+    /**
+     * Chave HMAC do app em base64 (pelo menos {@link PanTokenizer#MIN_KEY_BYTES} bytes), para
+     * que o mesmo cartão dê o mesmo token entre execuções; null volta à chave aleatória do
+     * processo. Resolve com true quando a chave do app está em uso.
+     */
+    @Override
+    public void setPanTokenizationKey(@Nullable String keyBase64, final Promise promise) {
+        if (keyBase64 == null) {
+            panTokenizer = PanTokenizer.withRandomKey();
+            promise.resolve(false);
+            return;
+        }
+        byte[] key = null;
+        try {
+            key = Base64.decode(keyBase64, Base64.DEFAULT);
+            panTokenizer = new PanTokenizer(key);
+            promise.resolve(true);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            Log.e(TAG, "Chave de tokenização inválida", e);
+            promise.reject("INVALID_TOKENIZATION_KEY", e.getMessage());
+        } finally {
+            if (key != null) {
+                Arrays.fill(key, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Dados da cobrança para o PDOL: amountMinor (valor em unidades mínimas da moeda),
+     * currencyCode e countryCode (ISO 4217 / ISO 3166 numéricos), transactionType (9C),
+     * timestampMillis e ttq opcional em hexadecimal (4 bytes). Os bytes são montados aqui, uma
+     * vez por cobrança; no toque o GPO só os copia. null volta aos valores padrão.
+     */
+    @Override
+    public void setTransactionContext(@Nullable ReadableMap context, final Promise promise) {
+        if (context == null) {
+            cardReader.setTransactionContext(null);
+            promise.resolve(false);
+            return;
+        }
+        try {
+            String ttq = context.hasKey("ttq") && !context.isNull("ttq") ? context.getString("ttq") : null;
+            cardReader.setTransactionContext(new TransactionContext(
+                    (long) context.getDouble("amountMinor"),
+                    (int) context.getDouble("currencyCode"),
+                    (int) context.getDouble("countryCode"),
+                    (int) context.getDouble("transactionType"),
+                    (long) context.getDouble("timestampMillis"),
+                    ttq != null ? Nibbles.fromHex(ttq) : null));
+            sideEffects.post(prefetchUnpredictableNumbers);
+            promise.resolve(true);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Contexto de transação inválido", e);
+            promise.reject("INVALID_TRANSACTION_CONTEXT", e.getMessage());
+        }
+    }
+
+    /**
+     * Liga os eventos nfcReadProgress com no máximo maxEvents por toque (0 desliga): bandeira
+     * assim que o AID é selecionado, PAN e validade assim que encontrados e, com a captura de
+     * registros ligada, as respostas brutas lidas até ali.
+     */
+    @Override
+    public void setReadProgressEvents(double maxEvents) {
+        readProgress.setMaxEvents((int) maxEvents);
+    }
+
+    /**
+     * Transcript binário da última leitura capturada (ApduTranscript) em base64, ou null
+     */
+    @Override
+    public void getLastTranscript(final Promise promise) {
+        ApduTranscript transcript = lastTranscript;
+        promise.resolve(transcript != null ? Base64.encodeToString(transcript.toByteArray(), Base64.NO_WRAP) : null);
+    }
+
+    /**
+     * Registra novas AIDs (ou substitui as existentes) no registro de bandeiras. Cada item é
+     * { aid, brand, product, strategy? } com aid em hexadecimal (o prefixo pode ser só o RID) e
+     * strategy GPO_TRACK2 ou READ_RECORDS. Resolve com a quantidade de entradas do registro.
+     */
+    @Override
+    public void registerAids(ReadableArray aids, final Promise promise) {
+        AidRegistry registry = AidRegistry.getDefault();
+        try {
+            for (int i = 0; i < aids.size(); i++) {
+                ReadableMap aid = aids.getMap(i);
+                AidRegistry.ReadStrategy strategy = aid.hasKey("strategy") && !aid.isNull("strategy")
+                        ? AidRegistry.ReadStrategy.valueOf(aid.getString("strategy"))
+                        : AidRegistry.ReadStrategy.READ_RECORDS;
+                registry.register(aid.getString("aid"), aid.getString("brand"), aid.getString("product"), strategy);
+            }
+            promise.resolve(registry.size());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "AID inválida", e);
+            promise.reject("INVALID_AID", e.getMessage());
+        }
+    }
+
+    /**
+     * Carrega AIDs de um arquivo em assets, uma por linha: AID;bandeira;produto;estratégia.
+     * Resolve com a quantidade de entradas carregadas.
+     */
+    @Override
+    public void loadAidRegistry(String assetName, final Promise promise) {
+        try (Reader reader = new InputStreamReader(reactContext.getAssets().open(assetName), StandardCharsets.UTF_8)) {
+            promise.resolve(AidRegistry.getDefault().load(reader));
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao carregar AIDs de " + assetName, e);
+            promise.reject("AID_REGISTRY_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Estatísticas acumuladas desde a criação do módulo: sessões, taxa de sucesso, novas
+     * tentativas, percentis p50/p95/p99 (em ms) de cada fase e da sessão inteira e o
+     * aproveitamento do cache de perfis de cartão
+     */
+    @Override
+    public void getReaderStats(final Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("sessions", readerStats.getSessions());
+        stats.putInt("successes", readerStats.getSuccesses());
+        stats.putDouble("successRate", readerStats.getSuccessRate());
+        stats.putInt("retries", readerStats.getRetries());
+        stats.putDouble("apduCount", readerStats.getApdus());
+        stats.putDouble("bytesOut", readerStats.getBytesOut());
+        stats.putDouble("bytesIn", readerStats.getBytesIn());
+
+        WritableMap phases = Arguments.createMap();
+        for (SessionTimings.Phase phase : SessionTimings.Phase.values()) {
+            phases.putMap(phase.name(), percentiles(phase));
+        }
+        stats.putMap("phases", phases);
+        stats.putMap("total", percentiles(null));
+
+        WritableMap firstApdu = Arguments.createMap();
+        firstApdu.putInt("count", readerStats.getTimeToFirstApduCount());
+        firstApdu.putDouble("p50Ms", toMillis(readerStats.timeToFirstApduPercentileNanos(50)));
+        firstApdu.putDouble("p95Ms", toMillis(readerStats.timeToFirstApduPercentileNanos(95)));
+        firstApdu.putDouble("p99Ms", toMillis(readerStats.timeToFirstApduPercentileNanos(99)));
+        stats.putMap("timeToFirstApdu", firstApdu);
+
+        CardProfileCache profileCache = cardReader.getProfileCache();
+        WritableMap profiles = Arguments.createMap();
+        profiles.putInt("size", profileCache.size());
+        profiles.putInt("lookups", profileCache.getLookups());
+        profiles.putInt("hits", profileCache.getHits());
+        profiles.putInt("misses", profileCache.getMisses());
+        profiles.putDouble("hitRate", profileCache.getHitRate());
+        profiles.putDouble("recordsSaved", profileCache.getRecordsSaved());
+        stats.putMap("profileCache", profiles);
+
+        CommandTimeouts commandTimeouts = cardReader.getCommandTimeouts();
+        WritableMap timeouts = Arguments.createMap();
+        for (SessionTimings.Phase phase : SessionTimings.Phase.values()) {
+            if (phase == SessionTimings.Phase.DETECTION || phase == SessionTimings.Phase.CONNECT) {
+                continue;
+            }
+            WritableMap timeout = Arguments.createMap();
+            timeout.putInt("timeoutMs", commandTimeouts.timeoutMillis(phase, null));
+            timeout.putDouble("typicalMs", toMillis(commandTimeouts.typicalNanos(phase, null)));
+            timeout.putInt("samples", commandTimeouts.getSampleCount(phase, null));
+            timeouts.putMap(phase.name(), timeout);
+        }
+        stats.putMap("commandTimeouts", timeouts);
+        promise.resolve(stats);
+    }
+
+    /**
+     * Lê até maxEntries entradas do diário de sessões a partir da sequência fromSequence.
+     * Resolve com { entries, nextSequence }; para continuar a leitura basta chamar de novo
+     * com nextSequence até entries vir vazio. Nenhuma entrada contém PAN ou data de expiração.
+     */
+    @Override
+    public void readSessionJournal(double fromSequence, double maxEntries, final Promise promise) {
+        if (journal == null) {
+            promise.reject("JOURNAL_UNAVAILABLE", "Diário de sessões indisponível");
+            return;
+        }
+        List<SessionJournal.Entry> entries = journal.read((long) fromSequence, (int) Math.max(1, maxEntries));
+        WritableArray array = Arguments.createArray();
+        long nextSequence = (long) fromSequence;
+        for (SessionJournal.Entry entry : entries) {
+            array.pushMap(journalEntry(entry));
+            nextSequence = entry.sequence + 1;
+        }
+        WritableMap result = Arguments.createMap();
+        result.putArray("entries", array);
+        result.putDouble("nextSequence", nextSequence);
+        promise.resolve(result);
+    }
+
+    /**
+     * Apaga o diário de sessões
+     */
+    @Override
+    public void clearSessionJournal(final Promise promise) {
+        if (journal == null) {
+            promise.reject("JOURNAL_UNAVAILABLE", "Diário de sessões indisponível");
+            return;
+        }
+        try {
+            journal.clear();
+            promise.resolve(true);
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao apagar o diário de sessões", e);
+            promise.reject("JOURNAL_ERROR", e.getMessage());
+        }
+    }
+
+    private static WritableMap journalEntry(SessionJournal.Entry entry) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("sequence", entry.sequence);
+        map.putDouble("startedAt", entry.startedAtMillis);
+        map.putString("outcome", outcomeName(entry.outcome));
+        map.putString("flow", flowName(entry.flow));
+        map.putString("aid", Nibbles.toHex(entry.aid));
+        map.putString("sw", entry.statusWord >= 0 ? String.format("%04X", entry.statusWord) : "");
+        map.putInt("apduCount", entry.apduCount);
+        map.putInt("bytesOut", entry.bytesOut);
+        map.putInt("bytesIn", entry.bytesIn);
+        map.putDouble("totalMs", entry.totalMicros / 1000.0);
+        map.putDouble("timeToFirstApduMs", entry.timeToFirstApduMicros < 0 ? -1 : entry.timeToFirstApduMicros / 1000.0);
+        WritableMap phases = Arguments.createMap();
+        SessionTimings.Phase[] values = SessionTimings.Phase.values();
+        for (int i = 0; i < values.length; i++) {
+            if (entry.phaseMicros[i] > 0) {
+                phases.putDouble(values[i].name(), entry.phaseMicros[i] / 1000.0);
+            }
+        }
+        map.putMap("phases", phases);
+        return map;
+    }
+
+    private static String outcomeName(int outcome) {
+        switch (outcome) {
+            case SessionJournal.OUTCOME_SUCCESS:
+                return "success";
+            case SessionJournal.OUTCOME_INCOMPLETE:
+                return "incomplete";
+            case SessionJournal.OUTCOME_SUSPENDED:
+                return "suspended";
+            case SessionJournal.OUTCOME_TIMEOUT:
+                return "timeout";
+            case SessionJournal.OUTCOME_CANCELLED:
+                return "cancelled";
+            default:
+                return "error";
+        }
+    }
+
+    private static String flowName(int flow) {
+        switch (flow) {
+            case CardProfileCache.FLOW_TRACK2:
+                return "track2";
+            case CardProfileCache.FLOW_FORMAT1:
+                return "format1";
+            case CardProfileCache.FLOW_FORMAT2:
+                return "format2";
+            default:
+                return "";
+        }
+    }
+
+    private WritableMap percentiles(SessionTimings.Phase phase) {
+        WritableMap map = Arguments.createMap();
+        map.putInt("count", readerStats.getSampleCount(phase));
+        map.putDouble("p50Ms", toMillis(readerStats.percentileNanos(phase, 50)));
+        map.putDouble("p95Ms", toMillis(readerStats.percentileNanos(phase, 95)));
+        map.putDouble("p99Ms", toMillis(readerStats.percentileNanos(phase, 99)));
+        return map;
+    }
+
+    /**
+     * relatório compacto de uma sessão, enviado junto com onCardRead e nfcReadingError
+     */
+    private static WritableMap timingReport(SessionTimings timings) {
+        WritableMap report = Arguments.createMap();
+        report.putDouble("totalMs", toMillis(timings.getTotalNanos()));
+        report.putDouble("timeToFirstApduMs", toMillis(timings.getTimeToFirstApduNanos()));
+        report.putInt("apduCount", timings.getApduCount());
+        report.putInt("bytesOut", timings.getBytesOut());
+        report.putInt("bytesIn", timings.getBytesIn());
+
+        WritableMap phases = Arguments.createMap();
+        for (SessionTimings.Phase phase : SessionTimings.Phase.values()) {
+            long nanos = timings.getPhaseNanos(phase);
+            if (nanos > 0) {
+                phases.putDouble(phase.name(), toMillis(nanos));
+            }
+        }
+        report.putMap("phases", phases);
+
+        WritableArray apdus = Arguments.createArray();
+        for (int i = 0; i < timings.getRecordedApduCount(); i++) {
+            WritableMap apdu = Arguments.createMap();
+            apdu.putString("phase", timings.getApduPhase(i).name());
+            apdu.putDouble("ms", toMillis(timings.getApduNanos(i)));
+            apdu.putInt("bytesOut", timings.getApduBytesOut(i));
+            apdu.putInt("bytesIn", timings.getApduBytesIn(i));
+            int sw = timings.getApduStatusWord(i);
+            apdu.putString("sw", sw >= 0 ? String.format("%04X", sw) : "");
+            apdus.pushMap(apdu);
+        }
+        report.putArray("apdus", apdus);
+
+        // aplicações na ordem em que foram tentadas
+        WritableArray applications = Arguments.createArray();
+        for (int i = 0; i < timings.getApplicationCount(); i++) {
+            byte[] aid = timings.getApplicationAid(i);
+            WritableMap application = Arguments.createMap();
+            application.putString("aid", Nibbles.toHex(aid));
+            application.putString("brand", AidRegistry.getDefault().resolve(aid).getBrand());
+            application.putInt("priority", timings.getApplicationPriority(i));
+            application.putString("result", timings.getApplicationResult(i).name());
+            applications.pushMap(application);
         }
+        report.putArray("applications", applications);
+        return report;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1_000_000.0;
+    }
+
+    /**
+     * fecha os tempos da sessão, soma nas estatísticas, grava no diário e devolve o relatório;
+     * outcome é um dos SessionJournal.OUTCOME_*
+     */
+    private WritableMap finishSession(SessionTimings timings, int outcome) {
+        recordSession(timings, outcome);
+        return timingReport(timings);
     }
 
-    private void sendEvent(String eventName, WritableMap params) {
+    /**
+     * como finishSession, sem montar o relatório; a leitura bem-sucedida leva os tempos no
+     * bloco do resultado
+     */
+    private void recordSession(SessionTimings timings, int outcome) {
+        timings.finish();
+        readerStats.record(timings, outcome == SessionJournal.OUTCOME_SUCCESS);
+        if (journal != null) {
+            journal.append(timings, cardReader.getSelectedAid(), cardReader.getFlow(), outcome);
+        }
+    }
+
+    /**
+     * envia o evento ao JS pela fila de efeitos; params não deve ser usado depois da chamada
+     */
+    private void sendEvent(final String eventName, final WritableMap params) {
+        sideEffects.post(() -> emitEvent(eventName, params));
+    }
+
+    /**
+     * evento só com status, montado já na fila de efeitos
+     */
+    private void sendStatusEvent(final String eventName, final String status) {
+        sideEffects.post(() -> {
+            WritableMap params = Arguments.createMap();
+            params.putString("status", status);
+            emitEvent(eventName, params);
+        });
+    }
+
+    /**
+     * chamado na thread da leitura; o mapa é montado na fila de efeitos
+     */
+    private void sendProgressEvent(final ReadProgress.Update update) {
+        PanTokenizer tokenizer = resultTokenizer();
+        final boolean tokenized = tokenizer != null && update.getCardNumber() != null;
+        final String token;
+        final String maskedPan;
+        final String bin;
+        if (tokenized) {
+            tokenizer.tokenize(update.getCardNumber());
+            token = tokenizer.getToken();
+            maskedPan = tokenizer.getMaskedPan();
+            bin = tokenizer.getBin();
+        } else {
+            token = null;
+            maskedPan = null;
+            bin = null;
+        }
+        sideEffects.post(() -> {
+            WritableMap params = Arguments.createMap();
+            params.putString("status", "reading");
+            params.putString("stage", update.getStage().name());
+            AidRegistry.Entry application = update.getApplication();
+            if (application != null) {
+                params.putString("cardType", application.getBrand());
+                params.putString("cardProduct", application.getProduct());
+            }
+            if (tokenized) {
+                params.putString("cardToken", token);
+                params.putString("maskedPan", maskedPan);
+                params.putString("bin", bin);
+            } else if (update.getCardNumber() != null) {
+                params.putString("cardNumber", update.getCardNumber());
+            }
+            if (update.getExpiryDate() != null) {
+                params.putString("expiryDate", update.getExpiryDate());
+            }
+            if (update.getRecords() != null) {
+                params.putString("records", Base64.encodeToString(update.getRecords(), Base64.NO_WRAP));
+            }
+            emitEvent("nfcReadProgress", params);
+        });
+    }
+
+    private void emitEvent(String eventName, WritableMap params) {
         try {
-            Log.d(TAG, "Enviando evento: " + eventName + " com params: " + params.toString());
+            Log.d(TAG, "Enviando evento: " + eventName);
             // Verificar se o contexto é válido
-            if (reactContext != null && reactContext.hasActiveReactInstance()) {
-                // Criar uma cópia do objeto para evitar ObjectAlreadyConsumedException
-                WritableMap paramsCopy = Arguments.createMap();
-                paramsCopy.merge(params);
-                reactContext
-                        .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                        .emit(eventName, paramsCopy);
-            } else {
+            if (reactContext == null || !reactContext.hasActiveReactInstance()) {
                 Log.w(TAG, "Não foi possível enviar evento: " + eventName + " - contexto inválido ou sem instância React ativa");
+                return;
+            }
+            switch (eventName) {
+                case "nfcCardDetected":
+                    emitNfcCardDetected(params);
+                    break;
+                case "nfcReadingStarted":
+                    emitNfcReadingStarted(params);
+                    break;
+                case "nfcReadingStopped":
+                    emitNfcReadingStopped(params);
+                    break;
+                case "nfcReadingError":
+                    emitNfcReadingError(params);
+                    break;
+                case "nfcReadSuspended":
+                    emitNfcReadSuspended(params);
+                    break;
+                case "nfcReadProgress":
+                    emitNfcReadProgress(params);
+                    break;
+                default:
+                    Log.w(TAG, "Evento sem emissor na spec: " + eventName);
             }
         } catch (Exception e) {
             Log.e(TAG, "Erro ao enviar evento: " + eventName, e);
@@ -190,36 +944,76 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
 
     @Override
     public void onTagDiscovered(Tag tag) {
-        Log.d(TAG, "Tag descoberta: " + tag);
-        
-        // Enviar evento informando que o cartão foi detectado ANTES da vibração
-        WritableMap cardDetectedParams = Arguments.createMap();
-        cardDetectedParams.putString("status", "detected");
-        sendEvent("nfcCardDetected", cardDetectedParams);
+        SessionTimings timings = new SessionTimings();
+        sideEffects.debug(TAG, "Tag descoberta: ", tag);
         
-        // Vibrar quando o cartão é detectado
-        vibrate();
+        // o cartão de uma leitura suspensa volta com o mesmo tagId e não pode cair no debounce
+        if (sessionMode && !hasSuspendedRead() && isDebounced(tag.getId())) {
+            sideEffects.debug(TAG, "Mesmo cartão ainda no campo, ignorando");
+            return;
+        }
         
-        // Verificar se temos um callback pendente
-        if (readPromise == null) {
-            Log.e(TAG, "Nenhuma Promise pendente para resolver");
+        // reader mode e intent podem entregar a mesma tag; só uma descoberta faz a leitura
+        if (!readSession.beginRead()) {
+            Log.e(TAG, "Nenhuma leitura armada, tag ignorada");
             return;
         }
+        boolean suspended = false;
+        try {
+            suspended = readTag(tag, timings);
+        } finally {
+            endTagRead(suspended);
+        }
+    }
+
+    /**
+     * Fim do toque: na sessão, com a leitura suspensa aguardando o cartão ou com pedidos que
+     * este toque não atendeu, volta a ARMED; sem ninguém aguardando, termina a sessão. Se a
+     * parada foi pedida durante o toque, stopCardReading já desligou o reader mode e rejeitou
+     * os pedidos.
+     */
+    private void endTagRead(boolean suspended) {
+        boolean cancelled = false;
+        boolean finished = false;
+        // sob o lock do registro: um pedido que chega agora ou entra antes e mantém a
+        // sessão armada, ou chega depois e arma uma nova
+        synchronized (readRequests) {
+            if (sessionMode || suspended || !readRequests.isEmpty()) {
+                cancelled = !readSession.endRead();
+            } else {
+                finished = readSession.finish() == ReadSession.State.READING;
+            }
+        }
+        if (cancelled) {
+            cancelSuspendedRead();
+        }
+        if (finished) {
+            readerStopped();
+        }
+    }
+
+    /**
+     * @return true quando o cartão saiu do campo e a leitura ficou suspensa aguardando sua volta
+     */
+    private boolean readTag(Tag tag, SessionTimings timings) {
+        // Evento de detecção e vibração vão para a fila de efeitos, nessa ordem,
+        // sem atrasar o primeiro comando enviado ao cartão
+        sendStatusEvent("nfcCardDetected", "detected");
+        sideEffects.post(this::vibrate);
         
         // Limpar dados anteriores
-        clearData();
-        Log.d(TAG, "NFC tag descoberta");
-        writeToLog("NFC tag descoberta");
+        cardReader.clearData();
+        cardReader.getTrace().debug("NFC tag descoberta");
         
         byte[] tagId = tag.getId();
-        writeToLog("TagId: " + bytesToHexNpe(tagId));
+        cardReader.getTrace().debug("TagId: {}", tagId);
         
         // Verificar tecnologias disponíveis na tag
         String[] techList = tag.getTechList();
-        writeToLog("TechList encontrada com estas entradas:");
+        cardReader.getTrace().debug("TechList encontrada com estas entradas:");
         boolean isoDepInTechList = false;
         for (String s : techList) {
-            writeToLog(s);
+            cardReader.getTrace().debug(s);
             if (s.equals("android.nfc.tech.IsoDep")) isoDepInTechList = true;
         }
         
@@ -231,454 +1025,116 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
                 WritableMap errorParams = Arguments.createMap();
                 errorParams.putString("status", "error");
                 errorParams.putString("error", "Card does not support IsoDep");
+                errorParams.putMap("timing", finishSession(timings, SessionJournal.OUTCOME_ERROR));
                 sendEvent("nfcReadingError", errorParams);
                 rejectPromise("NFC_CARD_ERROR", "Card does not support IsoDep");
-                return;
+                return false;
             }
 
+            RecordingTransport recorder = null;
+            activeIsoDep = isoDep;
             try {
-                Log.d(TAG, "Conectando com IsoDep");
+                long connectStart = System.nanoTime();
+                timings.addPhase(SessionTimings.Phase.DETECTION, connectStart - timings.getStartNanos());
                 isoDep.connect();
-                isoDep.setTimeout(5000); // 5 segundos timeout
-                Log.d(TAG, "Conexão com cartão bem-sucedida");
-                writeToLog("Conexão com cartão bem-sucedida");
+                // o timeout de cada comando é definido pelo EmvCardReader
+                timings.addPhase(SessionTimings.Phase.CONNECT, System.nanoTime() - connectStart);
+                cardReader.getTrace().debug("Conexão com cartão bem-sucedida");
                 
-                // Variáveis para armazenar os dados do cartão
-                String pan = null;
-                String expiryDate = null;
-                String cardType = null;
-
-                // Nossa jornada através do cartão começa aqui
-                printStepHeader(0, "nossa jornada começa");
-                writeToLog("00 leitura do cartão iniciada");
-                
-                // Aumentar o timeout para permitir leitura mais longa
-                writeToLog("Aumentando o timeout do IsoDep para leitura prolongada");
-                writeToLog("timeout antigo: " + isoDep.getTimeout() + " ms");
-                isoDep.setTimeout(10000);
-                writeToLog("timeout novo: " + isoDep.getTimeout() + " ms");
-
-                /**
-                 * PASSO 1: Selecionar PPSE
-                 */
-                printStepHeader(1, "selecionar PPSE");
-                byte[] PPSE = "2PAY.SYS.DDF01".getBytes("UTF-8"); // PPSE
-                byte[] selectPpseCommand = selectApdu(PPSE);
-                byte[] selectPpseResponse = isoDep.transceive(selectPpseCommand);
-                writeToLog("01 comando select PPSE com tamanho " + selectPpseCommand.length + " dados: " + bytesToHexNpe(selectPpseCommand));
-                writeToLog("01 resposta select PPSE com tamanho " + selectPpseResponse.length + " dados: " + bytesToHexNpe(selectPpseResponse));
-                writeToLog("01 select PPSE concluído");
-                writeToLog(prettyPrintDataToString(selectPpseResponse));
-
-                byte[] selectPpseResponseOk = checkResponse(selectPpseResponse);
-                // Prosseguir apenas quando tivermos um resultado positivo de leitura = 0x'9000' no final dos dados de resposta
-                if (selectPpseResponseOk != null) {
-                    /**
-                     * PASSO 2: Analisar resposta PPSE e buscar aplicações no cartão
-                     */
-                    printStepHeader(2, "buscar aplicações no cartão");
-                    writeToLog("02 analisar resposta do select PPSE e buscar tag 0x4F (aplicações no cartão)");
-
-                    BerTlvParser parser = new BerTlvParser();
-                    BerTlvs tlv4Fs = parser.parse(selectPpseResponseOk);
-                    // Buscar todas as entradas para tag 0x4F
-                    List<BerTlv> tag4fList = tlv4Fs.findAll(new BerTag(0x4F));
-                    if (tag4fList.size() < 1) {
-                        writeToLog("Não há tag 0x4F disponível, parando aqui");
-                        startEndSequence(isoDep);
-                        return;
-                    }
-                    writeToLog("Encontrada tag 0x4F " + tag4fList.size() + (tag4fList.size() == 1 ? " vez:" : " vezes:"));
-                    ArrayList<byte[]> aidList = new ArrayList<>();
-                    for (int i4f = 0; i4f < tag4fList.size(); i4f++) {
-                        BerTlv tlv4f = tag4fList.get(i4f);
-                        byte[] tlv4fBytes = tlv4f.getBytesValue();
-                        aidList.add(tlv4fBytes);
-                        writeToLog("ID da aplicação (AID): " + bytesToHexNpe(tlv4fBytes));
-                    }
-                    writeToLog("02 análise da resposta select PPSE concluída");
-
-                    /**
-                     * PASSO 3: Iterar através da lista de AIDs selecionando cada um
-                     */
-                    for (int aidNumber = 0; aidNumber < tag4fList.size(); aidNumber++) {
-                        byte[] aidSelected = aidList.get(aidNumber);
-                        writeToLog("");
-                        printStepHeader(3, "selecionar aplicação por AID");
-                        writeToLog("03 selecionar aplicação por AID " + bytesToHexNpe(aidSelected) + " (número " + (aidNumber + 1) + ")");
-                        byte[] selectAidCommand = selectApdu(aidSelected);
-                        byte[] selectAidResponse = isoDep.transceive(selectAidCommand);
-                        writeToLog("");
-                        writeToLog("03 comando select AID com tamanho " + selectAidCommand.length + " dados: " + bytesToHexNpe(selectAidCommand));
-                        writeToLog("03 resposta select AID com tamanho " + selectAidResponse.length + " dados: " + bytesToHexNpe(selectAidResponse));
-                        writeToLog(prettyPrintDataToString(selectAidResponse));
-                        writeToLog("03 select AID concluído");
-
-                        /**
-                         * PASSO 4: Buscar PDOL e preparar GPO
-                         */
-                        byte[] selectAidResponseOk = checkResponse(selectAidResponse);
-                        if (selectAidResponseOk != null) {
-                            printStepHeader(4, "buscar tag 0x9F38");
-                            writeToLog("04 buscar tag 0x9F38 na resposta selectAid");
-                            
-                            /**
-                             * Nota: comportamento diferente entre cartões Visa, Mastercard e cartões alemães Giro
-                             * Mastercard não tem PDOL, Visa fornece PDOL na tag 9F38
-                             * Próximo passo: buscar a tag 9F38 Processing Options Data Object List (PDOL)
-                             */
-                            
-                            BerTlv tag9f38;
-                            try {
-                                BerTlvs tlvsAid = parser.parse(selectAidResponseOk);
-                                tag9f38 = tlvsAid.find(new BerTag(0x9F, 0x38));
-                                writeToLog("04 busca pela tag 0x9F38 na resposta selectAid concluída");
-                            } catch (IllegalStateException e) {
-                                tag9f38 = null;
-                                Log.e(TAG, "Parsing dados inválidos: " + e.getMessage());
-                            }
-                            
-                            byte[] gpoRequestCommand;
-                            
-                            // Mostrar valores predefinidos disponíveis
-                            DolValues dolValues = new DolValues();
-                            writeToLog("Valores predefinidos disponíveis para PDOL e CDOL");
-                            writeToLog(dolValues.dump());
-                            
-                            if (tag9f38 != null) {
-                                /**
-                                 * O código a seguir é para cartões Visa e (alemães) GiroCards, pois encontramos um PDOL
-                                 */
-                                writeToLog("");
-                                writeToLog("### processando o caminho American Express, VisaCard e GiroCard ###");
-                                writeToLog("");
-                                byte[] pdolValue = tag9f38.getBytesValue();
-                                
-                                writeToLog("encontrada tag 0x9F38 (PDOL) no selectAid com este tamanho: " + pdolValue.length + " dados: " + bytesToHexNpe(pdolValue));
-                                byte[][] gpoRequestCommandArray = getGpoFromPdolExtended(pdolValue, new byte[]{(byte) 0x00}); // 00 = padrão, máximo 03
-                                
-                                gpoRequestCommand = gpoRequestCommandArray[0];
-                                String pdolRequestString = new String(gpoRequestCommandArray[1], "UTF-8");
-                                writeToLog("");
-                                writeToLog(pdolRequestString);
-                            } else {
-                                /**
-                                 * Código para MasterCard
-                                 */
-                                writeToLog("");
-                                writeToLog("### processando o caminho MasterCard ###");
-                                writeToLog("");
-                                
-                                writeToLog("Nenhum PDOL encontrado na resposta selectAid, gerando um PDOL 'nulo'");
-                                byte[][] gpoRequestCommandArray = getGpoFromPdolExtended(new byte[0], new byte[]{(byte) 0x00});
-                                gpoRequestCommand = gpoRequestCommandArray[0];
-                                String pdolRequestString = new String(gpoRequestCommandArray[1], "UTF-8");
-                                writeToLog("");
-                                writeToLog(pdolRequestString);
-                            }
-                            
-                            /**
-                             * PASSO 5: Obter as opções de processamento
-                             */
-                            printStepHeader(5, "obter as opções de processamento");
-                            writeToLog("05 obter as opções de processamento, comando com tamanho: " + gpoRequestCommand.length + " dados: " + bytesToHexNpe(gpoRequestCommand));
-                            
-                            /**
-                             * AVISO: cada requisição de obtenção de opções de processamento aumenta o contador interno 'application transaction counter' do ICC.
-                             * Se o contador de 2 bytes atingir o máximo de '65535' (0xFFFF), o cartão não aceitará mais comandos de leitura
-                             * e o cartão estará irrecuperavelmente danificado.
-                             * NÃO EXECUTE ESTE COMANDO EM LOOP!
-                             */
-                            
-                            byte[] gpoRequestResponse = isoDep.transceive(gpoRequestCommand);
-                            byte[] gpoRequestResponseOk;
-                            writeToLog("05 obtenção das opções de processamento concluída");
-                            if (gpoRequestResponse != null) {
-                                writeToLog("05 resposta da obtenção das opções de processamento com tamanho: " + gpoRequestResponse.length + " dados: " + bytesToHexNpe(gpoRequestResponse));
-                                gpoRequestResponseOk = checkResponse(gpoRequestResponse);
-                                if (gpoRequestResponseOk != null) {
-                                    writeToLog(prettyPrintDataToString(gpoRequestResponse));
-                                }
-                            } else {
-                                writeToLog("05 falha na obtenção das opções de processamento");
-                                writeToLog("O comando para obter opções de processamento falhou. Pode ser uma boa ideia usar uma tag 0x9966 Terminal Transaction Qualifiers alternativa");
-                                startEndSequence(isoDep);
-                                return;
-                            }
-                            
-                            /**
-                             * PASSO 6: Analisar conteúdo da resposta GPO para obter Track 2 ou AFL
-                             */
-                            
-                            /**
-                             * Temos 3 cenários para trabalhar:
-                             * a) a resposta contém uma tag de Dados Equivalentes da Track 2 (tag 0x57)
-                             * b) a resposta é do tipo 'Response Message Template Format 1' (tag 0x80)
-                             * c) a resposta é do tipo 'Response Message Template Format 2' (tag 0x77)
-                             */
-                            BerTlvs tlvsGpo = parser.parse(gpoRequestResponse);
-                            byte[] aflBytes = null;
-                            
-                            /**
-                             * fluxo a)
-                             * A resposta contém uma tag de Dados Equivalentes da Track 2 e a partir disso podemos
-                             * recuperar diretamente o Número de Aplicação Principal (PAN, aqui o Número do Cartão de Crédito)
-                             * encontrado usando um cartão Visa
-                             */
-                            
-                            BerTlv tag57 = tlvsGpo.find(new BerTag(0x57));
-                            if (tag57 != null) {
-                                writeToLog("fluxo a)");
-                                writeToLog("");
-                                printStepHeader(6, "ler arquivos e buscar PAN");
-                                writeToLog("06 leitura dos arquivos do cartão ignorada");
-                                writeToLog("06 leitura dos arquivos do cartão ignorada");
-                                
-                                writeToLog("a resposta contém uma tag de Dados Equivalentes da Track 2 [tag 0x57]");
-                                
-                                /**
-                                 * PASSO 7: Obter PAN e data de expiração da Track 2
-                                 */
-                                
-                                writeToLog("a resposta contém uma tag de Dados Equivalentes da Track 2 [tag 0x57]");
-                                byte[] gpoResponseTag57 = tag57.getBytesValue();
-                                writeToLog("encontrada tag 0x57 na resposta GPO com tamanho: " + gpoResponseTag57.length + " dados: " + bytesToHexNpe(gpoResponseTag57));
-                                pan = getPanFromTrack2EquivalentData(gpoResponseTag57);
-                                expiryDate = getExpirationDateFromTrack2EquivalentData(gpoResponseTag57);
-                                writeToLog("encontrado um PAN " + pan + " com data de expiração: " + expiryDate);
-                                writeToLog("");
-                                printStepHeader(7, "exibir PAN e data de expiração");
-                                writeToLog("07 obter PAN e data de expiração da tag 0x57 (Dados Equivalentes da Track 2)");
-                                writeToLog("07 obtenção do PAN e data de expiração da tag 0x57 (Dados Equivalentes da Track 2) concluída");
-                                writeToLog("dados para AID " + bytesToHexNpe(aidSelected));
-                                writeToLog("PAN: " + pan);
-                                String expirationDateString = "Data de expiração (" + (expiryDate.length() == 4 ? "AAMM): " : "AAMMDD): ") + expiryDate;
-                                writeToLog(expirationDateString);
-                                writeToLog("dados para AID " + bytesToHexNpe(aidSelected));
-                                writeToLog("PAN: " + pan);
-                                writeToLog(expirationDateString);
-                                writeToLog("");
-                                
-                                // Determinar o tipo de cartão com base no AID selecionado
-                                String aidHex = bytesToHexNpe(aidSelected);
-                                if (aidHex.startsWith("A0000000041010")) {
-                                    cardType = "Mastercard";
-                                } else if (aidHex.startsWith("A0000000031010")) {
-                                    cardType = "Visa";
-                                } else if (aidHex.startsWith("A0000000032010")) {
-                                    cardType = "Visa Electron";
-                                } else if (aidHex.startsWith("A0000000043060")) {
-                                    cardType = "Maestro";
-                                } else {
-                                    cardType = "Desconhecido";
-                                }
-                            }
-                            
-                            /**
-                             * fluxo b)
-                             * A resposta é do tipo 'Response Message Template Format 1' e precisamos conhecer
-                             * o significado de cada byte, então precisamos analisar o conteúdo para obter os dados para o
-                             * 'Application File Locator' (AFL).
-                             * encontrado usando um cartão American Express
-                             */
-                            
-                            BerTlv tag80 = tlvsGpo.find(new BerTag(0x80));
-                            if (tag80 != null) {
-                                writeToLog("fluxo b)");
-                                writeToLog("a resposta é do tipo 'Response Message Template Format 1' [tag 0x80]");
-                                byte[] gpoResponseTag80 = tag80.getBytesValue();
-                                writeToLog("encontrada tag 0x80 na resposta GPO com tamanho: " + gpoResponseTag80.length + " dados: " + bytesToHexNpe(gpoResponseTag80));
-                                aflBytes = Arrays.copyOfRange(gpoResponseTag80, 2, gpoResponseTag80.length);
-                            }
-                            
-                            /**
-                             * fluxo c)
-                             * A resposta é do tipo 'Response Message Template Format 2' e precisamos encontrar
-                             * a tag 0x94; o conteúdo é o 'Application File Locator' (AFL)
-                             * encontrado usando um cartão MasterCard
-                             */
-                            
-                            BerTlv tag77 = tlvsGpo.find(new BerTag(0x77));
-                            if (tag77 != null) {
-                                writeToLog("fluxo c)");
-                                writeToLog("a resposta é do tipo 'Response Message Template Format 2' [tag 0x77]");
-                                writeToLog("encontrada tag 0x77 na resposta GPO");
-                            }
-                            
-                            BerTlv tag94 = tlvsGpo.find(new BerTag(0x94));
-                            if (tag94 != null) {
-                                writeToLog("encontrado 'AFL' [tag 0x94] na resposta do tipo 'Response Message Template Format 2' [tag 0x77]");
-                                byte[] gpoResponseTag94 = tag94.getBytesValue();
-                                writeToLog("encontrada tag 0x94 na resposta GPO com tamanho: " + gpoResponseTag94.length + " dados: " + bytesToHexNpe(gpoResponseTag94));
-                                aflBytes = gpoResponseTag94;
-                            }
-                            
-                            // Se ainda não encontramos o PAN, precisamos ler os registros com base no AFL
-                            if (pan == null && aflBytes != null) {
-                                writeToLog("");
-                                printStepHeader(6, "ler arquivos e buscar PAN");
-                                writeToLog("06 ler os arquivos do cartão e buscar PAN e data de expiração");
-                                writeToLog("06 leitura dos arquivos do cartão e busca por PAN e data de expiração");
-                                
-                                List<byte[]> tag94BytesList = divideArray(aflBytes, 4);
-                                int tag94BytesListLength = tag94BytesList.size();
-                                writeToLog("");
-                                writeToLog("O AFL contém " + tag94BytesListLength + (tag94BytesListLength == 1 ? " entrada para ler" : " entradas para ler"));
-                                
-                                // O AFL é um array de bytes de 4 bytes de comprimento, então se seu array aflBytes tem 12 bytes de comprimento, há três conjuntos para ler.
-                                
-                                /**
-                                 * agora vamos ler os arquivos especificados do cartão. O sistema é o seguinte:
-                                 * O primeiro byte é o SFI, o segundo byte é o primeiro registro a ser lido,
-                                 * o terceiro byte é o último registro a ser lido e o quarto byte indica o número
-                                 * de setores envolvidos na autorização offline.
-                                 * Aqui um exemplo: 10 01 03 00
-                                 * SFI:             10
-                                 * primeiro registro:  01
-                                 * último registro:       03
-                                 * offline:                  00
-                                 * significa que somos solicitados a ler 3 registros (números 1, 2 e 3) do SFI 10
-                                 */
-                                
-                                for (int i = 0; i < tag94BytesListLength; i++) {
-                                    byte[] tag94BytesListEntry = tag94BytesList.get(i);
-                                    byte sfiOrg = tag94BytesListEntry[0];
-                                    byte rec1 = tag94BytesListEntry[1];
-                                    byte recL = tag94BytesListEntry[2];
-                                    byte offl = tag94BytesListEntry[3]; // autorização offline
-                                    int sfiNew = (byte) sfiOrg | 0x04; // adicionar 4 = definir bit 3
-                                    int numberOfRecordsToRead = (byteToInt(recL) - byteToInt(rec1) + 1);
-                                    writeToLog("para SFI " + byteToHex(sfiOrg) + " leremos " + numberOfRecordsToRead + (numberOfRecordsToRead == 1 ? " registro" : " registros"));
-                                    
-                                    // ler registros
-                                    byte[] readRecordResponse = new byte[0];
-                                    for (int iRecord = (int) rec1; iRecord <= (int) recL; iRecord++) {
-                                        byte[] cmd = hexToBytes("00B2000400");
-                                        cmd[2] = (byte) (iRecord & 0x0FF);
-                                        cmd[3] |= (byte) (sfiNew & 0x0FF);
-                                        writeToLog("comando readRecord SFI " + byteToHex(sfiOrg) + " arquivo " + (int) recL + " com tamanho: " + cmd.length + " dados: " + bytesToHexNpe(cmd));
-                                        readRecordResponse = isoDep.transceive(cmd);
-                                        byte[] readRecordResponseTag5a = null;
-                                        byte[] readRecordResponseTag5f24 = null;
-                                        
-                                        if (readRecordResponse != null) {
-                                            writeToLog("resposta readRecord com tamanho: " + readRecordResponse.length + " dados: " + bytesToHexNpe(readRecordResponse));
-                                            writeToLog(prettyPrintDataToString(readRecordResponse));
-                                            
-                                            // verificando PAN e Data de Expiração
-                                            try {
-                                                BerTlvs tlvsReadRecord = parser.parse(readRecordResponse);
-                                                BerTlv tag5a = tlvsReadRecord.find(new BerTag(0x5A));
-                                                if (tag5a != null) {
-                                                    readRecordResponseTag5a = tag5a.getBytesValue();
-                                                    writeToLog("encontrada tag 0x5a na resposta readRecord com tamanho: " + readRecordResponseTag5a.length + " dados: " + bytesToHexNpe(readRecordResponseTag5a));
-                                                }
-                                                BerTlv tag5f24 = tlvsReadRecord.find(new BerTag(0x5F, 0x24));
-                                                if (tag5f24 != null) {
-                                                    readRecordResponseTag5f24 = tag5f24.getBytesValue();
-                                                    writeToLog("encontrada tag 0x5f24 na resposta readRecord com tamanho: " + readRecordResponseTag5f24.length + " dados: " + bytesToHexNpe(readRecordResponseTag5f24));
-                                                }
-                                                
-                                                if (readRecordResponseTag5a != null) {
-                                                    String readRecordPanString = removeTrailingF(bytesToHexNpe(readRecordResponseTag5a));
-                                                    String readRecordExpirationDateString = bytesToHexNpe(readRecordResponseTag5f24);
-                                                    
-                                                    // Agora temos o PAN e a data de expiração
-                                                    pan = readRecordPanString;
-                                                    expiryDate = readRecordExpirationDateString;
-                                                    
-                                                    if (readRecordExpirationDateString.length() == 6) {
-                                                        // Se for AAMMDD, converter para MM/AA
-                                                        expiryDate = readRecordExpirationDateString.substring(2, 4) + "/" + readRecordExpirationDateString.substring(0, 2);
-                                                    } else if (readRecordExpirationDateString.length() == 4) {
-                                                        // Se for AAMM, converter para MM/AA
-                                                        expiryDate = readRecordExpirationDateString.substring(2, 4) + "/" + readRecordExpirationDateString.substring(0, 2);
-                                                    }
-                                                    
-                                                    writeToLog("");
-                                                    printStepHeader(7, "exibir PAN e data de expiração");
-                                                    writeToLog("07 obter PAN e data de expiração das tags 0x5a e 0x5f24");
-                                                    writeToLog("07 obtenção do PAN e data de expiração das tags 0x5a e 0x5f24 concluída");
-                                                    writeToLog("dados para AID " + bytesToHexNpe(aidSelected));
-                                                    writeToLog("PAN: " + pan);
-                                                    String expirationDateString = "Data de expiração (" + (readRecordExpirationDateString.length() == 4 ? "AAMM): " : "AAMMDD): ") + expiryDate;
-                                                    writeToLog(expirationDateString);
-                                                    writeToLog("dados para AID " + bytesToHexNpe(aidSelected));
-                                                    writeToLog("PAN: " + pan);
-                                                    writeToLog(expirationDateString);
-                                                    writeToLog("");
-                                                    
-                                                    // Determinar o tipo de cartão com base no AID selecionado
-                                                    String aidHex = bytesToHexNpe(aidSelected);
-                                                    if (aidHex.startsWith("A0000000041010")) {
-                                                        cardType = "Mastercard";
-                                                    } else if (aidHex.startsWith("A0000000031010")) {
-                                                        cardType = "Visa";
-                                                    } else if (aidHex.startsWith("A0000000032010")) {
-                                                        cardType = "Visa Electron";
-                                                    } else if (aidHex.startsWith("A0000000043060")) {
-                                                        cardType = "Maestro";
-                                                    } else {
-                                                        cardType = "Desconhecido";
-                                                    }
-                                                }
-                                            } catch (RuntimeException e) {
-                                                Log.e(TAG, "Exceção de Runtime: " + e.getMessage());
-                                            }
-                                        } else {
-                                            writeToLog("a resposta readRecord foi NULA");
-                                        }
-                                    }
-                                }
-                            }
-                        } else {
-                            writeToLog("o comando de seleção de AID falhou");
-                        }
-                    }
-                } else {
-                    writeToLog("A tag NFC descoberta não tem uma interface IsoDep.");
+                // Nossa jornada através do cartão começa no EmvCardReader
+                ApduTransport transport = new IsoDepTransport(isoDep);
+                if (captureTranscripts) {
+                    recorder = new RecordingTransport(transport, captureMaskPan);
+                    transport = recorder;
                 }
+                readProgress.start();
+                // um único fluxo de APDUs para todos os pedidos: a união dos campos e o menor prazo
+                int requiredFields = sessionFields | readRequests.requiredFields();
+                cardReader.setReadDeadlineMillis(tapDeadlineMillis());
+                // cartão reaproximado depois de sair do campo: continua de onde parou, sem novo GPO
+                Card card = claimSuspendedRead()
+                        ? cardReader.resume(transport, timings)
+                        : cardReader.readCard(transport, requiredFields != CardFields.NONE ? requiredFields : CardFields.DEFAULT, timings);
+                if (readSession.isCancelled()) {
+                    // parada pedida depois do último APDU: o resultado não é mais esperado
+                    recordSession(timings, SessionJournal.OUTCOME_CANCELLED);
+                    return false;
+                }
+                recordSession(timings, card != null ? SessionJournal.OUTCOME_SUCCESS : SessionJournal.OUTCOME_INCOMPLETE);
                 
-                printStepHeader(99, "nossa jornada termina");
-                writeToLog("99 leitura do cartão concluída");
-                
-                // MODIFICAÇÃO IMPORTANTE: Criar e resolver o objeto Card com os dados lidos
-                if (pan != null && expiryDate != null) {
-                    Log.d(TAG, "Criando objeto Card com dados: PAN=" + pan + ", expiryDate=" + expiryDate + ", cardType=" + cardType);
-                    Card card = new Card(pan, cardType, expiryDate, true, false);
-                    resolvePromise(card);
+                // MODIFICAÇÃO IMPORTANTE: resolver o objeto Card com os dados lidos
+                // cartões com UID aleatório chegam com outro tagId, mas o PAN é o mesmo
+                boolean repeated = card != null && sessionMode && isRepeatedCard(card.getCardNumber());
+                if (repeated && readRequests.isEmpty()) {
+                    Log.d(TAG, "Mesmo cartão lido novamente na sessão, resultado ignorado");
+                } else if (card != null) {
+                    final String loggedPan = clearPanResults ? card.getCardNumber() : PanTokenizer.mask(card.getCardNumber());
+                    sideEffects.post(() -> Log.d(TAG, "Criando objeto Card com dados: PAN=" + loggedPan + ", expiryDate=" + card.getExpiryDate() + ", cardType=" + card.getCardType()));
+                    // cartão repetido com pedidos pendentes: atende os pedidos sem repetir o evento da sessão
+                    resolvePromise(card, cardReader.getFoundFields(), !repeated);
                 } else {
+                    // faltou algum campo da união: quem pediu só o que o cartão trouxe recebe o
+                    // cartão parcial, os demais são rejeitados abaixo
+                    Card partial = cardReader.getLastCard();
+                    if (partial != null) {
+                        resolvePromise(partial, cardReader.getFoundFields(), false);
+                    }
                     Log.e(TAG, "Dados do cartão incompletos. PAN ou data de expiração não encontrados.");
+                    if (sessionMode) {
+                        // a sessão não tem promise, o erro chega por evento
+                        WritableMap errorParams = Arguments.createMap();
+                        errorParams.putString("status", "error");
+                        errorParams.putString("error", "Não foi possível obter dados completos do cartão");
+                        errorParams.putMap("timing", timingReport(timings));
+                        sendEvent("nfcReadingError", errorParams);
+                    }
                     rejectPromise("INCOMPLETE_CARD_DATA", "Não foi possível obter dados completos do cartão");
                 }
                 
-                vibrate();
+                sideEffects.post(this::vibrate);
                 
             } catch (IOException e) {
+                // stopCardReading já rejeitou a promise e avisou o JS
+                if (e instanceof ReadCancelledException || readSession.isCancelled()) {
+                    Log.d(TAG, "Leitura cancelada: " + e.getMessage());
+                    recordSession(timings, SessionJournal.OUTCOME_CANCELLED);
+                    return false;
+                }
                 Log.e(TAG, "Erro de comunicação com cartão", e);
+                if (tagLostRecovery && cardReader.hasCheckpoint()) {
+                    suspendRead(e, timings);
+                    return true;
+                }
+                if (e instanceof ReadTimeoutException) {
+                    rejectTimeout((ReadTimeoutException) e, timings);
+                    return false;
+                }
                 WritableMap errorParams = Arguments.createMap();
                 errorParams.putString("status", "error");
                 errorParams.putString("error", e.getMessage());
+                errorParams.putMap("timing", finishSession(timings, SessionJournal.OUTCOME_ERROR));
                 sendEvent("nfcReadingError", errorParams);
                 rejectPromise("COMMUNICATION_ERROR", e.getMessage());
-                return;
+                return false;
             } catch (Exception e) {
                 Log.e(TAG, "Erro geral na leitura do cartão", e);
                 WritableMap errorParams = Arguments.createMap();
                 errorParams.putString("status", "error");
                 errorParams.putString("error", e.getMessage());
+                errorParams.putMap("timing", finishSession(timings, SessionJournal.OUTCOME_ERROR));
                 sendEvent("nfcReadingError", errorParams);
                 rejectPromise("GENERAL_ERROR", e.getMessage());
-                return;
+                return false;
             } finally {
-                try {
-                    if (isoDep != null && isoDep.isConnected()) {
-                        isoDep.close();
-                    }
-                } catch (IOException e) {
-                    Log.e(TAG, "Erro ao fechar IsoDep", e);
+                activeIsoDep = null;
+                sideEffects.post(prefetchUnpredictableNumbers);
+                if (recorder != null) {
+                    lastTranscript = recorder.getTranscript();
+                }
+                closeIsoDep(isoDep);
+                if (sessionMode) {
+                    lastTagSeenAt = SystemClock.elapsedRealtime();
                 }
-                stopCardReading();
             }
         } else {
             // Se não encontrar tecnologia IsoDep
@@ -686,317 +1142,128 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
             WritableMap errorParams = Arguments.createMap();
             errorParams.putString("status", "error");
             errorParams.putString("error", "Card does not support IsoDep");
+            errorParams.putMap("timing", finishSession(timings, SessionJournal.OUTCOME_ERROR));
             sendEvent("nfcReadingError", errorParams);
             rejectPromise("NFC_CARD_ERROR", "Card does not support IsoDep");
         }
-    }
-    
-    private void startEndSequence(IsoDep isoDep) {
-        try {
-            if (isoDep != null && isoDep.isConnected()) {
-                isoDep.close();
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Erro ao fechar IsoDep", e);
-        }
-        stopCardReading();
-    }
-    
-    /**
-     * Adiciona métodos de suporte para compatibilidade com o código original
-     */
-    
-    private String outputString = ""; // usado para a saída de log
-    
-    private void clearData() {
-        outputString = "";
-    }
-    
-    private void writeToLog(String message) {
-        Log.d(TAG, message);
-        outputString = outputString + message + "\n";
-    }
-    
-    private void printStepHeader(int step, String message) {
-        String stepSeparatorString = "*********************************";
-        // a mensagem não deve exceder 29 caracteres, mensagens mais longas serão truncadas
-        String emptyMessage = "                                 ";
-        StringBuilder sb = new StringBuilder();
-        sb.append(outputString); // já tem uma quebra de linha no final
-        sb.append("").append("\n");
-        sb.append(stepSeparatorString).append("\n");
-        sb.append("************ passo ").append(String.format("%02d", step)).append(" ************").append("\n");
-        sb.append("* ").append((message + emptyMessage).substring(0, 29)).append(" *").append("\n");
-        sb.append(stepSeparatorString).append("\n");
-        outputString = sb.toString();
-    }
-    
-    private String prettyPrintDataToString(byte[] responseData) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("------------------------------------").append("\n");
-        // Usar TlvUtil do código original para formatação de TLV
-        sb.append(trimLeadingLineFeeds(TlvUtil.prettyPrintAPDUResponse(responseData))).append("\n");
-        sb.append("------------------------------------").append("\n");
-        return sb.toString();
-    }
-    
-    public static String trimLeadingLineFeeds(String input) {
-        String[] output = input.split("^\\n+", 2);
-        return output.length > 1 ? output[1] : output[0];
+        return false;
     }
     
     /**
-     * constrói um comando select apdu
+     * cartão sem resposta dentro do timeout do comando, ou prazo da leitura esgotado
      */
-    private byte[] selectApdu(@NonNull byte[] data) {
-        byte[] commandApdu = new byte[6 + data.length];
-        commandApdu[0] = (byte) 0x00;  // CLA
-        commandApdu[1] = (byte) 0xA4;  // INS
-        commandApdu[2] = (byte) 0x04;  // P1
-        commandApdu[3] = (byte) 0x00;  // P2
-        commandApdu[4] = (byte) (data.length & 0x0FF);       // Lc
-        System.arraycopy(data, 0, commandApdu, 5, data.length);
-        commandApdu[commandApdu.length - 1] = (byte) 0x00;  // Le
-        return commandApdu;
+    private void rejectTimeout(ReadTimeoutException e, SessionTimings timings) {
+        WritableMap errorParams = Arguments.createMap();
+        errorParams.putString("status", "error");
+        errorParams.putString("error", e.getMessage());
+        errorParams.putString("reason", e.isDeadline() ? "deadline" : "commandTimeout");
+        errorParams.putString("phase", e.getPhase().name());
+        errorParams.putMap("timing", finishSession(timings, SessionJournal.OUTCOME_TIMEOUT));
+        sendEvent("nfcReadingError", errorParams);
+        rejectPromise("READ_TIMEOUT", e.getMessage());
     }
-    
-    /**
-     * converte um byte para int
-     */
-    public static int byteToInt(byte b) {
-        return (int) b & 0xFF;
-    }
-    
+
     /**
-     * converte um byte para sua representação hex
+     * Cartão perdido depois do GPO: mantém a promise e o reader mode e dá tagLostGraceMillis
+     * para o cartão voltar ao campo; depois disso a leitura falha como antes
      */
-    public static String byteToHex(byte data) {
-        int hex = data & 0xFF;
-        return Integer.toHexString(hex);
+    private void suspendRead(IOException e, SessionTimings timings) {
+        final int graceMillis = tagLostGraceMillis;
+        Runnable expiry = new Runnable() {
+            @Override
+            public void run() {
+                expireSuspendedRead(this, e.getMessage());
+            }
+        };
+        synchronized (this) {
+            if (suspendedReadExpiry != null) {
+                sideEffects.cancel(suspendedReadExpiry);
+            }
+            suspendedReadExpiry = expiry;
+        }
+        sideEffects.postDelayed(expiry, graceMillis);
+
+        WritableMap params = Arguments.createMap();
+        params.putString("status", "suspended");
+        params.putString("error", e.getMessage());
+        params.putInt("graceMs", graceMillis);
+        params.putMap("timing", finishSession(timings, SessionJournal.OUTCOME_SUSPENDED));
+        sendEvent("nfcReadSuspended", params);
     }
-    
+
     /**
-     * divide um array de bytes em partes
+     * true se havia uma leitura suspensa dentro do prazo; ela passa a ser desta tag
      */
-    private static List<byte[]> divideArray(byte[] source, int chunksize) {
-        List<byte[]> result = new ArrayList<byte[]>();
-        int start = 0;
-        while (start < source.length) {
-            int end = Math.min(source.length, start + chunksize);
-            result.add(Arrays.copyOfRange(source, start, end));
-            start += chunksize;
+    private synchronized boolean claimSuspendedRead() {
+        if (suspendedReadExpiry == null) {
+            return false;
         }
-        return result;
+        sideEffects.cancel(suspendedReadExpiry);
+        suspendedReadExpiry = null;
+        return cardReader.hasCheckpoint();
     }
-    
-    private byte[] checkResponse(@NonNull byte[] data) {
-        if (data.length < 2) {
-            return null;
-        }
-        
-        int status = ((data[data.length - 2] & 0xff) << 8) | (data[data.length - 1] & 0xff);
-        if (status == 0x9000) {
-            byte[] response = new byte[data.length - 2];
-            System.arraycopy(data, 0, response, 0, data.length - 2);
-            return response;
-        }
-        return null;
+
+    private synchronized boolean hasSuspendedRead() {
+        return suspendedReadExpiry != null;
     }
-    
-    private List<byte[]> parseAfl(byte[] aflData) {
-        List<byte[]> records = new ArrayList<>();
-        
-        if (aflData == null || aflData.length % 4 != 0) {
-            return records;
-        }
-        
-        for (int i = 0; i < aflData.length; i += 4) {
-            byte[] record = new byte[4];
-            System.arraycopy(aflData, i, record, 0, 4);
-            records.add(record);
+
+    private synchronized void cancelSuspendedRead() {
+        if (suspendedReadExpiry != null) {
+            sideEffects.cancel(suspendedReadExpiry);
+            suspendedReadExpiry = null;
         }
-        
-        return records;
-    }
-    
-    private byte[] getPdolData(byte[] selectResponse) {
-        return findValueForTag(selectResponse, (byte) 0x9F, (byte) 0x38);
+        cardReader.discardCheckpoint();
     }
 
-    private byte[] findValueForTag(byte[] data, byte tag) {
-        if (data == null || data.length < 3) {
-            return null;
-        }
-        
-        int index = 0;
-        while (index < data.length - 2) {
-            if (data[index] == tag) {
-                // Encontramos a tag
-                int length = data[index + 1] & 0xFF;
-                if (index + 2 + length <= data.length) {
-                    byte[] value = new byte[length];
-                    System.arraycopy(data, index + 2, value, 0, length);
-                    return value;
-                }
+    /**
+     * prazo esgotado sem o cartão voltar: falha com o erro de comunicação original
+     */
+    private void expireSuspendedRead(Runnable expiry, String message) {
+        synchronized (this) {
+            if (suspendedReadExpiry != expiry) {
+                return;
             }
-            index++;
-        }
-        return null;
-    }
-    
-    private byte[] findValueForTag(byte[] data, byte tagFirstByte, byte tagSecondByte) {
-        if (data == null || data.length < 4) {
-            return null;
+            suspendedReadExpiry = null;
+            cardReader.discardCheckpoint();
         }
-        
-        int index = 0;
-        while (index < data.length - 3) {
-            if (data[index] == tagFirstByte && data[index + 1] == tagSecondByte) {
-                // Encontramos a tag
-                int length = data[index + 2] & 0xFF;
-                if (index + 3 + length <= data.length) {
-                    byte[] value = new byte[length];
-                    System.arraycopy(data, index + 3, value, 0, length);
-                    return value;
-                }
-            }
-            index++;
+        Log.w(TAG, "Cartão não foi reaproximado, leitura cancelada");
+        WritableMap errorParams = Arguments.createMap();
+        errorParams.putString("status", "error");
+        errorParams.putString("error", message);
+        sendEvent("nfcReadingError", errorParams);
+        rejectPromise("COMMUNICATION_ERROR", message);
+        if (!sessionMode) {
+            stopCardReading();
         }
-        return null;
     }
-    
-    private byte[][] getGpoFromPdolExtended(@NonNull byte[] pdol, byte[] alternativeTtq) {
-        byte[][] result = new byte[2][];
-        List<com.github.devnied.emvnfccard.iso7816emv.TagAndLength> tagAndLength = TlvUtil.parseTagAndLength(pdol);
-        int tagAndLengthSize = tagAndLength.size();
-        StringBuilder returnString = new StringBuilder();
-        returnString.append("The card is requesting " + tagAndLengthSize + (tagAndLengthSize == 1 ? " tag" : " tags")).append("\n");
-        returnString.append("\n");
-        returnString.append("Tag  Tag Name                        Length Value").append("\n");
-        returnString.append("-----------------------------------------------------").append("\n");
-        
-        if (tagAndLengthSize < 1) {
-            returnString.append("     no PDOL provided, returning an empty command").append("\n");
-            returnString.append("-----------------------------------------------------");
-            String tagLength2d = "00"; // length value
-            String tagLength2dAnd2 = "02"; // length value + 2
-            String constructedGpoCommandString = "80A80000" + tagLength2dAnd2 + "83" + tagLength2d + "" + "00";
-            result[0] = hexToBytes(constructedGpoCommandString);
-            result[1] = returnString.toString().getBytes(StandardCharsets.UTF_8);
-            return result;
-        }
-
-        int valueOfTagSum = 0; // total length
-        StringBuilder sb = new StringBuilder(); // takes the default values of the tags
-        DolValues dolValues = new DolValues();
-
-        for (int i = 0; i < tagAndLengthSize; i++) {
-            // get a single tag
-            com.github.devnied.emvnfccard.iso7816emv.TagAndLength tal = tagAndLength.get(i); // eg 9f3704
-            byte[] tagToSearch = tal.getTag().getTagBytes(); // gives the tag 9f37
-            int lengthOfTag = tal.getLength(); // 4
-            String nameOfTag = tal.getTag().getName();
-            valueOfTagSum += tal.getLength(); // add it to the sum
-
-            // now we are trying to find a default value
-            byte[] defaultValue = dolValues.getDolValue(tagToSearch, alternativeTtq);
-            byte[] usedValue = new byte[0];
-            if (defaultValue != null) {
-                if (defaultValue.length > lengthOfTag) {
-                    // cut it to correct length
-                    usedValue = Arrays.copyOfRange(defaultValue, 0, lengthOfTag);
-                } else if (defaultValue.length < lengthOfTag) {
-                    // increase length
-                    usedValue = new byte[lengthOfTag];
-                    System.arraycopy(defaultValue, 0, usedValue, 0, defaultValue.length);
-                } else {
-                    // correct length
-                    usedValue = defaultValue.clone();
-                }
-            } else {
-                // defaultValue is null means the tag was not found in our tags database for default values
-                usedValue = new byte[lengthOfTag];
-            }
 
-            // now usedValue does have the correct length
-            sb.append(bytesToHexNpe(usedValue));
-            returnString.append(trimStringRight(bytesToHexNpe(tagToSearch),5))
-                       .append(trimStringRight(nameOfTag, 36))
-                       .append(trimStringRight(String.valueOf(lengthOfTag), 3))
-                       .append(bytesToHexBlankNpe(usedValue))
-                       .append("\n");
-        }
-
-        returnString.append("-----------------------------------------------------").append("\n");
-        String constructedGpoString = sb.toString();
-        String tagLength2d = bytesToHexNpe(intToByteArray(valueOfTagSum)); // length value
-        String tagLength2dAnd2 = bytesToHexNpe(intToByteArray(valueOfTagSum + 2)); // length value + 2
-        String constructedGpoCommandString = "80A80000" + tagLength2dAnd2 + "83" + tagLength2d + constructedGpoString + "00";
-        result[0] = hexToBytes(constructedGpoCommandString);
-        result[1] = returnString.toString().getBytes(StandardCharsets.UTF_8);
-        return result;
-    }
-
-    private String getPanFromTrack2EquivalentData(byte[] track2Data) {
-        if (track2Data != null) {
-            String track2DataString = bytesToHexNpe(track2Data);
-            int posSeparator = track2DataString.toUpperCase().indexOf("D");
-            if (posSeparator > 0) {
-                return removeTrailingF(track2DataString.substring(0, posSeparator));
-            }
-            
-            // Se não encontrar o separador, tenta outra abordagem
-            posSeparator = track2DataString.indexOf("=");
-            if (posSeparator > 0) {
-                return track2DataString.substring(0, posSeparator);
-            }
-            
-            // Se ainda não encontrou, retorna os primeiros 16 dígitos (típico PAN)
-            return track2DataString.length() > 16 ? track2DataString.substring(0, 16) : track2DataString;
-        } else {
-            return "";
+    /**
+     * true quando a tag é a mesma da leitura anterior da sessão e foi vista há pouco;
+     * cada descoberta ignorada renova a janela, então um cartão parado no campo não é relido
+     */
+    private boolean isDebounced(byte[] tagId) {
+        long now = SystemClock.elapsedRealtime();
+        boolean debounced = lastTagId != null && Arrays.equals(lastTagId, tagId)
+                && now - lastTagSeenAt < SESSION_DEBOUNCE_MILLIS;
+        lastTagId = tagId;
+        if (debounced) {
+            lastTagSeenAt = now;
         }
+        return debounced;
     }
 
-    private String getExpirationDateFromTrack2EquivalentData(byte[] track2Data) {
-        if (track2Data != null) {
-            String track2DataString = bytesToHexNpe(track2Data);
-            int posSeparator = track2DataString.toUpperCase().indexOf("D");
-            if (posSeparator > 0 && posSeparator + 4 <= track2DataString.length()) {
-                // A data de validade vem após o separador, e é YYMM
-                String yymm = track2DataString.substring(posSeparator + 1, posSeparator + 5);
-                if (yymm.length() == 4) {
-                    // Converter para MM/YY
-                    return yymm.substring(2, 4) + "/" + yymm.substring(0, 2);
-                }
-            }
-            
-            // Se não encontrar o separador D, tentar o separador =
-            posSeparator = track2DataString.indexOf("=");
-            if (posSeparator > 0 && posSeparator + 4 <= track2DataString.length()) {
-                String yymm = track2DataString.substring(posSeparator + 1, posSeparator + 5);
-                if (yymm.length() == 4) {
-                    return yymm.substring(2, 4) + "/" + yymm.substring(0, 2);
-                }
-            }
-            
-            return "";
-        } else {
-            return "";
-        }
+    /**
+     * true quando o PAN é o mesmo da leitura anterior da sessão, terminada há pouco; compara
+     * os tokens, então o PAN em claro não fica guardado entre os toques
+     */
+    private boolean isRepeatedCard(String cardNumber) {
+        String token = cardNumber != null ? panTokenizer.tokenize(cardNumber) : null;
+        boolean repeated = token != null && token.equals(lastCardToken)
+                && SystemClock.elapsedRealtime() - lastTagSeenAt < SESSION_DEBOUNCE_MILLIS;
+        lastCardToken = token;
+        return repeated;
     }
 
-    private static String bytesToHexNpe(byte[] bytes) {
-        if (bytes != null) {
-            StringBuffer result = new StringBuffer();
-            for (byte b : bytes)
-                result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
-            return result.toString();
-        } else {
-            return "";
-        }
-    }
-    
     private void vibrate() {
         try {
             Vibrator vibrator = (Vibrator) reactContext.getSystemService(Context.VIBRATOR_SERVICE);
@@ -1012,61 +1279,75 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
         }
     }
 
-    private void resolvePromise(final Card card) {
-        if (card != null) {
-            isProcessingTag = false;
-            String cardNumber = card.getCardNumber();
-            String cardType = card.getCardType();
-            String expiryDate = card.getExpiryDate();
-            boolean isReady = card.isReady();
-            boolean isTagId = card.isTagId();
-
-            try {
-                // Criar uma nova WritableMap para cada destino (eventos e promessa)
-                WritableMap eventData = Arguments.createMap();
-                eventData.putString("cardType", cardType != null ? cardType : "");
-                eventData.putString("cardNumber", cardNumber != null ? cardNumber : "");
-                eventData.putString("expiryDate", expiryDate != null ? expiryDate : "");
-                eventData.putBoolean("isReady", isReady);
-                eventData.putBoolean("isTagId", isTagId);
-
-                // Enviar evento para React Native
-                sendEvent("onCardRead", eventData);
-
-                // Criar um novo WritableMap para a promessa
-                WritableMap promiseData = Arguments.createMap();
-                promiseData.putString("cardType", cardType != null ? cardType : "");
-                promiseData.putString("cardNumber", cardNumber != null ? cardNumber : "");
-                promiseData.putString("expiryDate", expiryDate != null ? expiryDate : "");
-                promiseData.putBoolean("isReady", isReady);
-                promiseData.putBoolean("isTagId", isTagId);
-
-                if (readPromise != null) {
-                    readPromise.resolve(promiseData);
-                    readPromise = null;
-                } else {
-                    Log.d(TAG, "Promise é nula em resolvePromise");
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Erro ao processar resolvePromise", e);
-                if (readPromise != null) {
-                    readPromise.reject("PROCESSING_ERROR", e.getMessage());
-                    readPromise = null;
-                }
-            }
-        } else {
+    /**
+     * Codifica o resultado (cartão, tempos da sessão e respostas brutas capturadas) uma única
+     * vez; o mesmo texto base64 vai para o evento onCardRead e para os pedidos cujos campos estão
+     * em foundFields. Sem emitEvent (cartão repetido na sessão ou parcial) só os pedidos recebem
+     * o resultado
+     */
+    private void resolvePromise(final Card card, int foundFields, boolean emitEvent) {
+        if (card == null) {
             Log.d(TAG, "Card é nulo em resolvePromise");
+            return;
+        }
+        try {
+            int length = resultFrame.encode(card, cardReader, resultTokenizer());
+            final String frame = Base64.encodeToString(resultFrame.getBuffer(), 0, length, Base64.NO_WRAP);
+            if (emitEvent) {
+                sideEffects.post(() -> {
+                    if (reactContext != null && reactContext.hasActiveReactInstance()) {
+                        emitOnCardRead(frame);
+                    } else {
+                        Log.w(TAG, "Não foi possível enviar evento: onCardRead - contexto inválido ou sem instância React ativa");
+                    }
+                });
+            }
+            // os pedidos que pediram mais do que este cartão trouxe continuam no registro
+            List<ReadRequests.Request<Promise>> covered = readRequests.takeCovered(foundFields);
+            for (ReadRequests.Request<Promise> request : covered) {
+                request.getHandle().resolve(frame);
+            }
+            if (covered.isEmpty() && !sessionMode) {
+                Log.d(TAG, "Nenhum pedido atendido em resolvePromise");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao processar resolvePromise", e);
+            rejectPromise("PROCESSING_ERROR", e.getMessage());
         }
     }
 
+    /**
+     * tokenizador aplicado ao que vai para o JS; null só com setClearPanResults(true)
+     */
+    private PanTokenizer resultTokenizer() {
+        return clearPanResults ? null : panTokenizer;
+    }
+
+    /**
+     * o toque falhou para todos: rejeita cada pedido pendente com o mesmo erro
+     */
     private void rejectPromise(String code, String message) {
-        if (readPromise != null) {
-            Log.d(TAG, "Rejeitando promise com código: " + code + ", mensagem: " + message);
-            readPromise.reject(code, message);
-            readPromise = null;
-        } else {
-            Log.e(TAG, "Tentativa de rejeitar promise nula");
+        List<ReadRequests.Request<Promise>> pending = readRequests.takeAll();
+        if (!pending.isEmpty()) {
+            Log.d(TAG, "Rejeitando " + pending.size() + " pedido(s) com código: " + code + ", mensagem: " + message);
+        } else if (!sessionMode) {
+            Log.e(TAG, "Nenhum pedido pendente para rejeitar");
+        }
+        for (ReadRequests.Request<Promise> request : pending) {
+            request.getHandle().reject(code, message);
+        }
+    }
+
+    /**
+     * prazo do toque: o menor entre o da sessão e os dos pedidos; 0 quando nenhum tem
+     */
+    private int tapDeadlineMillis() {
+        int deadline = readRequests.deadlineMillis();
+        int session = sessionMode ? sessionDeadlineMillis : 0;
+        if (session > 0 && (deadline == 0 || session < deadline)) {
+            return session;
         }
+        return deadline;
     }
 
     // Evento quando a Activity é pausada
@@ -1087,6 +1368,16 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
         stopCardReading();
     }
 
+    // Módulo descartado junto com a instância React
+    @Override
+    public void invalidate() {
+        sideEffects.quit();
+        if (journal != null) {
+            journal.close();
+        }
+        super.invalidate();
+    }
+
     @Override
     public void onActivityResult(Activity activity, int requestCode, int resultCode, android.content.Intent data) {
         // Nada a fazer aqui
@@ -1107,86 +1398,4 @@ public class NfcReaderModule extends ReactContextBaseJavaModule implements NfcAd
             this.second = second;
         }
     }
-
-    // Função auxiliar para remover caracteres F ao final do PAN
-    private String removeTrailingF(String input) {
-        int index;
-        for (index = input.length() - 1; index >= 0; index--) {
-            if (input.charAt(index) != 'f') {
-                break;
-            }
-        }
-        return input.substring(0, index + 1);
-    }
-
-    // Definindo a classe Card que faltava
-    private static class Card {
-        private String cardNumber;
-        private String cardType;
-        private String expiryDate;
-        private boolean isReady;
-        private boolean isTagId;
-
-        public Card(String cardNumber, String cardType, String expiryDate, boolean isReady, boolean isTagId) {
-            this.cardNumber = cardNumber;
-            this.cardType = cardType;
-            this.expiryDate = expiryDate;
-            this.isReady = isReady;
-            this.isTagId = isTagId;
-        }
-
-        public String getCardNumber() {
-            return cardNumber;
-        }
-
-        public String getCardType() {
-            return cardType;
-        }
-
-        public String getExpiryDate() {
-            return expiryDate;
-        }
-
-        public boolean isReady() {
-            return isReady;
-        }
-
-        public boolean isTagId() {
-            return isTagId;
-        }
-    }
-
-    /**
-     * converte uma string codificada em hexadecimal para um array de bytes
-     */
-    public static byte[] hexToBytes(String str) {
-        byte[] bytes = new byte[str.length() / 2];
-        for (int i = 0; i < bytes.length; i++) {
-            bytes[i] = (byte) Integer.parseInt(str.substring(2 * i, 2 * i + 2),
-                    16);
-        }
-        return bytes;
-    }
-
-    private String trimStringRight(String data, int len) {
-        if (data.length() >= len) {
-            data = data.substring(0, (len - 1));
-        }
-        while (data.length() < len) {
-            data = data + " ";
-        }
-        return data;
-    }
-
-    private String bytesToHexBlankNpe(byte[] bytes) {
-        if (bytes == null) return "";
-        StringBuffer result = new StringBuffer();
-        for (byte b : bytes)
-            result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1)).append(" ");
-        return result.toString();
-    }
-
-    private byte[] intToByteArray(int value) {
-        return new BigInteger(String.valueOf(value)).toByteArray();
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
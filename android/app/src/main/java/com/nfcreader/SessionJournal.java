@@ -0,0 +1,342 @@
+package com.nfcreader;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diário das sessões de leitura num arquivo mapeado em memória, só de acréscimo.
+ *
+ * Cada sessão grava uma entrada binária de tamanho fixo ({@link #ENTRY_SIZE} bytes, little
+ * endian) com horário, AID, fluxo do GPO, resultado, quantidade de APDUs, bytes trocados,
+ * duração de cada fase e o status word final. O PAN e a data de expiração nunca são gravados:
+ * {@link #append} não recebe nenhum dado do portador.
+ *
+ * A gravação é feita com escritas absolutas no buffer mapeado, sem alocação; o marcador da
+ * entrada é escrito por último, então uma entrada interrompida por um crash do processo fica
+ * sem marcador e é descartada na reabertura. As páginas sujas ficam no cache do sistema e
+ * sobrevivem ao fim do processo; {@link MappedByteBuffer#force()} só é chamado na rotação e
+ * no {@link #close()}.
+ *
+ * Quando o arquivo atual enche ele passa a ser o arquivo anterior (substituindo o que
+ * existia) e um novo é criado; o diário ocupa no máximo duas vezes o tamanho configurado.
+ *
+ * Layout do arquivo: cabeçalho de {@link #HEADER_SIZE} bytes (magic, versão, tamanho da
+ * entrada) seguido das entradas:
+ * <pre>
+ *  0 int    marcador ENTRY_MAGIC (gravado por último)
+ *  4 long   sequência, crescente entre arquivos
+ * 12 long   início da sessão, ms desde a época
+ * 20 int    duração total, µs
+ * 24 int    tempo até o primeiro APDU, µs (-1 sem APDU)
+ * 28 int[8] duração de cada {@link SessionTimings.Phase}, µs, na ordem do enum
+ * 60 int    bytes enviados
+ * 64 int    bytes recebidos
+ * 68 short  quantidade de APDUs
+ * 70 byte   resultado (OUTCOME_*)
+ * 71 byte   fluxo do GPO ({@link CardProfileCache#FLOW_TRACK2} etc., 0 se não houve)
+ * 72 int    status word da última resposta (-1 se não houve)
+ * 76 byte   tamanho do AID (0 a 16)
+ * 77 byte[16] AID
+ * </pre>
+ */
+public class SessionJournal {
+
+    private static final String TAG = "SessionJournal";
+
+    public static final int OUTCOME_SUCCESS = 1;
+    public static final int OUTCOME_INCOMPLETE = 2;  // cartão lido, campos pedidos não encontrados
+    public static final int OUTCOME_ERROR = 3;       // falha de comunicação ou cartão sem IsoDep
+    public static final int OUTCOME_SUSPENDED = 4;   // cartão perdido depois do GPO, aguardando retomada
+    public static final int OUTCOME_TIMEOUT = 5;     // cartão sem resposta no timeout do comando ou prazo esgotado
+    public static final int OUTCOME_CANCELLED = 6;   // leitura parada pelo app com o cartão no campo
+
+    public static final int HEADER_SIZE = 32;
+    public static final int ENTRY_SIZE = 96;
+    public static final int MAX_PHASES = 8;
+    public static final int MAX_AID_LENGTH = 16;
+    public static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    private static final int FILE_MAGIC = 0x4A52464E;   // "NFRJ"
+    private static final int ENTRY_MAGIC = 0x45524E4A;  // "JNRE"
+    private static final short VERSION = 1;
+
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_SEQUENCE = 4;
+    private static final int OFF_STARTED_AT = 12;
+    private static final int OFF_TOTAL = 20;
+    private static final int OFF_FIRST_APDU = 24;
+    private static final int OFF_PHASES = 28;
+    private static final int OFF_BYTES_OUT = 60;
+    private static final int OFF_BYTES_IN = 64;
+    private static final int OFF_APDU_COUNT = 68;
+    private static final int OFF_OUTCOME = 70;
+    private static final int OFF_FLOW = 71;
+    private static final int OFF_STATUS_WORD = 72;
+    private static final int OFF_AID_LENGTH = 76;
+    private static final int OFF_AID = 77;
+
+    private static final SessionTimings.Phase[] PHASES = SessionTimings.Phase.values();
+
+    /**
+     * uma entrada lida do diário
+     */
+    public static final class Entry {
+        public long sequence;
+        public long startedAtMillis;
+        public long totalMicros;
+        public long timeToFirstApduMicros;
+        public final long[] phaseMicros = new long[PHASES.length];
+        public int bytesOut;
+        public int bytesIn;
+        public int apduCount;
+        public int outcome;
+        public int flow;
+        public int statusWord;
+        public byte[] aid;
+    }
+
+    private final File current;
+    private final File previous;
+    private final int capacity;
+
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long nextSequence = 1;
+
+    /**
+     * abre (ou cria) o diário em directory; maxBytes é o tamanho de cada um dos dois arquivos
+     */
+    public SessionJournal(File directory, int maxBytes) throws IOException {
+        if (maxBytes < HEADER_SIZE + ENTRY_SIZE) {
+            throw new IllegalArgumentException("maxBytes deve comportar ao menos uma entrada");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Não foi possível criar o diretório " + directory);
+        }
+        current = new File(directory, "sessions.journal");
+        previous = new File(directory, "sessions.journal.1");
+        capacity = HEADER_SIZE + (maxBytes - HEADER_SIZE) / ENTRY_SIZE * ENTRY_SIZE;
+        nextSequence = lastSequence(previous) + 1;
+        open();
+    }
+
+    /**
+     * grava uma entrada para a sessão; aid pode ser null e flow 0 quando não chegaram a existir
+     */
+    public synchronized void append(SessionTimings timings, byte[] aid, int flow, int outcome) {
+        if (buffer == null) {
+            return;
+        }
+        if (position + ENTRY_SIZE > capacity) {
+            try {
+                rotate();
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao rotacionar o diário, entrada descartada", e);
+                return;
+            }
+        }
+        MappedByteBuffer b = buffer;
+        int p = position;
+        long totalNanos = timings.getTotalNanos();
+        b.putLong(p + OFF_SEQUENCE, nextSequence);
+        b.putLong(p + OFF_STARTED_AT, System.currentTimeMillis() - totalNanos / 1_000_000);
+        b.putInt(p + OFF_TOTAL, toMicros(totalNanos));
+        long firstApdu = timings.getTimeToFirstApduNanos();
+        b.putInt(p + OFF_FIRST_APDU, firstApdu >= 0 ? toMicros(firstApdu) : -1);
+        for (int i = 0; i < MAX_PHASES; i++) {
+            b.putInt(p + OFF_PHASES + i * 4, i < PHASES.length ? toMicros(timings.getPhaseNanos(PHASES[i])) : 0);
+        }
+        b.putInt(p + OFF_BYTES_OUT, timings.getBytesOut());
+        b.putInt(p + OFF_BYTES_IN, timings.getBytesIn());
+        b.putShort(p + OFF_APDU_COUNT, (short) Math.min(timings.getApduCount(), Short.MAX_VALUE));
+        b.put(p + OFF_OUTCOME, (byte) outcome);
+        b.put(p + OFF_FLOW, (byte) flow);
+        b.putInt(p + OFF_STATUS_WORD, timings.getLastStatusWord());
+        int aidLength = aid != null ? Math.min(aid.length, MAX_AID_LENGTH) : 0;
+        b.put(p + OFF_AID_LENGTH, (byte) aidLength);
+        for (int i = 0; i < MAX_AID_LENGTH; i++) {
+            b.put(p + OFF_AID + i, i < aidLength ? aid[i] : 0);
+        }
+        // marcador por último: só entradas completas são lidas de volta
+        b.putInt(p + OFF_MAGIC, ENTRY_MAGIC);
+        position = p + ENTRY_SIZE;
+        nextSequence++;
+    }
+
+    /**
+     * até maxEntries entradas com sequência maior ou igual a fromSequence, da mais antiga
+     * para a mais nova, incluindo o arquivo anterior
+     */
+    public synchronized List<Entry> read(long fromSequence, int maxEntries) {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            readFile(previous, fromSequence, maxEntries, entries);
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao ler o arquivo anterior do diário", e);
+        }
+        if (buffer != null) {
+            for (int p = HEADER_SIZE; p < position && entries.size() < maxEntries; p += ENTRY_SIZE) {
+                if (buffer.getLong(p + OFF_SEQUENCE) >= fromSequence) {
+                    entries.add(decode(buffer, p));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * sequência que a próxima entrada vai receber
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * apaga as entradas dos dois arquivos; a sequência continua crescendo
+     */
+    public synchronized void clear() throws IOException {
+        closeFile();
+        if (previous.exists() && !previous.delete()) {
+            Log.w(TAG, "Não foi possível apagar " + previous);
+        }
+        if (current.exists() && !current.delete()) {
+            Log.w(TAG, "Não foi possível apagar " + current);
+        }
+        open();
+    }
+
+    public synchronized void close() {
+        closeFile();
+    }
+
+    private void open() throws IOException {
+        file = new RandomAccessFile(current, "rw");
+        boolean valid = file.length() == capacity && validHeader(file);
+        if (!valid) {
+            file.setLength(0);
+            file.setLength(capacity);
+        }
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (!valid) {
+            buffer.putInt(0, FILE_MAGIC);
+            buffer.putShort(4, VERSION);
+            buffer.putShort(6, (short) ENTRY_SIZE);
+        }
+        // entradas completas são contíguas; a primeira sem marcador é onde a próxima será gravada
+        position = HEADER_SIZE;
+        while (position + ENTRY_SIZE <= capacity && buffer.getInt(position + OFF_MAGIC) == ENTRY_MAGIC) {
+            nextSequence = Math.max(nextSequence, buffer.getLong(position + OFF_SEQUENCE) + 1);
+            position += ENTRY_SIZE;
+        }
+    }
+
+    private void rotate() throws IOException {
+        buffer.force();
+        closeFile();
+        if (previous.exists() && !previous.delete()) {
+            throw new IOException("Não foi possível apagar " + previous);
+        }
+        if (!current.renameTo(previous)) {
+            throw new IOException("Não foi possível renomear " + current);
+        }
+        open();
+    }
+
+    private void closeFile() {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao fechar o diário", e);
+            }
+            file = null;
+        }
+    }
+
+    private static boolean validHeader(RandomAccessFile file) throws IOException {
+        byte[] header = new byte[8];
+        file.seek(0);
+        file.readFully(header);
+        return readInt(header, 0) == FILE_MAGIC
+                && (header[4] & 0xFF | (header[5] & 0xFF) << 8) == VERSION
+                && (header[6] & 0xFF | (header[7] & 0xFF) << 8) == ENTRY_SIZE;
+    }
+
+    /**
+     * lê as entradas completas de um arquivo fechado (o anterior), sem mapeá-lo
+     */
+    private static void readFile(File source, long fromSequence, int maxEntries, List<Entry> entries) throws IOException {
+        if (!source.exists()) {
+            return;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(source, "r")) {
+            if (!validHeader(in)) {
+                return;
+            }
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (long p = HEADER_SIZE; p + ENTRY_SIZE <= in.length() && entries.size() < maxEntries; p += ENTRY_SIZE) {
+                in.seek(p);
+                in.readFully(entry.array());
+                if (entry.getInt(OFF_MAGIC) != ENTRY_MAGIC) {
+                    break;
+                }
+                if (entry.getLong(OFF_SEQUENCE) >= fromSequence) {
+                    entries.add(decode(entry, 0));
+                }
+            }
+        }
+    }
+
+    private static long lastSequence(File source) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        readFile(source, 0, Integer.MAX_VALUE, entries);
+        return entries.isEmpty() ? 0 : entries.get(entries.size() - 1).sequence;
+    }
+
+    private static Entry decode(ByteBuffer b, int p) {
+        Entry entry = new Entry();
+        entry.sequence = b.getLong(p + OFF_SEQUENCE);
+        entry.startedAtMillis = b.getLong(p + OFF_STARTED_AT);
+        entry.totalMicros = b.getInt(p + OFF_TOTAL);
+        entry.timeToFirstApduMicros = b.getInt(p + OFF_FIRST_APDU);
+        for (int i = 0; i < PHASES.length && i < MAX_PHASES; i++) {
+            entry.phaseMicros[i] = b.getInt(p + OFF_PHASES + i * 4);
+        }
+        entry.bytesOut = b.getInt(p + OFF_BYTES_OUT);
+        entry.bytesIn = b.getInt(p + OFF_BYTES_IN);
+        entry.apduCount = b.getShort(p + OFF_APDU_COUNT);
+        entry.outcome = b.get(p + OFF_OUTCOME);
+        entry.flow = b.get(p + OFF_FLOW);
+        entry.statusWord = b.getInt(p + OFF_STATUS_WORD);
+        int aidLength = Math.min(b.get(p + OFF_AID_LENGTH) & 0xFF, MAX_AID_LENGTH);
+        entry.aid = new byte[aidLength];
+        for (int i = 0; i < aidLength; i++) {
+            entry.aid[i] = b.get(p + OFF_AID + i);
+        }
+        return entry;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int toMicros(long nanos) {
+        return (int) Math.min(nanos / 1000, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,75 @@
+package com.nfcreader;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+/**
+ * Fila única, em thread própria, para os efeitos colaterais da leitura: vibração, eventos
+ * para o JS e logs. Assim a thread do callback NFC só faz o que precisa enquanto o cartão
+ * está no campo; os efeitos rodam na ordem em que foram postados.
+ */
+public class SideEffectExecutor {
+
+    private static final String TAG = "SideEffectExecutor";
+
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    public SideEffectExecutor(String name) {
+        thread = new HandlerThread(name);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * executa a tarefa na thread de efeitos; exceções são registradas e não derrubam a fila
+     */
+    public void post(final Runnable task) {
+        boolean queued = handler.post(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Erro ao executar efeito colateral", e);
+            }
+        });
+        if (!queued) {
+            Log.w(TAG, "Fila de efeitos encerrada, tarefa descartada");
+        }
+    }
+
+    /**
+     * executa a tarefa na thread de efeitos depois de delayMillis; a mesma instância de task
+     * pode ser cancelada com {@link #cancel(Runnable)} enquanto não começou
+     */
+    public void postDelayed(final Runnable task, long delayMillis) {
+        if (!handler.postDelayed(task, delayMillis)) {
+            Log.w(TAG, "Fila de efeitos encerrada, tarefa descartada");
+        }
+    }
+
+    public void cancel(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+
+    /**
+     * Log.d na thread de efeitos
+     */
+    public void debug(final String tag, final String message) {
+        post(() -> Log.d(tag, message));
+    }
+
+    /**
+     * Log.d com a concatenação feita fora da thread de chamada
+     */
+    public void debug(final String tag, final String message, final Object value) {
+        post(() -> Log.d(tag, message + value));
+    }
+
+    /**
+     * encerra a thread depois de executar as tarefas já postadas
+     */
+    public void quit() {
+        thread.quitSafely();
+    }
+}
@@ -0,0 +1,82 @@
+package com.nfcreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+/**
+ * Decodificação do PAN e da data de expiração (Track 2 na tag 57 do GPO, ou 5A e 5F24 do
+ * registro) e detecção da bandeira pelo AID
+ */
+public class DecodeBenchmark {
+
+    /**
+     * Track 2 do perfil VISA, o único que entrega o PAN já no GPO
+     */
+    @State(Scope.Thread)
+    public static class Track2 {
+        byte[] track2;
+        final char[] digits = new char[Nibbles.BUFFER_SIZE];
+
+        @Setup
+        public void setUp() throws IOException {
+            EmvFixture fixture = new EmvFixture(VirtualEmvCard.Profile.VISA);
+            track2 = new TlvIndex().index(fixture.gpoResponse).copyValueOf(0x57);
+        }
+    }
+
+    /**
+     * registro com 5A e 5F24 dos perfis que leem o AFL
+     */
+    @State(Scope.Thread)
+    public static class Record {
+        @Param({"MASTERCARD", "AMEX"})
+        public VirtualEmvCard.Profile profile;
+
+        byte[] response;
+        final TlvIndex tlv = new TlvIndex();
+        final char[] digits = new char[Nibbles.BUFFER_SIZE];
+
+        @Setup
+        public void setUp() throws IOException {
+            response = new EmvFixture(profile).panRecordResponse;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Brand {
+        @Param({"VISA", "MASTERCARD", "AMEX"})
+        public VirtualEmvCard.Profile profile;
+
+        byte[] aid;
+
+        @Setup
+        public void setUp() {
+            aid = Nibbles.fromHex(profile.getAid());
+        }
+    }
+
+    @Benchmark
+    public void track2PanAndExpiry(Track2 state, Blackhole blackhole) {
+        byte[] track2 = state.track2;
+        blackhole.consume(EmvCardReader.getPanFromTrack2EquivalentData(track2, 0, track2.length, state.digits));
+        blackhole.consume(EmvCardReader.getExpirationDateFromTrack2EquivalentData(track2, 0, track2.length, state.digits));
+    }
+
+    @Benchmark
+    public void recordPanAndExpiry(Record state, Blackhole blackhole) {
+        TlvIndex tlv = state.tlv.index(state.response);
+        blackhole.consume(EmvCardReader.getPanFromRecord(tlv.copyValueOf(0x5A), state.digits));
+        blackhole.consume(EmvCardReader.getExpirationDateFromRecord(tlv.copyValueOf(0x5F24), state.digits));
+    }
+
+    @Benchmark
+    public AidRegistry.Entry cardType(Brand state) {
+        return AidRegistry.getDefault().resolve(state.aid);
+    }
+}
@@ -0,0 +1,105 @@
+package com.nfcreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+
+/**
+ * Compilação do PDOL e montagem do comando GET PROCESSING OPTIONS.
+ *
+ * transactionGpo é o caminho do toque com os dados da cobrança: a tabela já montada por
+ * {@link DolValues#withTransaction} e o Unpredictable Number do estoque. A renovação do estoque
+ * entra na medida, amortizada (no aparelho ela roda na fila de efeitos, fora do toque).
+ * encodeAtTap monta a tabela da cobrança e pede o Unpredictable Number ao SecureRandom dentro
+ * do toque.
+ */
+@State(Scope.Thread)
+public class DolBenchmark {
+
+    @Param({"VISA", "MASTERCARD", "AMEX"})
+    public VirtualEmvCard.Profile profile;
+
+    private byte[] pdolData;
+    private int pdolOffset;
+    private int pdolLength;
+    private DOL pdol;
+    private byte[] gpoData;
+    private final DolValues values = DolValues.getInstance();
+    private final TransactionContext context = new TransactionContext(12345, TransactionContext.CURRENCY_BRL,
+            TransactionContext.COUNTRY_BRAZIL, TransactionContext.TYPE_PURCHASE, 1_760_000_000_000L, null);
+    private DolValues transactionValues;
+    private final UnpredictableNumbers unpredictableNumbers = new UnpredictableNumbers();
+    private final SecureRandom random = new SecureRandom();
+    private int unpredictableNumberIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        EmvFixture fixture = new EmvFixture(profile);
+        TlvIndex tlv = new TlvIndex().index(fixture.selectAidResponse);
+        int position = tlv.find(0x9F38);
+        pdolData = tlv.data();
+        pdolOffset = position != TlvIndex.NOT_FOUND ? tlv.valueOffset(position) : 0;
+        pdolLength = position != TlvIndex.NOT_FOUND ? tlv.valueLength(position) : 0;
+        pdol = DOL.compile(DOL.Type.PDOL, pdolData, pdolOffset, pdolLength);
+        gpoData = new byte[pdol.getTotalLength()];
+        transactionValues = values.withTransaction(context);
+        unpredictableNumberIndex = pdol.indexOf(0x9F37);
+        random.nextBytes(new byte[UnpredictableNumbers.LENGTH]);
+    }
+
+    /**
+     * caminho de cada leitura: PDOL já visto, servido pelo cache de templates
+     */
+    @Benchmark
+    public DOL compileCached() {
+        return DOL.compile(DOL.Type.PDOL, pdolData, pdolOffset, pdolLength);
+    }
+
+    /**
+     * primeira leitura de um PDOL
+     */
+    @Benchmark
+    public DOL compileUncached() {
+        DOL.clearCache();
+        return DOL.compile(DOL.Type.PDOL, pdolData, pdolOffset, pdolLength);
+    }
+
+    @Benchmark
+    public byte[] buildGpoCommand() {
+        return pdol.buildGpoCommand(values, 0);
+    }
+
+    @Benchmark
+    public byte[] fillPdolValues() {
+        pdol.fill(gpoData, 0, values, 0);
+        return gpoData;
+    }
+
+    @Benchmark
+    public byte[] transactionGpo() {
+        byte[] command = pdol.buildGpoCommand(transactionValues, 0);
+        if (unpredictableNumberIndex >= 0) {
+            unpredictableNumbers.prefetch();
+            unpredictableNumbers.fill(command, pdol.getGpoDataOffset() + pdol.getOffset(unpredictableNumberIndex),
+                    pdol.getLength(unpredictableNumberIndex));
+        }
+        return command;
+    }
+
+    @Benchmark
+    public byte[] encodeAtTap() {
+        byte[] command = pdol.buildGpoCommand(values.withTransaction(context), 0);
+        if (unpredictableNumberIndex >= 0) {
+            byte[] unpredictableNumber = new byte[pdol.getLength(unpredictableNumberIndex)];
+            random.nextBytes(unpredictableNumber);
+            System.arraycopy(unpredictableNumber, 0, command,
+                    pdol.getGpoDataOffset() + pdol.getOffset(unpredictableNumberIndex), unpredictableNumber.length);
+        }
+        return command;
+    }
+}
@@ -0,0 +1,49 @@
+package com.nfcreader;
+
+import java.io.IOException;
+
+/**
+ * Respostas de uma leitura completa de cada perfil do {@link VirtualEmvCard}, gravadas uma
+ * vez com {@link RecordingTransport} e usadas como entrada dos benchmarks.
+ */
+final class EmvFixture {
+
+    // PPSE, SELECT AID, GPO e depois os READ RECORD
+    static final int SELECT_PPSE = 0;
+    static final int SELECT_AID = 1;
+    static final int GPO = 2;
+
+    final VirtualEmvCard.Profile profile;
+    // primeiro toque, com o AFL lido em ordem
+    final ApduTranscript transcript;
+    // segundo toque do mesmo cartão, com o registro do PAN já aprendido pelo leitor
+    final ApduTranscript repeatTranscript;
+    final byte[] aid;
+    final byte[] selectPpseResponse;
+    final byte[] selectAidResponse;
+    final byte[] gpoResponse;
+    // último registro lido (o que traz 5A e 5F24), ou null no perfil VISA, que não lê registros
+    final byte[] panRecordResponse;
+
+    EmvFixture(VirtualEmvCard.Profile profile) throws IOException {
+        this.profile = profile;
+        VirtualEmvCard card = new VirtualEmvCard(profile);
+        card.setRecordCount(3);
+        EmvCardReader reader = new EmvCardReader();
+        transcript = record(reader, card);
+        repeatTranscript = record(reader, card);
+        aid = Nibbles.fromHex(profile.getAid());
+        selectPpseResponse = transcript.getResponse(SELECT_PPSE);
+        selectAidResponse = transcript.getResponse(SELECT_AID);
+        gpoResponse = transcript.getResponse(GPO);
+        panRecordResponse = transcript.size() > GPO + 1 ? transcript.getResponse(transcript.size() - 1) : null;
+    }
+
+    private ApduTranscript record(EmvCardReader reader, VirtualEmvCard card) throws IOException {
+        RecordingTransport recorder = new RecordingTransport(card, false);
+        if (reader.readCard(recorder) == null) {
+            throw new IllegalStateException("Leitura do perfil " + profile + " falhou");
+        }
+        return recorder.getTranscript();
+    }
+}
@@ -0,0 +1,50 @@
+package com.nfcreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Custo, por toque, de trocar o PAN por um token.
+ *
+ * tokenizer é o caminho nativo: o {@link PanTokenizer} com o Mac já iniciado, como o módulo o
+ * mantém entre os toques. freshMac cria e inicia o Mac a cada toque. Não há tokenização do PAN
+ * no JS para comparar: utils/tokenization.ts gera o token do pagamento a partir do cobrador e
+ * da transação, sem o PAN.
+ */
+@State(Scope.Thread)
+public class PanTokenizationBenchmark {
+
+    private static final byte[] KEY = "nfc_payflow_secret_key_2023_hmac".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"4761739001010010", "374245001751006"})
+    public String pan;
+
+    private PanTokenizer tokenizer;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        tokenizer = new PanTokenizer(KEY);
+    }
+
+    @Benchmark
+    public String tokenizer() {
+        return tokenizer.tokenize(pan);
+    }
+
+    @Benchmark
+    public String freshMac() throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(PanTokenizer.ALGORITHM);
+        mac.init(new SecretKeySpec(KEY, PanTokenizer.ALGORITHM));
+        byte[] digest = mac.doFinal(pan.getBytes(StandardCharsets.US_ASCII));
+        return Nibbles.toHex(digest, 0, PanTokenizer.TOKEN_BYTES);
+    }
+}
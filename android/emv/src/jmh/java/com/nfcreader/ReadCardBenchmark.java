@@ -0,0 +1,50 @@
+package com.nfcreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Leitura completa (PPSE, SELECT AID, GPO, READ RECORD) reproduzida de um transcript sem
+ * latência de RF: mede apenas o custo de processamento do leitor por toque
+ */
+@State(Scope.Thread)
+public class ReadCardBenchmark {
+
+    @Param({"VISA", "MASTERCARD", "AMEX"})
+    public VirtualEmvCard.Profile profile;
+
+    private EmvFixture fixture;
+    private final EmvCardReader reader = new EmvCardReader();
+    private final EmvCardReader repeatReader = new EmvCardReader();
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new EmvFixture(profile);
+        // o primeiro toque ensina ao leitor onde está o PAN deste emissor
+        repeatReader.readCard(new ReplayTransport(fixture.transcript, ReplayTransport.Pacing.FAST));
+    }
+
+    /**
+     * cartão ainda não visto: o AFL é lido em ordem
+     */
+    @Benchmark
+    public Card firstTap() throws IOException {
+        reader.clearData();
+        reader.getProfileCache().clear();
+        return reader.readCard(new ReplayTransport(fixture.transcript, ReplayTransport.Pacing.FAST));
+    }
+
+    /**
+     * emissor já visto: o registro do PAN aprendido é lido primeiro
+     */
+    @Benchmark
+    public Card repeatTap() throws IOException {
+        repeatReader.clearData();
+        return repeatReader.readCard(new ReplayTransport(fixture.repeatTranscript, ReplayTransport.Pacing.FAST));
+    }
+}
@@ -0,0 +1,119 @@
+package com.nfcreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Custo, por toque, de preparar o resultado da leitura para o JS.
+ *
+ * legacyMaps reproduz o módulo antigo: um mapa para o evento onCardRead (com o relatório de
+ * tempos, um mapa por fase, APDU e aplicação) e outro para a promise, com HashMap/ArrayList
+ * como o JavaOnlyMap/JavaOnlyArray do React Native. frame é o caminho atual: o
+ * {@link CardResultFrame} codificado uma vez e convertido para base64, o texto que atravessa a
+ * JSI. O custo da travessia em si (JNI/JSI) não é medido aqui.
+ */
+@State(Scope.Thread)
+public class ResultTransferBenchmark {
+
+    @Param({"VISA", "MASTERCARD"})
+    public VirtualEmvCard.Profile profile;
+
+    @Param({"false", "true"})
+    public boolean rawRecords;
+
+    private final EmvCardReader reader = new EmvCardReader();
+    private final CardResultFrame frame = new CardResultFrame();
+    private final Base64.Encoder base64 = Base64.getEncoder();
+    private Card card;
+
+    @Setup
+    public void setUp() throws IOException {
+        EmvFixture fixture = new EmvFixture(profile);
+        reader.setCaptureRecords(rawRecords);
+        card = reader.readCard(new ReplayTransport(fixture.transcript, ReplayTransport.Pacing.FAST));
+        reader.getTimings().finish();
+    }
+
+    @Benchmark
+    public String frame() {
+        int length = frame.encode(card, reader);
+        ByteBuffer encoded = base64.encode(ByteBuffer.wrap(frame.getBuffer(), 0, length));
+        return new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public Object legacyMaps() {
+        Map<String, Object> event = cardMap();
+        event.put("timing", timingReport(reader.getTimings()));
+        Map<String, Object> promise = cardMap();
+        return new Object[] {event, promise};
+    }
+
+    private Map<String, Object> cardMap() {
+        AidRegistry.Entry application = reader.getSelectedApplication();
+        Map<String, Object> map = new HashMap<>();
+        map.put("cardType", card.getCardType() != null ? card.getCardType() : "");
+        map.put("cardProduct", application.getProduct());
+        map.put("readStrategy", application.getStrategy().name());
+        map.put("cardNumber", card.getCardNumber() != null ? card.getCardNumber() : "");
+        map.put("expiryDate", card.getExpiryDate() != null ? card.getExpiryDate() : "");
+        map.put("isReady", card.isReady());
+        map.put("isTagId", card.isTagId());
+        map.put("apduCount", (double) reader.getExchangeCount());
+        map.put("skippedApdus", (double) reader.getSkippedExchangeCount());
+        return map;
+    }
+
+    private static Map<String, Object> timingReport(SessionTimings timings) {
+        Map<String, Object> report = new HashMap<>();
+        report.put("totalMs", timings.getTotalNanos() / 1_000_000.0);
+        report.put("timeToFirstApduMs", timings.getTimeToFirstApduNanos() / 1_000_000.0);
+        report.put("apduCount", (double) timings.getApduCount());
+        report.put("bytesOut", (double) timings.getBytesOut());
+        report.put("bytesIn", (double) timings.getBytesIn());
+        Map<String, Object> phases = new HashMap<>();
+        for (SessionTimings.Phase phase : SessionTimings.Phase.values()) {
+            long nanos = timings.getPhaseNanos(phase);
+            if (nanos > 0) {
+                phases.put(phase.name(), nanos / 1_000_000.0);
+            }
+        }
+        report.put("phases", phases);
+        List<Object> apdus = new ArrayList<>();
+        for (int i = 0; i < timings.getRecordedApduCount(); i++) {
+            Map<String, Object> apdu = new HashMap<>();
+            apdu.put("phase", timings.getApduPhase(i).name());
+            apdu.put("ms", timings.getApduNanos(i) / 1_000_000.0);
+            apdu.put("bytesOut", (double) timings.getApduBytesOut(i));
+            apdu.put("bytesIn", (double) timings.getApduBytesIn(i));
+            int sw = timings.getApduStatusWord(i);
+            apdu.put("sw", sw >= 0 ? String.format("%04X", sw) : "");
+            apdus.add(apdu);
+        }
+        report.put("apdus", apdus);
+        List<Object> applications = new ArrayList<>();
+        for (int i = 0; i < timings.getApplicationCount(); i++) {
+            byte[] aid = timings.getApplicationAid(i);
+            Map<String, Object> application = new HashMap<>();
+            application.put("aid", Nibbles.toHex(aid));
+            application.put("brand", AidRegistry.getDefault().resolve(aid).getBrand());
+            application.put("priority", (double) timings.getApplicationPriority(i));
+            application.put("result", timings.getApplicationResult(i).name());
+            applications.add(application);
+        }
+        report.put("applications", applications);
+        return report;
+    }
+}
@@ -0,0 +1,45 @@
+package com.nfcreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Indexação BER-TLV das respostas de SELECT AID, GPO e READ RECORD e busca das tags usadas
+ * pelo leitor, com o índice reutilizado como no {@link EmvCardReader}
+ */
+@State(Scope.Thread)
+public class TlvIndexBenchmark {
+
+    @Param({"VISA", "MASTERCARD", "AMEX"})
+    public VirtualEmvCard.Profile profile;
+
+    private EmvFixture fixture;
+    private final TlvIndex tlv = new TlvIndex();
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new EmvFixture(profile);
+    }
+
+    @Benchmark
+    public int selectAidFindPdol() {
+        return tlv.index(fixture.selectAidResponse).find(0x9F38);
+    }
+
+    @Benchmark
+    public int gpoFindTrack2OrAfl() {
+        tlv.index(fixture.gpoResponse);
+        int position = tlv.find(0x57);
+        return position != TlvIndex.NOT_FOUND ? position : Math.max(tlv.find(0x80), tlv.find(0x94));
+    }
+
+    @Benchmark
+    public int checkResponse() {
+        return (TlvIndex.isSuccess(fixture.selectAidResponse) ? 1 : 0) + (TlvIndex.isSuccess(fixture.gpoResponse) ? 1 : 0);
+    }
+}
@@ -0,0 +1,110 @@
+package com.nfcreader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lista de aplicações do PPSE na ordem em que devem ser selecionadas.
+ *
+ * Cada Directory Entry (tag 61) da FCI do PPSE traz o AID (4F) e, opcionalmente, o Application
+ * Priority Indicator (87), cujos 4 bits baixos vão de 1 (maior prioridade) a 15; 0 ou ausente
+ * significa sem prioridade. A ordem é:
+ * <ol>
+ *   <li>bandeiras preferidas pelo terminal, na ordem em que foram configuradas;</li>
+ *   <li>prioridade do cartão (tag 87), as aplicações sem prioridade por último;</li>
+ *   <li>ordem em que aparecem no PPSE.</li>
+ * </ol>
+ */
+public final class AidCandidates {
+
+    public static final int NO_PRIORITY = 0;
+
+    /**
+     * Uma aplicação anunciada no PPSE
+     */
+    public static final class Candidate {
+        private final byte[] aid;
+        private final int priority;
+        private final int directoryOrder;
+        private final AidRegistry.Entry application;
+        private final int rank;
+
+        Candidate(byte[] aid, int priority, int directoryOrder, AidRegistry.Entry application, int rank) {
+            this.aid = aid;
+            this.priority = priority;
+            this.directoryOrder = directoryOrder;
+            this.application = application;
+            this.rank = rank;
+        }
+
+        public byte[] getAid() {
+            return aid;
+        }
+
+        /** 1 a 15 (tag 87), ou {@link #NO_PRIORITY} */
+        public int getPriority() {
+            return priority;
+        }
+
+        /** posição (a partir de 0) no PPSE */
+        public int getDirectoryOrder() {
+            return directoryOrder;
+        }
+
+        public AidRegistry.Entry getApplication() {
+            return application;
+        }
+
+        private int sortKey() {
+            // preferência da bandeira, depois prioridade (sem prioridade = 16), depois ordem do PPSE
+            int priorityKey = priority == NO_PRIORITY ? 16 : priority;
+            return (rank << 16) | (priorityKey << 8) | Math.min(directoryOrder, 0xFF);
+        }
+    }
+
+    private AidCandidates() {
+    }
+
+    /**
+     * Lê as aplicações de uma resposta de SELECT PPSE já indexada e as ordena.
+     *
+     * @param preferredBrands bandeiras ({@link AidRegistry.Entry#getBrand()}) a tentar primeiro,
+     *                        em ordem de preferência; pode ser vazia
+     */
+    public static List<Candidate> rank(TlvIndex ppse, AidRegistry registry, List<String> preferredBrands) {
+        List<Candidate> candidates = new ArrayList<>();
+        boolean templates = false;
+        for (int i = ppse.find(0x61); i != TlvIndex.NOT_FOUND; i = ppse.findNext(0x61, i)) {
+            templates = true;
+            int end = ppse.valueOffset(i) + ppse.valueLength(i);
+            int aidPosition = TlvIndex.NOT_FOUND;
+            int priority = NO_PRIORITY;
+            for (int j = i + 1; j < ppse.size() && ppse.valueOffset(j) < end; j++) {
+                int tag = ppse.tagAt(j);
+                if (tag == 0x4F && aidPosition == TlvIndex.NOT_FOUND) {
+                    aidPosition = j;
+                } else if (tag == 0x87 && ppse.valueLength(j) > 0) {
+                    priority = ppse.data()[ppse.valueOffset(j)] & 0x0F;
+                }
+            }
+            if (aidPosition != TlvIndex.NOT_FOUND) {
+                candidates.add(candidate(ppse.copyValue(aidPosition), priority, candidates.size(), registry, preferredBrands));
+            }
+        }
+        if (!templates) {
+            // PPSE sem Directory Entry: AIDs soltos, sem prioridade
+            for (int i = ppse.find(0x4F); i != TlvIndex.NOT_FOUND; i = ppse.findNext(0x4F, i)) {
+                candidates.add(candidate(ppse.copyValue(i), NO_PRIORITY, candidates.size(), registry, preferredBrands));
+            }
+        }
+        Collections.sort(candidates, (a, b) -> Integer.compare(a.sortKey(), b.sortKey()));
+        return candidates;
+    }
+
+    private static Candidate candidate(byte[] aid, int priority, int order, AidRegistry registry, List<String> preferredBrands) {
+        AidRegistry.Entry application = registry.resolve(aid);
+        int rank = preferredBrands.indexOf(application.getBrand());
+        return new Candidate(aid, priority, order, application, rank < 0 ? preferredBrands.size() : rank);
+    }
+}
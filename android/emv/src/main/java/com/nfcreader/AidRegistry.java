@@ -0,0 +1,274 @@
+package com.nfcreader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Registro de AIDs de pagamento: resolve bandeira, produto e estratégia de leitura a partir dos
+ * bytes do AID, sem convertê-lo para String.
+ *
+ * Os prefixos (RID de 5 bytes seguido ou não do PIX) ficam numa trie de bytes guardada em arrays
+ * paralelos, com filhos encadeados como primeiro filho / próximo irmão. A resolução percorre o AID
+ * byte a byte e devolve a entrada do prefixo mais longo encontrado, de modo que
+ * A0000000032010 (Visa Electron) vence A000000003 (Visa) e AIDs com sufixo proprietário do emissor
+ * continuam sendo reconhecidos. Nada é alocado na resolução.
+ *
+ * O registro padrão já traz as principais redes; novas entradas podem ser registradas em tempo de
+ * execução (pelo JS ou por um arquivo de assets, ver {@link #load(Reader)}) e substituem a entrada
+ * de mesmo prefixo.
+ */
+public class AidRegistry {
+
+    /**
+     * Onde o PAN e a validade costumam estar para a aplicação
+     */
+    public enum ReadStrategy {
+        GPO_TRACK2,   // Track 2 (tag 57) já na resposta do GPO
+        READ_RECORDS  // AFL no GPO, PAN nas tags 5A/5F24 dos registros
+    }
+
+    /**
+     * Resultado da resolução de um AID
+     */
+    public static final class Entry {
+        private final byte[] prefix;
+        private final String brand;
+        private final String product;
+        private final ReadStrategy strategy;
+
+        public Entry(byte[] prefix, String brand, String product, ReadStrategy strategy) {
+            this.prefix = prefix;
+            this.brand = brand;
+            this.product = product;
+            this.strategy = strategy;
+        }
+
+        /** prefixo registrado; vazio na entrada desconhecida */
+        public byte[] getPrefix() {
+            return prefix.clone();
+        }
+
+        public String getBrand() {
+            return brand;
+        }
+
+        public String getProduct() {
+            return product;
+        }
+
+        public ReadStrategy getStrategy() {
+            return strategy;
+        }
+
+        public boolean isKnown() {
+            return prefix.length > 0;
+        }
+
+        @Override
+        public String toString() {
+            return Nibbles.toHex(prefix) + " " + brand + " / " + product + " (" + strategy + ")";
+        }
+    }
+
+    public static final Entry UNKNOWN = new Entry(new byte[0], "Desconhecido", "Desconhecido", ReadStrategy.READ_RECORDS);
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private static final AidRegistry DEFAULT = createDefault();
+
+    // nó i: byte que leva a ele, primeiro filho, próximo irmão e entrada (ou null)
+    private byte[] labels;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private Entry[] entries;
+    private int nodeCount;
+    private int entryCount;
+
+    public AidRegistry() {
+        labels = new byte[64];
+        firstChild = new int[64];
+        nextSibling = new int[64];
+        entries = new Entry[64];
+        nodeCount = 1;
+        firstChild[ROOT] = NONE;
+        nextSibling[ROOT] = NONE;
+    }
+
+    /**
+     * registro compartilhado pelo leitor e pelo módulo nativo, com a tabela padrão
+     */
+    public static AidRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * registra (ou substitui) a entrada para o prefixo informado
+     */
+    public synchronized void register(byte[] prefix, String brand, String product, ReadStrategy strategy) {
+        if (prefix == null || prefix.length == 0 || prefix.length > 16) {
+            throw new IllegalArgumentException("prefixo de AID deve ter de 1 a 16 bytes");
+        }
+        int node = ROOT;
+        for (byte b : prefix) {
+            int child = childOf(node, b);
+            if (child == NONE) {
+                child = addNode(node, b);
+            }
+            node = child;
+        }
+        if (entries[node] == null) {
+            entryCount++;
+        }
+        entries[node] = new Entry(prefix.clone(), brand, product, strategy);
+    }
+
+    public void register(String prefixHex, String brand, String product, ReadStrategy strategy) {
+        register(Nibbles.fromHex(prefixHex), brand, product, strategy);
+    }
+
+    /**
+     * entrada do prefixo mais longo de aid, ou {@link #UNKNOWN}
+     */
+    public Entry resolve(byte[] aid) {
+        return aid == null ? UNKNOWN : resolve(aid, 0, aid.length);
+    }
+
+    /**
+     * entrada do prefixo mais longo de data[offset, offset + length), ou {@link #UNKNOWN}
+     */
+    public synchronized Entry resolve(byte[] data, int offset, int length) {
+        Entry best = UNKNOWN;
+        int node = ROOT;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            node = childOf(node, data[i]);
+            if (node == NONE) {
+                break;
+            }
+            if (entries[node] != null) {
+                best = entries[node];
+            }
+        }
+        return best;
+    }
+
+    public synchronized int size() {
+        return entryCount;
+    }
+
+    /**
+     * Carrega entradas de texto, uma por linha: AID;bandeira;produto;estratégia. A estratégia
+     * ({@link ReadStrategy}) é opcional e vale READ_RECORDS quando omitida; linhas vazias e
+     * iniciadas por # são ignoradas.
+     *
+     * @return quantidade de entradas registradas
+     */
+    public int load(Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        int loaded = 0;
+        int lineNumber = 0;
+        for (String line; (line = reader.readLine()) != null; ) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(";", -1);
+            if (fields.length < 3) {
+                throw new IOException("linha " + lineNumber + ": esperado AID;bandeira;produto[;estratégia]");
+            }
+            try {
+                ReadStrategy strategy = fields.length > 3 && !fields[3].trim().isEmpty()
+                        ? ReadStrategy.valueOf(fields[3].trim())
+                        : ReadStrategy.READ_RECORDS;
+                register(fields[0].trim(), fields[1].trim(), fields[2].trim(), strategy);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("linha " + lineNumber + ": " + e.getMessage(), e);
+            }
+            loaded++;
+        }
+        return loaded;
+    }
+
+    private int childOf(int node, byte label) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (labels[child] == label) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    private int addNode(int parent, byte label) {
+        if (nodeCount == labels.length) {
+            int capacity = labels.length * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            entries = Arrays.copyOf(entries, capacity);
+        }
+        int node = nodeCount++;
+        labels[node] = label;
+        firstChild[node] = NONE;
+        nextSibling[node] = firstChild[parent];
+        firstChild[parent] = node;
+        return node;
+    }
+
+    private static AidRegistry createDefault() {
+        AidRegistry registry = new AidRegistry();
+        ReadStrategy gpo = ReadStrategy.GPO_TRACK2;
+        ReadStrategy records = ReadStrategy.READ_RECORDS;
+
+        // Visa: qVSDC devolve a Track 2 no GPO
+        registry.register("A000000003", "Visa", "Visa", gpo);
+        registry.register("A0000000031010", "Visa", "Visa Crédito/Débito", gpo);
+        registry.register("A0000000032010", "Visa Electron", "Visa Electron", gpo);
+        registry.register("A0000000032020", "V PAY", "V PAY", gpo);
+        registry.register("A0000000033010", "Visa", "Visa Interlink", gpo);
+        registry.register("A0000000038010", "Visa", "Visa Plus", gpo);
+
+        // Mastercard: PayPass M/Chip devolve o AFL e o PAN fica nos registros
+        registry.register("A000000004", "Mastercard", "Mastercard", records);
+        registry.register("A0000000041010", "Mastercard", "Mastercard Crédito/Débito", records);
+        registry.register("A0000000042203", "Maestro", "Maestro (EUA)", records);
+        registry.register("A0000000043060", "Maestro", "Maestro", records);
+        registry.register("A0000000046000", "Mastercard", "Cirrus", records);
+        registry.register("A000000005", "Maestro", "Maestro UK", records);
+
+        registry.register("A000000025", "American Express", "American Express", records);
+        registry.register("A00000002501", "American Express", "American Express", records);
+
+        // Brasil
+        registry.register("A000000494", "Elo", "Elo", records);
+        registry.register("A0000004941010", "Elo", "Elo Crédito", records);
+        registry.register("A0000004942010", "Elo", "Elo Débito", records);
+        registry.register("A0000006151010", "Hipercard", "Hipercard", records);
+
+        registry.register("A000000065", "JCB", "JCB", records);
+        registry.register("A0000000651010", "JCB", "JCB J/Smart", records);
+        registry.register("A000000152", "Discover", "Discover", records);
+        registry.register("A0000001523010", "Discover", "Discover D-PAS / Diners Club", records);
+        registry.register("A000000324", "Discover", "Discover", records);
+        registry.register("A0000003241010", "Discover", "Discover Zip", records);
+        // UnionPay: qPBOC devolve a Track 2 no GPO
+        registry.register("A000000333", "UnionPay", "UnionPay", gpo);
+        registry.register("A000000333010101", "UnionPay", "UnionPay Débito", gpo);
+        registry.register("A000000333010102", "UnionPay", "UnionPay Crédito", gpo);
+        registry.register("A000000333010103", "UnionPay", "UnionPay Quasi-Crédito", gpo);
+        registry.register("A000000277", "Interac", "Interac", records);
+        registry.register("A0000002771010", "Interac", "Interac Flash", records);
+        registry.register("A000000524", "RuPay", "RuPay", records);
+        registry.register("A0000005241010", "RuPay", "RuPay", records);
+        registry.register("A000000658", "Mir", "Mir", records);
+        registry.register("A0000006581010", "Mir", "Mir Crédito", records);
+        registry.register("A0000006582010", "Mir", "Mir Débito", records);
+        registry.register("A000000042", "CB", "Cartes Bancaires", records);
+        registry.register("A0000000421010", "CB", "Cartes Bancaires", records);
+        registry.register("A000000059", "girocard", "girocard", records);
+        registry.register("A0000000291010", "Link", "Link ATM", records);
+        return registry;
+    }
+}
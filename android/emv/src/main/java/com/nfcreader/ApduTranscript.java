@@ -0,0 +1,240 @@
+package com.nfcreader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transcrição dos APDUs de uma leitura: cada comando, a resposta (ou o erro do transporte),
+ * o instante de envio relativo ao primeiro comando e a duração da troca.
+ *
+ * Gravada por {@link RecordingTransport} e reproduzida por {@link ReplayTransport}, permite
+ * repetir na JVM a leitura de um cartão que falhou ou demorou em campo sem o cartão físico.
+ *
+ * Formato binário (big endian, {@link DataOutputStream}):
+ * <pre>
+ * int   magic "APDT"
+ * byte  versão
+ * byte  flags (bit 0: PAN mascarado na captura)
+ * int   quantidade de trocas
+ * para cada troca:
+ *   int   instante de envio desde o primeiro comando, µs
+ *   int   duração, µs
+ *   short tamanho do comando, seguido dos bytes
+ *   short tamanho da resposta, seguido dos bytes; 0xFFFF quando o transporte lançou
+ *         exceção, seguido da mensagem (writeUTF)
+ * </pre>
+ */
+public class ApduTranscript {
+
+    private static final int MAGIC = 0x41504454; // "APDT"
+    private static final int VERSION = 1;
+    private static final int FLAG_PAN_MASKED = 0x01;
+    private static final int NO_RESPONSE = 0xFFFF;
+
+    // dígitos do PAN mantidos no mascaramento: BIN no início, últimos 4 no fim
+    private static final int KEEP_LEADING = 6;
+    private static final int KEEP_TRAILING = 4;
+
+    private final List<byte[]> commands = new ArrayList<>();
+    private final List<byte[]> responses = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+    private final List<long[]> times = new ArrayList<>();
+    private final boolean panMasked;
+    private long originNanos = -1;
+
+    public ApduTranscript(boolean panMasked) {
+        this.panMasked = panMasked;
+    }
+
+    /**
+     * registra uma troca iniciada em startNanos ({@link System#nanoTime()}); response null e
+     * error preenchido quando o transporte lançou exceção
+     */
+    void add(long startNanos, long durationNanos, byte[] command, byte[] response, String error) {
+        if (originNanos < 0) {
+            originNanos = startNanos;
+        }
+        commands.add(command.clone());
+        responses.add(response != null ? response.clone() : null);
+        errors.add(response != null ? null : (error != null ? error : ""));
+        times.add(new long[]{startNanos - originNanos, durationNanos});
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    public boolean isPanMasked() {
+        return panMasked;
+    }
+
+    public byte[] getCommand(int index) {
+        return commands.get(index);
+    }
+
+    /**
+     * resposta gravada, ou null quando a troca terminou em exceção ({@link #getError(int)})
+     */
+    public byte[] getResponse(int index) {
+        return responses.get(index);
+    }
+
+    public String getError(int index) {
+        return errors.get(index);
+    }
+
+    /**
+     * instante de envio do comando, contado a partir do primeiro comando
+     */
+    public long getStartOffsetNanos(int index) {
+        return times.get(index)[0];
+    }
+
+    public long getDurationNanos(int index) {
+        return times.get(index)[1];
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(panMasked ? FLAG_PAN_MASKED : 0);
+        out.writeInt(size());
+        for (int i = 0; i < size(); i++) {
+            out.writeInt(toMicros(getStartOffsetNanos(i)));
+            out.writeInt(toMicros(getDurationNanos(i)));
+            byte[] command = commands.get(i);
+            out.writeShort(command.length);
+            out.write(command);
+            byte[] response = responses.get(i);
+            if (response != null) {
+                out.writeShort(response.length);
+                out.write(response);
+            } else {
+                out.writeShort(NO_RESPONSE);
+                out.writeUTF(errors.get(i));
+            }
+        }
+        out.flush();
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + size() * 48);
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            // ByteArrayOutputStream não lança IOException
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static ApduTranscript readFrom(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Não é um transcript de APDUs");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Versão de transcript não suportada: " + version);
+        }
+        int flags = in.readUnsignedByte();
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Quantidade de trocas inválida: " + count);
+        }
+        ApduTranscript transcript = new ApduTranscript((flags & FLAG_PAN_MASKED) != 0);
+        transcript.originNanos = 0;
+        for (int i = 0; i < count; i++) {
+            long start = in.readInt() * 1000L;
+            long duration = in.readInt() * 1000L;
+            byte[] command = new byte[in.readUnsignedShort()];
+            in.readFully(command);
+            int responseLength = in.readUnsignedShort();
+            if (responseLength != NO_RESPONSE) {
+                byte[] response = new byte[responseLength];
+                in.readFully(response);
+                transcript.add(start, duration, command, response, null);
+            } else {
+                transcript.add(start, duration, command, null, in.readUTF());
+            }
+        }
+        return transcript;
+    }
+
+    public static ApduTranscript fromByteArray(byte[] data) throws IOException {
+        return readFrom(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Cópia da resposta com os dígitos do PAN trocados por 0, exceto os 6 primeiros e os 4
+     * últimos, nas tags 5A (PAN), 57 e 9F6B (Track 2) e 56 (Track 1). Tamanhos e estrutura
+     * TLV não mudam, então a leitura reproduzida percorre o mesmo caminho.
+     */
+    public static byte[] maskPan(byte[] response) {
+        TlvIndex tlv = new TlvIndex().index(response);
+        byte[] masked = null;
+        for (int i = 0; i < tlv.size(); i++) {
+            int tag = tlv.tagAt(i);
+            if (tag == 0x5A || tag == 0x57 || tag == 0x9F6B || tag == 0x56) {
+                if (masked == null) {
+                    masked = response.clone();
+                }
+                if (tag == 0x56) {
+                    maskAsciiPan(masked, tlv.valueOffset(i), tlv.valueLength(i));
+                } else {
+                    maskBcdPan(masked, tlv.valueOffset(i), tlv.valueLength(i));
+                }
+            }
+        }
+        return masked != null ? masked : response;
+    }
+
+    /**
+     * PAN em BCD, terminando no separador D (Track 2), no preenchimento F ou no fim do valor
+     */
+    static void maskBcdPan(byte[] data, int offset, int length) {
+        int digits = 0;
+        while (digits < length * 2) {
+            int nibble = nibble(data, offset, digits);
+            if (nibble > 9) {
+                break;
+            }
+            digits++;
+        }
+        for (int n = KEEP_LEADING; n < digits - KEEP_TRAILING; n++) {
+            int index = offset + n / 2;
+            data[index] = (byte) (n % 2 == 0 ? data[index] & 0x0F : data[index] & 0xF0);
+        }
+    }
+
+    /**
+     * Track 1: "B" + PAN em ASCII até o separador '^'
+     */
+    private static void maskAsciiPan(byte[] data, int offset, int length) {
+        int start = length > 0 && data[offset] == 'B' ? offset + 1 : offset;
+        int end = start;
+        while (end < offset + length && data[end] >= '0' && data[end] <= '9') {
+            end++;
+        }
+        for (int i = start + KEEP_LEADING; i < end - KEEP_TRAILING; i++) {
+            data[i] = '0';
+        }
+    }
+
+    private static int nibble(byte[] data, int offset, int digit) {
+        int b = data[offset + digit / 2] & 0xFF;
+        return digit % 2 == 0 ? b >> 4 : b & 0x0F;
+    }
+
+    private static int toMicros(long nanos) {
+        return (int) Math.min(nanos / 1000, Integer.MAX_VALUE);
+    }
+}
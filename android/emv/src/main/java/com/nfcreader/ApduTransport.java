@@ -0,0 +1,21 @@
+package com.nfcreader;
+
+import java.io.IOException;
+
+/**
+ * Canal por onde o fluxo de leitura EMV envia comandos APDU ao cartão.
+ *
+ * Implementações: {@link IsoDepTransport} para o cartão físico via NFC e
+ * {@link VirtualEmvCard} para executar o fluxo na JVM, sem telefone nem cartão.
+ */
+public interface ApduTransport {
+
+    /**
+     * envia um comando APDU e retorna a resposta completa, incluindo SW1 SW2
+     */
+    byte[] transceive(byte[] command) throws IOException;
+
+    int getTimeout();
+
+    void setTimeout(int timeoutMillis);
+}
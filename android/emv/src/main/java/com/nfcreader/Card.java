@@ -0,0 +1,40 @@
+package com.nfcreader;
+
+/**
+ * Dados do cartão obtidos ao final da leitura EMV
+ */
+public class Card {
+    private String cardNumber;
+    private String cardType;
+    private String expiryDate;
+    private boolean isReady;
+    private boolean isTagId;
+
+    public Card(String cardNumber, String cardType, String expiryDate, boolean isReady, boolean isTagId) {
+        this.cardNumber = cardNumber;
+        this.cardType = cardType;
+        this.expiryDate = expiryDate;
+        this.isReady = isReady;
+        this.isTagId = isTagId;
+    }
+
+    public String getCardNumber() {
+        return cardNumber;
+    }
+
+    public String getCardType() {
+        return cardType;
+    }
+
+    public String getExpiryDate() {
+        return expiryDate;
+    }
+
+    public boolean isReady() {
+        return isReady;
+    }
+
+    public boolean isTagId() {
+        return isTagId;
+    }
+}
@@ -0,0 +1,64 @@
+package com.nfcreader;
+
+/**
+ * Máscara de bits com os campos do cartão que o chamador precisa.
+ *
+ * O {@link EmvCardReader} para de enviar APDUs assim que todos os campos pedidos foram
+ * encontrados. Os nomes aceitos por {@link #fromName(String)} são as mesmas chaves usadas
+ * no evento onCardRead: cardNumber, expiryDate e cardType.
+ */
+public final class CardFields {
+
+    public static final int NONE = 0;
+    public static final int CARD_NUMBER = 1;
+    public static final int EXPIRY_DATE = 1 << 1;
+    // o tipo é derivado do AID, então fica disponível junto com o PAN
+    public static final int CARD_TYPE = 1 << 2;
+
+    public static final int ALL = CARD_NUMBER | EXPIRY_DATE | CARD_TYPE;
+    // o mesmo que a leitura sempre exigiu para devolver um cartão
+    public static final int DEFAULT = CARD_NUMBER | EXPIRY_DATE;
+
+    private CardFields() {
+    }
+
+    /**
+     * @return o bit correspondente ao nome, ou {@link #NONE} se o nome não for conhecido
+     */
+    public static int fromName(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        switch (name) {
+            case "cardNumber":
+                return CARD_NUMBER;
+            case "expiryDate":
+                return EXPIRY_DATE;
+            case "cardType":
+                return CARD_TYPE;
+            default:
+                return NONE;
+        }
+    }
+
+    /**
+     * campos presentes no cartão lido
+     */
+    public static int of(Card card) {
+        int found = NONE;
+        if (card.getCardNumber() != null && !card.getCardNumber().isEmpty()) {
+            found |= CARD_NUMBER;
+        }
+        if (card.getExpiryDate() != null && !card.getExpiryDate().isEmpty()) {
+            found |= EXPIRY_DATE;
+        }
+        if (card.getCardType() != null && !card.getCardType().isEmpty()) {
+            found |= CARD_TYPE;
+        }
+        return found;
+    }
+
+    public static boolean isSatisfied(int found, int required) {
+        return (found & required) == required;
+    }
+}
@@ -0,0 +1,197 @@
+package com.nfcreader;
+
+/**
+ * Perfis de cartão aprendidos nas leituras anteriores.
+ *
+ * Cartões do mesmo emissor respondem ao SELECT AID com os mesmos dados (FCI, PDOL) e guardam
+ * PAN e data de expiração no mesmo SFI/registro. A chave é uma impressão digital (FNV-1a de
+ * 64 bits) do AID e da resposta do SELECT AID; o valor é o fluxo do GPO e o SFI/registro onde o
+ * PAN foi encontrado. Na próxima leitura com a mesma chave esse registro é lido primeiro e, se
+ * ele não trouxer o PAN, o leitor volta a percorrer o AFL inteiro.
+ *
+ * Os perfis ficam num LRU de capacidade fixa, só em memória.
+ */
+public class CardProfileCache {
+
+    public static final int NOT_FOUND = -1;
+
+    public static final int FLOW_TRACK2 = 1;   // tag 57 na resposta do GPO
+    public static final int FLOW_FORMAT1 = 2;  // tag 80
+    public static final int FLOW_FORMAT2 = 3;  // tag 77 com AFL na 94
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // posição 0 é o perfil usado mais recentemente
+    private final long[] fingerprints;
+    private final int[] flows;
+    private final int[] locations;
+    private int size = 0;
+
+    private int lookups = 0;
+    private int hits = 0;
+    private int misses = 0;
+    private long recordsSaved = 0;
+
+    public CardProfileCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CardProfileCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity deve ser maior que zero");
+        }
+        fingerprints = new long[capacity];
+        flows = new int[capacity];
+        locations = new int[capacity];
+    }
+
+    /**
+     * impressão digital do AID e do corpo da resposta do SELECT AID (sem SW1 SW2)
+     */
+    public static long fingerprint(byte[] aid, byte[] selectAidResponse) {
+        long hash = FNV_OFFSET;
+        for (byte b : aid) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        // separador, para que AID e resposta não se confundam
+        hash = (hash ^ 0x100) * FNV_PRIME;
+        int length = selectAidResponse != null && selectAidResponse.length >= 2 ? selectAidResponse.length - 2 : 0;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (selectAidResponse[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * SFI e registro empacotados em um int: (sfi << 8) | registro
+     */
+    public static int location(int sfi, int record) {
+        return ((sfi & 0xFF) << 8) | (record & 0xFF);
+    }
+
+    public static int sfiOf(int location) {
+        return location >>> 8;
+    }
+
+    public static int recordOf(int location) {
+        return location & 0xFF;
+    }
+
+    /**
+     * @return a localização aprendida do PAN ({@link #location(int, int)}) ou {@link #NOT_FOUND}
+     */
+    public synchronized int lookup(long fingerprint) {
+        lookups++;
+        int index = indexOf(fingerprint);
+        if (index < 0 || locations[index] == NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        moveToFront(index);
+        return locations[0];
+    }
+
+    /**
+     * @return o fluxo aprendido ({@link #FLOW_TRACK2} etc.) ou {@link #NOT_FOUND}
+     */
+    public synchronized int getFlow(long fingerprint) {
+        int index = indexOf(fingerprint);
+        return index >= 0 ? flows[index] : NOT_FOUND;
+    }
+
+    /**
+     * registra (ou atualiza) o perfil; location {@link #NOT_FOUND} quando o PAN não veio de um registro
+     */
+    public synchronized void learn(long fingerprint, int flow, int location) {
+        int index = indexOf(fingerprint);
+        if (index < 0) {
+            if (size < fingerprints.length) {
+                size++;
+            }
+            // o menos usado (última posição) é descartado quando o cache está cheio
+            index = size - 1;
+            fingerprints[index] = fingerprint;
+        }
+        flows[index] = flow;
+        locations[index] = location;
+        moveToFront(index);
+    }
+
+    /**
+     * o registro aprendido trouxe o PAN; recordsSaved é quantos registros a leitura em ordem
+     * teria lido antes dele
+     */
+    public synchronized void markHit(int recordsSaved) {
+        hits++;
+        this.recordsSaved += recordsSaved;
+    }
+
+    /**
+     * não havia perfil, ou o registro aprendido não trouxe o PAN
+     */
+    public synchronized void markMiss() {
+        misses++;
+    }
+
+    public synchronized int getLookups() {
+        return lookups;
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * fração das consultas resolvidas pelo registro aprendido (0..1)
+     */
+    public synchronized double getHitRate() {
+        int outcomes = hits + misses;
+        return outcomes > 0 ? (double) hits / outcomes : 0;
+    }
+
+    public synchronized long getRecordsSaved() {
+        return recordsSaved;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        lookups = 0;
+        hits = 0;
+        misses = 0;
+        recordsSaved = 0;
+    }
+
+    private int indexOf(long fingerprint) {
+        for (int i = 0; i < size; i++) {
+            if (fingerprints[i] == fingerprint) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private void moveToFront(int index) {
+        if (index <= 0) {
+            return;
+        }
+        long fingerprint = fingerprints[index];
+        int flow = flows[index];
+        int location = locations[index];
+        System.arraycopy(fingerprints, 0, fingerprints, 1, index);
+        System.arraycopy(flows, 0, flows, 1, index);
+        System.arraycopy(locations, 0, locations, 1, index);
+        fingerprints[0] = fingerprint;
+        flows[0] = flow;
+        locations[0] = location;
+    }
+}
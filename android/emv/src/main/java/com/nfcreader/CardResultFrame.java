@@ -0,0 +1,201 @@
+package com.nfcreader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Resultado de uma leitura codificado num único bloco binário para atravessar até o JS.
+ *
+ * Em vez de montar um mapa por campo (e um mapa por APDU e por aplicação no relatório de
+ * tempos), o cartão, o relatório da sessão e, opcionalmente, as respostas brutas do GPO e dos
+ * registros são escritos num buffer reaproveitado entre as leituras. Com um {@link PanTokenizer}
+ * o número do cartão vai vazio, no lugar dele seguem o token, o PAN mascarado e o BIN, e as
+ * respostas brutas (que contêm o PAN) não são incluídas. O módulo nativo entrega o
+ * bloco ao JS uma única vez, e app/services/NfcReader.ts o decodifica com DataView; a ordem dos
+ * enums ({@link SessionTimings.Phase}, {@link SessionTimings.ApplicationResult},
+ * {@link AidRegistry.ReadStrategy}) é a mesma das listas de lá.
+ *
+ * Formato (little endian; texto é short com o tamanho em bytes seguido de UTF-8):
+ * <pre>
+ * int    magic "NRCF"
+ * byte   versão
+ * byte   flags (bit 0: isReady, bit 1: isTagId, bit 2: PAN tokenizado)
+ * short  APDUs enviados
+ * short  APDUs evitados
+ * byte   estratégia de leitura
+ * texto  número do cartão, validade, bandeira, produto
+ * texto  token, PAN mascarado, BIN (vazios sem tokenização)
+ * int    duração total, µs
+ * int    tempo até o primeiro APDU, µs (-1 sem APDU)
+ * int    bytes enviados
+ * int    bytes recebidos
+ * byte   quantidade de fases, seguida da duração de cada uma, int µs, na ordem do enum
+ * byte   quantidade de APDUs registrados; para cada um:
+ *   byte fase, int duração µs, short bytes enviados, short bytes recebidos, int status word (-1 sem resposta)
+ * byte   quantidade de aplicações tentadas; para cada uma:
+ *   byte tamanho do AID seguido dos bytes, byte prioridade, byte resultado, texto bandeira
+ * short  quantidade de respostas brutas; para cada uma:
+ *   byte SFI (0 = resposta do GPO), byte registro, short tamanho seguido dos bytes
+ * </pre>
+ */
+public final class CardResultFrame {
+
+    public static final int MAGIC = 0x4643524E; // "NRCF" em little endian
+    public static final int VERSION = 2;
+    public static final int FLAG_READY = 0x01;
+    public static final int FLAG_TAG_ID = 0x02;
+    public static final int FLAG_TOKENIZED = 0x04;
+
+    private static final SessionTimings.Phase[] PHASES = SessionTimings.Phase.values();
+
+    private byte[] buffer = new byte[1024];
+    private int length;
+
+    /**
+     * Codifica a leitura que o leitor acabou de concluir com o cartão card, incluindo as
+     * respostas capturadas ({@link EmvCardReader#setCaptureRecords}) quando houver.
+     *
+     * @return tamanho do bloco, que fica em {@link #getBuffer()} até a próxima codificação
+     */
+    public int encode(Card card, EmvCardReader reader) {
+        return encode(card, reader, null);
+    }
+
+    /**
+     * Como {@link #encode(Card, EmvCardReader)}; com tokenizer não nulo o PAN é trocado pelo
+     * token, PAN mascarado e BIN, e nenhuma resposta bruta é incluída.
+     */
+    public int encode(Card card, EmvCardReader reader, PanTokenizer tokenizer) {
+        SessionTimings timings = reader.getTimings();
+        AidRegistry.Entry application = reader.getSelectedApplication();
+        boolean tokenized = tokenizer != null && card.getCardNumber() != null;
+        if (tokenized) {
+            tokenizer.tokenize(card.getCardNumber());
+        }
+        length = 0;
+        writeInt(MAGIC);
+        writeByte(VERSION);
+        writeByte((card.isReady() ? FLAG_READY : 0) | (card.isTagId() ? FLAG_TAG_ID : 0) | (tokenized ? FLAG_TOKENIZED : 0));
+        writeShort(reader.getExchangeCount());
+        writeShort(reader.getSkippedExchangeCount());
+        writeByte(application.getStrategy().ordinal());
+        writeString(tokenized ? null : card.getCardNumber());
+        writeString(card.getExpiryDate());
+        writeString(card.getCardType());
+        writeString(application.getProduct());
+        writeString(tokenized ? tokenizer.getToken() : null);
+        writeString(tokenized ? tokenizer.getMaskedPan() : null);
+        writeString(tokenized ? tokenizer.getBin() : null);
+
+        writeInt(micros(timings.getTotalNanos()));
+        writeInt(micros(timings.getTimeToFirstApduNanos()));
+        writeInt(timings.getBytesOut());
+        writeInt(timings.getBytesIn());
+        writeByte(PHASES.length);
+        for (SessionTimings.Phase phase : PHASES) {
+            writeInt(micros(timings.getPhaseNanos(phase)));
+        }
+        int apdus = timings.getRecordedApduCount();
+        writeByte(apdus);
+        for (int i = 0; i < apdus; i++) {
+            writeByte(timings.getApduPhase(i).ordinal());
+            writeInt(micros(timings.getApduNanos(i)));
+            writeShort(timings.getApduBytesOut(i));
+            writeShort(timings.getApduBytesIn(i));
+            writeInt(timings.getApduStatusWord(i));
+        }
+        int applications = timings.getApplicationCount();
+        writeByte(applications);
+        for (int i = 0; i < applications; i++) {
+            byte[] aid = timings.getApplicationAid(i);
+            writeByte(aid.length);
+            writeBytes(aid, aid.length);
+            writeByte(timings.getApplicationPriority(i));
+            writeByte(timings.getApplicationResult(i).ordinal());
+            writeString(AidRegistry.getDefault().resolve(aid).getBrand());
+        }
+        int records = tokenizer != null ? 0 : reader.getCapturedRecordCount();
+        writeShort(records);
+        for (int i = 0; i < records; i++) {
+            int location = reader.getCapturedRecordLocation(i);
+            byte[] record = reader.getCapturedRecord(i);
+            writeByte(CardProfileCache.sfiOf(location));
+            writeByte(CardProfileCache.recordOf(location));
+            writeShort(record.length);
+            writeBytes(record, record.length);
+        }
+        return length;
+    }
+
+    /**
+     * bloco da última codificação, válido em [0, {@link #getLength()})
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    private static int micros(long nanos) {
+        return nanos < 0 ? -1 : (int) Math.min(Integer.MAX_VALUE, nanos / 1000);
+    }
+
+    private void ensure(int bytes) {
+        if (length + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes));
+        }
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeShort(int value) {
+        ensure(2);
+        buffer[length++] = (byte) value;
+        buffer[length++] = (byte) (value >> 8);
+    }
+
+    private void writeInt(int value) {
+        ensure(4);
+        buffer[length++] = (byte) value;
+        buffer[length++] = (byte) (value >> 8);
+        buffer[length++] = (byte) (value >> 16);
+        buffer[length++] = (byte) (value >> 24);
+    }
+
+    private void writeBytes(byte[] bytes, int count) {
+        ensure(count);
+        System.arraycopy(bytes, 0, buffer, length, count);
+        length += count;
+    }
+
+    /**
+     * texto em UTF-8 com o tamanho na frente; null vira texto vazio. Os campos são quase sempre
+     * ASCII, escritos direto no buffer; só os demais passam por getBytes
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            writeShort(0);
+            return;
+        }
+        int count = value.length();
+        ensure(2 + count);
+        int start = length + 2;
+        for (int i = 0; i < count; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                writeShort(utf8.length);
+                writeBytes(utf8, utf8.length);
+                return;
+            }
+            buffer[start + i] = (byte) c;
+        }
+        writeShort(count);
+        length += count;
+    }
+}
@@ -0,0 +1,167 @@
+package com.nfcreader;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Timeouts por comando aprendidos com a latência observada.
+ *
+ * Para cada {@link SessionTimings.Phase} de troca de APDU guarda a duração das últimas
+ * {@link #WINDOW} respostas, no geral e separadas por bandeira (até {@link #MAX_BRANDS}). O
+ * timeout de um comando é {@link #P99_MULTIPLIER} vezes o p99 da bandeira, ou de todas as
+ * bandeiras quando a bandeira ainda tem menos de {@link #MIN_SAMPLES} amostras, limitado a
+ * [{@link #MIN_TIMEOUT_MILLIS}, {@link #MAX_TIMEOUT_MILLIS}]. Sem amostras suficientes valem
+ * os valores padrão de cada fase. Cada janela também é mantida ordenada, com a amostra que sai
+ * removida e a nova inserida no lugar, então os percentis são lidos direto dela, sem ordenar a
+ * janela; são recalculados a cada {@link #RECOMPUTE_EVERY} amostras novas, não a cada comando.
+ */
+public class CommandTimeouts {
+
+    public static final int WINDOW = 64;
+    public static final int MIN_SAMPLES = 8;
+    public static final int MAX_BRANDS = 8;
+    public static final int RECOMPUTE_EVERY = 4;
+    public static final int P99_MULTIPLIER = 3;
+    public static final int MIN_TIMEOUT_MILLIS = 100;
+    public static final int MAX_TIMEOUT_MILLIS = 5000;
+
+    private static final SessionTimings.Phase[] PHASES = SessionTimings.Phase.values();
+    private static final int PHASE_COUNT = PHASES.length;
+    // linha 0: todas as bandeiras
+    private static final int ALL = 0;
+
+    private final long[][] samples = new long[(MAX_BRANDS + 1) * PHASE_COUNT][WINDOW];
+    // as mesmas amostras de samples em ordem crescente: ordered[slot][0, sampleCount[slot])
+    private final long[][] ordered = new long[(MAX_BRANDS + 1) * PHASE_COUNT][WINDOW];
+    private final int[] sampleCount = new int[(MAX_BRANDS + 1) * PHASE_COUNT];
+    private final int[] sampleNext = new int[(MAX_BRANDS + 1) * PHASE_COUNT];
+    private final int[] pending = new int[(MAX_BRANDS + 1) * PHASE_COUNT];
+    private final int[] timeoutMillis = new int[(MAX_BRANDS + 1) * PHASE_COUNT];
+    private final long[] typicalNanos = new long[(MAX_BRANDS + 1) * PHASE_COUNT];
+    private final Map<String, Integer> brandRows = new HashMap<>();
+
+    /**
+     * timeout padrão de cada fase, antes de haver amostras
+     */
+    static int defaultTimeoutMillis(SessionTimings.Phase phase) {
+        switch (phase) {
+            case GPO:
+                // o GPO pode incluir criptografia no cartão
+                return 2000;
+            case SELECT_PPSE:
+            case SELECT_AID:
+            case READ_RECORD:
+                return 1000;
+            default:
+                return MAX_TIMEOUT_MILLIS;
+        }
+    }
+
+    /**
+     * latência típica (p50) de cada fase antes de haver amostras
+     */
+    static long defaultTypicalNanos(SessionTimings.Phase phase) {
+        return phase == SessionTimings.Phase.GPO ? 50_000_000L : 15_000_000L;
+    }
+
+    /**
+     * registra a duração de uma troca que teve resposta; brand pode ser null (antes do SELECT AID)
+     */
+    public synchronized void record(SessionTimings.Phase phase, String brand, long nanos) {
+        add(ALL * PHASE_COUNT + phase.ordinal(), nanos);
+        int row = brandRow(brand, true);
+        if (row != ALL) {
+            add(row * PHASE_COUNT + phase.ordinal(), nanos);
+        }
+    }
+
+    /**
+     * timeout para o próximo comando da fase, em ms
+     */
+    public synchronized int timeoutMillis(SessionTimings.Phase phase, String brand) {
+        int slot = slotFor(phase, brand);
+        return slot >= 0 ? timeoutMillis[slot] : defaultTimeoutMillis(phase);
+    }
+
+    /**
+     * latência típica (p50) da fase, usada para reservar tempo para os passos seguintes
+     */
+    public synchronized long typicalNanos(SessionTimings.Phase phase, String brand) {
+        int slot = slotFor(phase, brand);
+        return slot >= 0 ? typicalNanos[slot] : defaultTypicalNanos(phase);
+    }
+
+    public synchronized int getSampleCount(SessionTimings.Phase phase, String brand) {
+        return sampleCount[brandRow(brand, false) * PHASE_COUNT + phase.ordinal()];
+    }
+
+    /**
+     * posição com amostras suficientes para a bandeira, ou para todas; -1 se nenhuma tiver
+     */
+    private int slotFor(SessionTimings.Phase phase, String brand) {
+        int row = brandRow(brand, false);
+        int slot = row * PHASE_COUNT + phase.ordinal();
+        if (row != ALL && sampleCount[slot] >= MIN_SAMPLES) {
+            return slot;
+        }
+        slot = ALL * PHASE_COUNT + phase.ordinal();
+        return sampleCount[slot] >= MIN_SAMPLES ? slot : -1;
+    }
+
+    private int brandRow(String brand, boolean create) {
+        if (brand == null) {
+            return ALL;
+        }
+        Integer row = brandRows.get(brand);
+        if (row != null) {
+            return row;
+        }
+        if (!create || brandRows.size() == MAX_BRANDS) {
+            return ALL;
+        }
+        int newRow = brandRows.size() + 1;
+        brandRows.put(brand, newRow);
+        return newRow;
+    }
+
+    private void add(int slot, long nanos) {
+        long[] window = ordered[slot];
+        int count = sampleCount[slot];
+        if (count == WINDOW) {
+            // a amostra mais antiga sai da janela ordenada
+            int evicted = Arrays.binarySearch(window, 0, count, samples[slot][sampleNext[slot]]);
+            System.arraycopy(window, evicted + 1, window, evicted, count - evicted - 1);
+            count--;
+        }
+        int insert = Arrays.binarySearch(window, 0, count, nanos);
+        if (insert < 0) {
+            insert = -insert - 1;
+        }
+        System.arraycopy(window, insert, window, insert + 1, count - insert);
+        window[insert] = nanos;
+        samples[slot][sampleNext[slot]] = nanos;
+        sampleNext[slot] = (sampleNext[slot] + 1) % WINDOW;
+        if (sampleCount[slot] < WINDOW) {
+            sampleCount[slot]++;
+        }
+        if (sampleCount[slot] >= MIN_SAMPLES && (++pending[slot] >= RECOMPUTE_EVERY || sampleCount[slot] == MIN_SAMPLES)) {
+            pending[slot] = 0;
+            recompute(slot);
+        }
+    }
+
+    private void recompute(int slot) {
+        int count = sampleCount[slot];
+        long[] sorted = ordered[slot];
+        long p99 = sorted[nearestRank(99, count)];
+        typicalNanos[slot] = sorted[nearestRank(50, count)];
+        long millis = (p99 * P99_MULTIPLIER + 999_999) / 1_000_000;
+        timeoutMillis[slot] = (int) Math.max(MIN_TIMEOUT_MILLIS, Math.min(MAX_TIMEOUT_MILLIS, millis));
+    }
+
+    private static int nearestRank(int percentile, int count) {
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return Math.max(0, Math.min(count - 1, rank - 1));
+    }
+}
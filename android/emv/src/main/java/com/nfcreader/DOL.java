@@ -0,0 +1,392 @@
+package com.nfcreader;
+
+/*
+ * Copyright 2010 sasc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.github.devnied.emvnfccard.iso7816emv.TagAndLength;
+import com.github.devnied.emvnfccard.utils.TlvUtil;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Data Object List (DOL)
+ *
+ * In several instances, the terminal is asked to build a flexible list of data
+ * elements to be passed to the card under the card's direction.
+ * To minimise processing within the ICC, such a list is not TLV encoded but
+ * is a single constructed field built by concatenating several data
+ * elements together. Since the elements of the constructed field are not
+ * TLV encoded, it is imperative that the ICC knows the format of this field
+ * when the data is received. This is achieved by including a
+ * Data Object List (DOL) in the ICC, specifying the format of the data to
+ * be included in the constructed field.
+ *
+ * DOLs currently used in this specification include:
+ * - the Processing Options Data Object List (PDOL) used with the GET PROCESSING OPTIONS command
+ * - the Card Risk Management Data Object Lists (CDOL1 and CDOL2) used with the GENERATE APPLICATION CRYPTOGRAM (AC) command
+ * - the Transaction Certificate Data Object List (TDOL) used to generate a TC Hash Value
+ * - the Dynamic Data Authentication Data Object List (DDOL) used with the INTERNAL AUTHENTICATE command
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * In other words, a DOL is sent from the ICC. This DOL contains only Tag ID bytes and length bytes.
+ * The Terminal constructs the response, which contains only the VALUES for these tags.
+ *
+ * //TODO check DOL processing on page 55
+ *
+ * @author sasc
+ *
+ * Source: https://github.com/sasc999/javaemvreader/blob/master/src/main/java/sasc/emv/DOL.java
+ */
+
+/**
+ * This is a modified version of the original DOL.java, it now returns TagAndLength TlvUtil from
+ * import com.github.devnied.emvnfccard.iso7816emv.TagAndLength;
+ * import com.github.devnied.emvnfccard.utils.TlvUtil;
+ *
+ * O DOL também funciona como um template compilado: tags e tamanhos são lidos uma única vez
+ * e guardados em arrays de int junto com o offset de cada campo e o tamanho total, de modo que
+ * montar os dados (ou o comando GPO inteiro) é só copiar valores da {@link DolValues} para
+ * posições já conhecidas. Como cartões do mesmo emissor mandam PDOLs idênticos, os templates
+ * ficam num pequeno cache LRU indexado pelos bytes do DOL ({@link #compile(Type, byte[], int, int)}).
+ */
+
+public class DOL {
+
+    public enum Type{
+        PDOL("Processing Options Data Object List"),
+        CDOL1("Card Risk Management Data Object List 1"),
+        CDOL2("Card Risk Management Data Object List 2"),
+        TDOL("Transaction Certificate Data Object List"),
+        //An ICC that supports DDA shall contain a DDOL. The DDOL shall contain only the Unpredictable Number generated by the terminal (tag '9F37', 4 bytes binary).
+        DDOL("Dynamic Data Authentication Data Object List");
+
+        private String description;
+
+        private Type(String description){
+            this.description = description;
+        }
+
+        public String getDescription(){
+            return description;
+        }
+
+        @Override
+        public String toString(){
+            return getDescription();
+        }
+    }
+
+    public static final int CACHE_SIZE = 16;
+
+    // GET PROCESSING OPTIONS: CLA INS P1 P2 Lc | 83 L dados | Le
+    private static final byte[] GPO_HEADER = {(byte) 0x80, (byte) 0xA8, (byte) 0x00, (byte) 0x00};
+    private static final int TAG_COMMAND_TEMPLATE = 0x83;
+    private static final int MAX_SHORT_LC = 0xFF;
+
+    // cache LRU: posição 0 é o template usado mais recentemente
+    private static final DOL[] cache = new DOL[CACHE_SIZE];
+    private static int cacheCount = 0;
+
+    private final Type type;
+    private final byte[] data;
+    private final int[] tags;
+    private final int[] lengths;
+    private final int[] offsets;
+    private final int totalLength;
+    private final boolean malformed;
+    // comando GPO com cabeçalho e Le já preenchidos, os campos ficam zerados
+    private final byte[] gpoTemplate;
+    private final int gpoDataOffset;
+    private List<TagAndLength> tagAndLengthList;
+
+    public DOL(Type type, byte[] data){
+        this(type, data, 0, data.length);
+    }
+
+    public DOL(Type type, byte[] data, int offset, int length){
+        //Parse tags and lengths
+        this.type = type;
+        this.data = Arrays.copyOfRange(data, offset, offset + length);
+
+        int[] parsedTags = new int[8];
+        int[] parsedLengths = new int[8];
+        int count = 0;
+        int sum = 0;
+        boolean error = false;
+        int position = 0;
+        while (position < this.data.length) {
+            // tag: um byte, ou mais quando os 5 bits baixos são todos 1
+            int first = this.data[position++] & 0xFF;
+            int tag = first;
+            if ((first & 0x1F) == 0x1F) {
+                int next;
+                do {
+                    if (position >= this.data.length || tag > 0xFFFFFF) {
+                        error = true;
+                        break;
+                    }
+                    next = this.data[position++] & 0xFF;
+                    tag = (tag << 8) | next;
+                } while ((next & 0x80) != 0);
+            }
+            // num DOL o tamanho é sempre um único byte
+            if (error || position >= this.data.length) {
+                error = true;
+                break;
+            }
+            int fieldLength = this.data[position++] & 0xFF;
+            if (count == parsedTags.length) {
+                parsedTags = Arrays.copyOf(parsedTags, count * 2);
+                parsedLengths = Arrays.copyOf(parsedLengths, count * 2);
+            }
+            parsedTags[count] = tag;
+            parsedLengths[count] = fieldLength;
+            count++;
+            sum += fieldLength;
+        }
+
+        this.tags = Arrays.copyOf(parsedTags, count);
+        this.lengths = Arrays.copyOf(parsedLengths, count);
+        this.offsets = new int[count];
+        int fieldOffset = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = fieldOffset;
+            fieldOffset += lengths[i];
+        }
+        this.totalLength = sum;
+        this.malformed = error;
+
+        // 83 L (ou 83 81 L quando os dados passam de 127 bytes)
+        int templateHeaderLength = sum > 0x7F ? 3 : 2;
+        int lc = templateHeaderLength + sum;
+        if (lc <= MAX_SHORT_LC) {
+            gpoTemplate = new byte[GPO_HEADER.length + 1 + lc + 1];
+            System.arraycopy(GPO_HEADER, 0, gpoTemplate, 0, GPO_HEADER.length);
+            int i = GPO_HEADER.length;
+            gpoTemplate[i++] = (byte) lc;
+            gpoTemplate[i++] = (byte) TAG_COMMAND_TEMPLATE;
+            if (sum > 0x7F) {
+                gpoTemplate[i++] = (byte) 0x81;
+            }
+            gpoTemplate[i++] = (byte) sum;
+            gpoDataOffset = i;
+        } else {
+            gpoTemplate = null;
+            gpoDataOffset = -1;
+        }
+    }
+
+    /**
+     * Retorna o template compilado para os bytes do DOL em data[offset, offset + length),
+     * reaproveitando um template do cache quando o mesmo DOL já foi visto.
+     */
+    public static DOL compile(Type type, byte[] data, int offset, int length) {
+        synchronized (cache) {
+            for (int i = 0; i < cacheCount; i++) {
+                DOL candidate = cache[i];
+                if (candidate.type == type && candidate.matches(data, offset, length)) {
+                    moveToFront(i);
+                    return candidate;
+                }
+            }
+            DOL compiled = new DOL(type, data, offset, length);
+            if (cacheCount < CACHE_SIZE) {
+                cacheCount++;
+            }
+            // descarta o menos usado (última posição) quando o cache está cheio
+            System.arraycopy(cache, 0, cache, 1, cacheCount - 1);
+            cache[0] = compiled;
+            return compiled;
+        }
+    }
+
+    public static DOL compile(Type type, byte[] data) {
+        return compile(type, data, 0, data.length);
+    }
+
+    public static void clearCache() {
+        synchronized (cache) {
+            Arrays.fill(cache, null);
+            cacheCount = 0;
+        }
+    }
+
+    private static void moveToFront(int index) {
+        if (index > 0) {
+            DOL hit = cache[index];
+            System.arraycopy(cache, 0, cache, 1, index);
+            cache[0] = hit;
+        }
+    }
+
+    private boolean matches(byte[] other, int offset, int length) {
+        if (length != data.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[i] != other[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * quantidade de campos (pares tag/tamanho) no DOL
+     */
+    public int size() {
+        return tags.length;
+    }
+
+    public int getTag(int index) {
+        return tags[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * índice do primeiro campo com a tag (empacotada como em {@link DolValues#packTag}), ou -1
+     */
+    public int indexOf(int tag) {
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * posição do campo dentro dos dados montados
+     */
+    public int getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * soma dos tamanhos de todos os campos, ou seja, o tamanho dos dados montados
+     */
+    public int getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * true quando o DOL terminou no meio de uma tag ou sem o byte de tamanho;
+     * os campos lidos antes do erro continuam no template
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * Preenche dest[offset, offset + getTotalLength()) com os valores predefinidos de cada
+     * tag, cortados ou completados com zeros; tags desconhecidas são enviadas como zeros.
+     */
+    public void fill(byte[] dest, int offset, DolValues values, int ttqVariant) {
+        for (int i = 0; i < tags.length; i++) {
+            values.fill(DolValues.lookupKey(tags[i], ttqVariant), dest, offset + offsets[i], lengths[i]);
+        }
+    }
+
+    /**
+     * posição dos dados do DOL dentro do comando devolvido por {@link #buildGpoCommand(DolValues, int)}
+     */
+    public int getGpoDataOffset() {
+        return gpoDataOffset;
+    }
+
+    /**
+     * false quando os dados pedidos pelo PDOL não cabem num APDU curto (Lc acima de 255);
+     * nesse caso não há comando GPO possível para a aplicação
+     */
+    public boolean fitsShortApdu() {
+        return gpoTemplate != null;
+    }
+
+    /**
+     * Monta o comando GET PROCESSING OPTIONS (80 A8 00 00 Lc 83 L dados 00) a partir do
+     * comando pré-montado, apenas copiando os valores para os offsets já calculados.
+     *
+     * @return o comando, ou null quando o PDOL não cabe num APDU curto ({@link #fitsShortApdu()})
+     */
+    public byte[] buildGpoCommand(DolValues values, int ttqVariant) {
+        if (gpoTemplate == null) {
+            return null;
+        }
+        byte[] command = gpoTemplate.clone();
+        fill(command, gpoDataOffset, values, ttqVariant);
+        return command;
+    }
+
+    /**
+     * bytes originais do DOL; o array é interno ao template e não deve ser alterado
+     */
+    byte[] rawData() {
+        return data;
+    }
+
+    /**
+     * lista de tags com os nomes da biblioteca devnied, montada só quando alguém pede
+     * (descrição e {@link #dump(PrintWriter, int)})
+     */
+    public synchronized List<TagAndLength> getTagAndLengthList(){
+        if (tagAndLengthList == null) {
+            tagAndLengthList = TlvUtil.parseTagAndLength(data);
+        }
+        return Collections.unmodifiableList(tagAndLengthList);
+    }
+
+    @Override
+    public String toString(){
+        StringWriter sw = new StringWriter();
+        dump(new PrintWriter(sw), 0);
+        return sw.toString();
+    }
+
+
+    public void dump(PrintWriter pw, int indent){
+        pw.println(getSpaces(indent)+type.getDescription());
+        final int INDENT_SIZE = 2;
+        String indentStr = getSpaces(indent+INDENT_SIZE);
+        //String indentStr = Util.getSpaces(indent+Log.INDENT_SIZE);
+
+        for(TagAndLength tagAndLength : getTagAndLengthList()){
+            int length = tagAndLength.getLength();
+            pw.println(indentStr+tagAndLength.getTag().getName() + " ("+length+ " "+(length==1?"byte":"bytes")+")");
+        }
+    }
+
+    public static String getSpaces(int length) {
+        StringBuilder buf = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            buf.append(" ");
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.nfcreader;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Tabela imutável de valores predefinidos para tags DOL (Data Object List)
+ * Usada para fornecer dados ao cartão durante processamento EMV
+ *
+ * Existe uma única instância padrão por processo ({@link #getInstance()}), montada uma vez;
+ * {@link #withTransaction(TransactionContext)} deriva dela uma tabela com os dados de uma
+ * cobrança já em bytes, montada antes do toque para que o GPO continue sendo só cópia.
+ * As tags são empacotadas em int (bytes na ordem em que aparecem, ex. 0x9F37) e guardadas
+ * num mapa de endereçamento aberto, então as consultas são O(1) e não alocam.
+ * As variantes de Terminal Transaction Qualifiers são entradas próprias com chave de 3 bytes
+ * (0x9F6600 .. 0x9F6603); o PDOL e o {@link #dump()} leem da mesma tabela.
+ */
+public class DolValues {
+
+    public static final int TAG_TTQ = 0x9F66;
+
+    private static final String NOT_FOUND_NAME = "Tag not found";
+    private static final int EMPTY = 0;
+    private static final int CAPACITY = 64; // potência de 2, bem acima do número de entradas
+
+    private static final DolValues INSTANCE = new DolValues();
+
+    private final int[] keys = new int[CAPACITY];
+    private final byte[][] values = new byte[CAPACITY][];
+    private final String[] names = new String[CAPACITY];
+    // slots na ordem de cadastro, para o dump
+    private final int[] order = new int[CAPACITY];
+    private int size = 0;
+
+    private DolValues() {
+        // used in PDOL
+        put(0x9F66, "Terminal Transaction Qualifiers", "27 00 00 00"); // default
+        put(0x9F6600, "Terminal Transaction Qualifiers", "27 00 00 00"); // default
+        put(0x9F6601, "Terminal Transaction Qualifiers", "B7 60 40 00"); // does not run with Lloyds Visa
+        put(0x9F6602, "Terminal Transaction Qualifiers", "A0 00 00 00"); // runs on all my cards but returns not all afl
+        put(0x9F6603, "Terminal Transaction Qualifiers", "F0 20 40 00"); // this fails on DKB debit card
+        // online decoder: https://paymentcardtools.com/emv-tag-decoders/ttq
+        put(0x9F02, "Transaction Amount", "00 00 00 00 10 00"); // 00 00 00 00 10 00
+        put(0x9F03, "Amount, Other (Numeric)", "00 00 00 00 00 00");
+        put(0x9F1A, "Terminal Country Code", "09 78"); // eur
+        put(0x95, "Terminal Verificat.Results", "00 00 00 00 00");
+        put(0x5F2A, "Transaction Currency Code", "09 78"); // eur
+        put(0x9A, "Transaction Date", "23 03 01");
+        put(0x9C, "Transaction Type", "00");
+        put(0x9F37, "Unpredictable Number", "38 39 30 31");
+
+        // used in CDOL1
+        put(0x9F35, "Terminal Type", "22");
+        put(0x9F45, "Data Authentication Code", "00 00");
+        put(0x9F4C, "ICC Dynamic Number", "00 00 00 00 00 00 00 00");
+        put(0x9F34, "CVM Results", "00 00 00");
+        put(0x9F21, "Transaction Time (HHMMSS)", "11 10 09");
+        put(0x9F7C, "Merchant Custom Data", "00 00 00 00 00 00 00 00 00 00 00 00 00 00");
+    }
+
+    private DolValues(DolValues base) {
+        System.arraycopy(base.keys, 0, keys, 0, CAPACITY);
+        // os valores nunca são alterados depois do put, podem ser compartilhados
+        System.arraycopy(base.values, 0, values, 0, CAPACITY);
+        System.arraycopy(base.names, 0, names, 0, CAPACITY);
+        System.arraycopy(base.order, 0, order, 0, CAPACITY);
+        size = base.size;
+    }
+
+    public static DolValues getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Cópia desta tabela com valor (9F02), moeda (5F2A), país (9F1A), tipo (9C), data (9A) e
+     * hora (9F21, no fuso do aparelho) da cobrança, e o TTQ padrão (9F66 / variante 00) trocado
+     * quando o contexto traz um. Valor adicional (9F03) fica zerado e o Unpredictable Number
+     * continua vindo de {@link UnpredictableNumbers} a cada GPO.
+     */
+    public DolValues withTransaction(TransactionContext context) {
+        DolValues table = new DolValues(this);
+        table.putBcd(0x9F02, context.getAmount(), 6);
+        table.putBcd(0x5F2A, context.getCurrencyCode(), 2);
+        table.putBcd(0x9F1A, context.getCountryCode(), 2);
+        table.putBcd(0x9C, context.getTransactionType(), 1);
+        Calendar calendar = Calendar.getInstance(TimeZone.getDefault());
+        calendar.setTimeInMillis(context.getTimestampMillis());
+        table.putBcd(0x9A, (calendar.get(Calendar.YEAR) % 100) * 10000L
+                + (calendar.get(Calendar.MONTH) + 1) * 100L
+                + calendar.get(Calendar.DAY_OF_MONTH), 3);
+        table.putBcd(0x9F21, calendar.get(Calendar.HOUR_OF_DAY) * 10000L
+                + calendar.get(Calendar.MINUTE) * 100L
+                + calendar.get(Calendar.SECOND), 3);
+        byte[] ttq = context.getTtq();
+        if (ttq != null) {
+            table.put(TAG_TTQ, ttq);
+            table.put(lookupKey(TAG_TTQ, 0), ttq);
+        }
+        return table;
+    }
+
+    /**
+     * empacota os bytes de uma tag em int, ex. {0x9F, 0x37} -> 0x9F37
+     */
+    public static int packTag(byte[] tagByte) {
+        return packTag(tagByte, 0, tagByte.length);
+    }
+
+    public static int packTag(byte[] data, int offset, int length) {
+        int tag = 0;
+        for (int i = 0; i < length; i++) {
+            tag = (tag << 8) | (data[offset + i] & 0xFF);
+        }
+        return tag;
+    }
+
+    /**
+     * chave de consulta considerando a variante de TTQ: para a tag 9F66 retorna 0x9F66nn
+     */
+    public static int lookupKey(int tag, int ttqVariant) {
+        return tag == TAG_TTQ ? (TAG_TTQ << 8) | (ttqVariant & 0xFF) : tag;
+    }
+
+    public boolean contains(int tag) {
+        return slotOf(tag) >= 0;
+    }
+
+    /**
+     * Copia o valor predefinido da tag para dest[offset, offset + length), cortando ou
+     * completando com zeros conforme o tamanho pedido pelo cartão. Tags desconhecidas são
+     * preenchidas com zeros.
+     *
+     * @return true se a tag existe na tabela
+     */
+    public boolean fill(int tag, byte[] dest, int offset, int length) {
+        int slot = slotOf(tag);
+        byte[] value = slot >= 0 ? values[slot] : null;
+        int copied = 0;
+        if (value != null) {
+            copied = Math.min(value.length, length);
+            System.arraycopy(value, 0, dest, offset, copied);
+        }
+        for (int i = copied; i < length; i++) {
+            dest[offset + i] = 0;
+        }
+        return value != null;
+    }
+
+    public String getDolName(int tag) {
+        int slot = slotOf(tag);
+        return slot >= 0 ? names[slot] : NOT_FOUND_NAME;
+    }
+
+    public String getDolName(byte[] tagByte) {
+        return getDolName(packTag(tagByte));
+    }
+
+    /**
+     * @return uma cópia do valor predefinido, ou null se a tag não existir
+     */
+    public byte[] getDolValue(int tag) {
+        int slot = slotOf(tag);
+        return slot >= 0 ? values[slot].clone() : null;
+    }
+
+    public byte[] getDolValue(byte[] tagByte) {
+        return getDolValue(packTag(tagByte));
+    }
+
+    /**
+     * same method as getDolValue but returns alternate tag 9966 Terminal Transaction Qualifiers values
+     * defined at the moment [00] .. [03]
+     * @param tagByte
+     * @param alternateTag9966Ttq
+     * @return
+     */
+    public byte[] getDolValue(byte[] tagByte, byte[] alternateTag9966Ttq) {
+        return getDolValue(lookupKey(packTag(tagByte), alternateTag9966Ttq[0]));
+    }
+
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("TAG      DESCRIPTION                      VALUE\n");
+        sb.append("-----------------------------------------------------\n");
+
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            sb.append(padRight(Integer.toHexString(keys[slot]).toUpperCase(), 8)).append(" ");
+            sb.append(padRight(names[slot], 32)).append(" ");
+            Nibbles.appendHex(sb, values[slot]).append("\n");
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+    private int slotOf(int tag) {
+        if (tag == EMPTY) {
+            return -1;
+        }
+        int mask = CAPACITY - 1;
+        for (int slot = hash(tag) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == tag) {
+                return slot;
+            }
+            if (keys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void put(int tag, String name, String hexValue) {
+        put(tag, name, Nibbles.fromHex(hexValue));
+    }
+
+    /**
+     * troca o valor de uma tag já cadastrada, mantendo o nome
+     */
+    private void put(int tag, byte[] value) {
+        put(tag, getDolName(tag), value);
+    }
+
+    private void putBcd(int tag, long value, int length) {
+        byte[] bcd = new byte[length];
+        Nibbles.encodeBcd(value, bcd, 0, length);
+        put(tag, bcd);
+    }
+
+    private void put(int tag, String name, byte[] value) {
+        int mask = CAPACITY - 1;
+        int slot = hash(tag) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != tag) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            order[size++] = slot;
+        }
+        keys[slot] = tag;
+        names[slot] = name;
+        values[slot] = value;
+    }
+
+    private static int hash(int tag) {
+        int h = tag * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private String padRight(String s, int n) {
+        if (s.length() >= n) {
+            return s.substring(0, n);
+        }
+        return s + " ".repeat(n - s.length());
+    }
+}
@@ -0,0 +1,1265 @@
+package com.nfcreader;
+
+import androidx.annotation.NonNull;
+
+import com.github.devnied.emvnfccard.utils.TlvUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Jornada de leitura EMV (PPSE -> SELECT AID -> GPO -> READ RECORD) desacoplada do IsoDep
+ * e do React Native. Todos os APDUs passam pelo {@link ApduTransport} recebido, o que permite
+ * executar o mesmo fluxo contra um cartão físico ou contra o {@link VirtualEmvCard}.
+ */
+public class EmvCardReader {
+
+    private static final String TAG = "EmvCardReader";
+    /** posição das respostas capturadas que vieram do GPO, e não de um registro (SFI 0 não existe) */
+    public static final int GPO_RESPONSE_LOCATION = 0;
+    // java.util.logging: este módulo roda fora do Android; no aparelho as mensagens vão para o logcat
+    private static final Logger LOG = Logger.getLogger(TAG);
+
+    private final TraceLog trace = new TraceLog();
+    // índice reutilizado para cada resposta; valores que precisam sobreviver à próxima resposta são copiados
+    private final TlvIndex tlv = new TlvIndex();
+    // dígitos do PAN e da validade; a única alocação da decodificação é a String final
+    private final char[] digits = new char[Nibbles.BUFFER_SIZE];
+    // tempos e contagem de APDUs da última leitura
+    private SessionTimings timings = new SessionTimings();
+    private int skippedExchangeCount = 0;
+    // onde cada emissor guarda o PAN, aprendido nas leituras anteriores
+    private final CardProfileCache profileCache = new CardProfileCache();
+    // índice das respostas READ RECORD, separado do usado no GPO
+    private final TlvIndex recordTlv = new TlvIndex();
+    // bandeira, produto e estratégia de leitura por prefixo de AID
+    private AidRegistry aidRegistry = AidRegistry.getDefault();
+    // bandeiras tentadas antes das demais, independente da prioridade anunciada pelo cartão
+    private List<String> preferredBrands = Collections.emptyList();
+    // timeout por comando aprendido com a latência de cada fase e bandeira
+    private final CommandTimeouts commandTimeouts = new CommandTimeouts();
+    // prazo total de cada leitura, contado desde a descoberta da tag (0 = sem prazo)
+    private int readDeadlineMillis = 0;
+    private long deadlineNanos;
+    // último timeout aplicado ao transporte da leitura atual, para não repetir a chamada
+    private int transportTimeout;
+    // o timeout do comando atual foi reduzido para caber no prazo da leitura
+    private boolean timeoutCappedByDeadline;
+    // guardar o estado quando o cartão sai do campo depois do GPO, para retomar sem repeti-lo
+    private boolean resumeAfterTagLost = false;
+    private volatile ReadCheckpoint checkpoint;
+    // aplicação e fluxo do GPO da última leitura, para o diário de sessões
+    private byte[] selectedAid;
+    private AidRegistry.Entry selectedApplication = AidRegistry.UNKNOWN;
+    private int flow;
+    // respostas brutas do GPO e dos READ RECORD da aplicação lida, quando pedidas
+    private boolean captureRecords = false;
+    private int capturedRecordCount;
+    private int[] capturedLocations = new int[8];
+    private byte[][] capturedRecords = new byte[8][];
+    // PAN mascarado em tudo o que vai para o rastreamento (texto, tags e respostas)
+    private volatile boolean maskPanInTrace = false;
+    // dados do cartão entregues durante a leitura; null sem ouvinte
+    private ReadProgressListener progressListener;
+    // consultado antes de cada APDU; true abandona a leitura
+    private volatile BooleanSupplier cancellation;
+    // valores do PDOL já em bytes, com os dados da cobrança quando definidos
+    private volatile DolValues dolValues = DolValues.getInstance();
+    // 9F37 de cada GPO, de um estoque gerado antes do toque
+    private final UnpredictableNumbers unpredictableNumbers = new UnpredictableNumbers();
+    // o que a última leitura encontrou, mesmo sem todos os campos pedidos
+    private Card lastCard;
+    private int lastFoundFields = CardFields.NONE;
+
+    /**
+     * Executa a leitura sobre o transporte informado até obter PAN e data de expiração.
+     *
+     * @return o cartão lido, ou null quando PAN ou data de expiração não foram encontrados
+     */
+    public Card readCard(@NonNull ApduTransport transport) throws IOException {
+        return readCard(transport, CardFields.DEFAULT);
+    }
+
+    /**
+     * Executa a leitura sobre o transporte informado, parando de enviar APDUs assim que
+     * todos os campos pedidos em requiredFields ({@link CardFields}) forem encontrados.
+     *
+     * @return o cartão lido, ou null quando algum campo pedido não foi encontrado; o que foi
+     *         encontrado fica em {@link #getLastCard()} e {@link #getFoundFields()}
+     */
+    public Card readCard(@NonNull ApduTransport transport, int requiredFields) throws IOException {
+        return readCard(transport, requiredFields, new SessionTimings());
+    }
+
+    /**
+     * Igual a {@link #readCard(ApduTransport, int)}, registrando a duração, os bytes e o status
+     * word de cada APDU em timings, que pode já conter as fases medidas antes da leitura.
+     */
+    public Card readCard(@NonNull ApduTransport transport, int requiredFields, @NonNull SessionTimings timings) throws IOException {
+        // Variáveis para armazenar os dados do cartão
+        String pan = null;
+        String expiryDate = null;
+        String cardType = null;
+        int foundFields = CardFields.NONE;
+        this.timings = timings;
+        skippedExchangeCount = 0;
+        selectedAid = null;
+        selectedApplication = AidRegistry.UNKNOWN;
+        flow = 0;
+        checkpoint = null;
+        capturedRecordCount = 0;
+        lastCard = null;
+        lastFoundFields = CardFields.NONE;
+
+        // Nossa jornada através do cartão começa aqui
+        trace.step(0, "nossa jornada começa");
+        trace.debug("00 leitura do cartão iniciada");
+        
+        // timeout de cada comando definido em exchange, pela latência observada e pelo prazo restante
+        startDeadline(timings);
+
+        /**
+         * PASSO 1: Selecionar PPSE
+         */
+        trace.step(1, "selecionar PPSE");
+        byte[] PPSE = "2PAY.SYS.DDF01".getBytes("UTF-8"); // PPSE
+        byte[] selectPpseCommand = selectApdu(PPSE);
+        byte[] selectPpseResponse = exchange(transport, SessionTimings.Phase.SELECT_PPSE, selectPpseCommand);
+        trace.debug("01 comando select PPSE com tamanho {} dados: {}", selectPpseCommand.length, selectPpseCommand);
+        trace.debug("01 resposta select PPSE com tamanho {} dados: {}", selectPpseResponse.length, selectPpseResponse);
+        trace.debug("01 select PPSE concluído");
+        trace.tlv(selectPpseResponse);
+
+        // Prosseguir apenas quando tivermos um resultado positivo de leitura = 0x'9000' no final dos dados de resposta
+        if (TlvIndex.isSuccess(selectPpseResponse)) {
+            /**
+             * PASSO 2: Analisar resposta PPSE e buscar aplicações no cartão
+             */
+            trace.step(2, "buscar aplicações no cartão");
+            trace.debug("02 analisar resposta do select PPSE e buscar tag 0x4F (aplicações no cartão)");
+
+            tlv.index(selectPpseResponse);
+            // Buscar todas as entradas para tag 0x4F, ordenadas pela preferência de bandeira e pela tag 0x87
+            List<AidCandidates.Candidate> aidList = AidCandidates.rank(tlv, aidRegistry, preferredBrands);
+            if (aidList.size() < 1) {
+                trace.debug("Não há tag 0x4F disponível, parando aqui");
+                return null;
+            }
+            trace.debug(aidList.size() == 1 ? "Encontrada tag 0x4F {} vez:" : "Encontrada tag 0x4F {} vezes:", aidList.size());
+            for (int i4f = 0; i4f < aidList.size(); i4f++) {
+                AidCandidates.Candidate candidate = aidList.get(i4f);
+                trace.debug("ID da aplicação (AID): {} prioridade {} ({})", candidate.getAid(), candidate.getPriority(), candidate.getApplication().getBrand());
+                timings.addApplication(candidate.getAid(), candidate.getPriority());
+            }
+            trace.debug("02 análise da resposta select PPSE concluída");
+
+            /**
+             * PASSO 3: Iterar através da lista de AIDs selecionando cada um
+             */
+            aids:
+            for (int aidNumber = 0; aidNumber < aidList.size(); aidNumber++) {
+                byte[] aidSelected = aidList.get(aidNumber).getAid();
+                // resultado desta aplicação, atualizado conforme a leitura avança
+                SessionTimings.ApplicationResult applicationResult = SessionTimings.ApplicationResult.NO_DATA;
+                trace.debug("");
+                trace.step(3, "selecionar aplicação por AID");
+                trace.debug("03 selecionar aplicação por AID {} (número {})", aidSelected, aidNumber + 1);
+                byte[] selectAidCommand = selectApdu(aidSelected);
+                byte[] selectAidResponse = exchange(transport, SessionTimings.Phase.SELECT_AID, selectAidCommand);
+                trace.debug("");
+                trace.debug("03 comando select AID com tamanho {} dados: {}", selectAidCommand.length, selectAidCommand);
+                trace.debug("03 resposta select AID com tamanho {} dados: {}", selectAidResponse.length, selectAidResponse);
+                trace.tlv(selectAidResponse);
+                trace.debug("03 select AID concluído");
+
+                /**
+                 * PASSO 4: Buscar PDOL e preparar GPO
+                 */
+                if (TlvIndex.isSuccess(selectAidResponse)) {
+                    selectedAid = aidSelected;
+                    selectedApplication = aidList.get(aidNumber).getApplication();
+                    flow = 0;
+                    if (progressListener != null) {
+                        progressListener.onApplicationSelected(selectedApplication);
+                    }
+                    trace.debug("aplicação {}", selectedApplication);
+                    trace.step(4, "buscar tag 0x9F38");
+                    trace.debug("04 buscar tag 0x9F38 na resposta selectAid");
+                    
+                    /**
+                     * Nota: comportamento diferente entre cartões Visa, Mastercard e cartões alemães Giro
+                     * Mastercard não tem PDOL, Visa fornece PDOL na tag 9F38
+                     * Próximo passo: buscar a tag 9F38 Processing Options Data Object List (PDOL)
+                     */
+                    
+                    tlv.index(selectAidResponse);
+                    long profileFingerprint = CardProfileCache.fingerprint(aidSelected, selectAidResponse);
+                    if (tlv.isMalformed()) {
+                        LOG.warning("Parsing dados inválidos na resposta selectAid");
+                    }
+                    int tag9f38 = tlv.find(0x9F38);
+                    trace.debug("04 busca pela tag 0x9F38 na resposta selectAid concluída");
+                    
+                    byte[] gpoRequestCommand;
+                    
+                    // Mostrar valores predefinidos disponíveis
+                    if (trace.isEnabled(TraceLog.Level.VERBOSE)) {
+                        trace.verbose("Valores predefinidos disponíveis para PDOL e CDOL");
+                        trace.verbose("{}", dolValues);
+                    }
+                    
+                    if (tag9f38 != TlvIndex.NOT_FOUND) {
+                        /**
+                         * O código a seguir é para cartões Visa e (alemães) GiroCards, pois encontramos um PDOL
+                         */
+                        trace.debug("");
+                        trace.debug("### processando o caminho American Express, VisaCard e GiroCard ###");
+                        trace.debug("");
+                        DOL pdol = DOL.compile(DOL.Type.PDOL, tlv.data(), tlv.valueOffset(tag9f38), tlv.valueLength(tag9f38));
+                        
+                        trace.debug("encontrada tag 0x9F38 (PDOL) no selectAid com este tamanho: {} dados: {}", pdol.rawData().length, pdol.rawData());
+                        gpoRequestCommand = getGpoFromPdolExtended(pdol, 0); // 00 = padrão, máximo 03
+                    } else {
+                        /**
+                         * Código para MasterCard
+                         */
+                        trace.debug("");
+                        trace.debug("### processando o caminho MasterCard ###");
+                        trace.debug("");
+                        
+                        trace.debug("Nenhum PDOL encontrado na resposta selectAid, gerando um PDOL 'nulo'");
+                        gpoRequestCommand = getGpoFromPdolExtended(DOL.compile(DOL.Type.PDOL, new byte[0]), 0);
+                    }
+                    
+                    if (gpoRequestCommand == null) {
+                        // PDOL grande demais para um APDU curto: sem GPO possível, tenta a próxima aplicação
+                        timings.setApplicationResult(aidNumber, SessionTimings.ApplicationResult.GPO_FAILED);
+                        continue;
+                    }
+                    
+                    /**
+                     * PASSO 5: Obter as opções de processamento
+                     */
+                    trace.step(5, "obter as opções de processamento");
+                    trace.debug("05 obter as opções de processamento, comando com tamanho: {} dados: {}", gpoRequestCommand.length, gpoRequestCommand);
+                    
+                    /**
+                     * AVISO: cada requisição de obtenção de opções de processamento aumenta o contador interno 'application transaction counter' do ICC.
+                     * Se o contador de 2 bytes atingir o máximo de '65535' (0xFFFF), o cartão não aceitará mais comandos de leitura
+                     * e o cartão estará irrecuperavelmente danificado.
+                     * NÃO EXECUTE ESTE COMANDO EM LOOP!
+                     */
+                    
+                    byte[] gpoRequestResponse = exchange(transport, SessionTimings.Phase.GPO, gpoRequestCommand);
+                    trace.debug("05 obtenção das opções de processamento concluída");
+                    if (gpoRequestResponse != null) {
+                        byte[] tracedGpoResponse = traced(gpoRequestResponse);
+                        trace.debug("05 resposta da obtenção das opções de processamento com tamanho: {} dados: {}", gpoRequestResponse.length, tracedGpoResponse);
+                        if (TlvIndex.isSuccess(gpoRequestResponse)) {
+                            trace.tlv(tracedGpoResponse);
+                            // registros de uma aplicação anterior que recusou o GPO não valem para esta
+                            capturedRecordCount = 0;
+                            captureRecord(GPO_RESPONSE_LOCATION, gpoRequestResponse);
+                        }
+                    } else {
+                        trace.debug("05 falha na obtenção das opções de processamento");
+                        trace.debug("O comando para obter opções de processamento falhou. Pode ser uma boa ideia usar uma tag 0x9966 Terminal Transaction Qualifiers alternativa");
+                        timings.setApplicationResult(aidNumber, SessionTimings.ApplicationResult.GPO_FAILED);
+                        return null;
+                    }
+                    if (!TlvIndex.isSuccess(gpoRequestResponse)) {
+                        // condições de uso não satisfeitas etc.: a próxima aplicação do PPSE pode aceitar o GPO
+                        trace.debug("05 GPO recusado pela aplicação, tentando a próxima");
+                        timings.setApplicationResult(aidNumber, SessionTimings.ApplicationResult.GPO_FAILED);
+                        continue;
+                    }
+                    
+                    /**
+                     * PASSO 6: Analisar conteúdo da resposta GPO para obter Track 2 ou AFL
+                     */
+                    
+                    /**
+                     * Temos 3 cenários para trabalhar:
+                     * a) a resposta contém uma tag de Dados Equivalentes da Track 2 (tag 0x57)
+                     * b) a resposta é do tipo 'Response Message Template Format 1' (tag 0x80)
+                     * c) a resposta é do tipo 'Response Message Template Format 2' (tag 0x77)
+                     */
+                    tlv.index(gpoRequestResponse);
+                    byte[] aflBytes = null;
+                    
+                    /**
+                     * fluxo a)
+                     * A resposta contém uma tag de Dados Equivalentes da Track 2 e a partir disso podemos
+                     * recuperar diretamente o Número de Aplicação Principal (PAN, aqui o Número do Cartão de Crédito)
+                     * encontrado usando um cartão Visa
+                     */
+                    
+                    int tag57 = tlv.find(0x57);
+                    if (tag57 != TlvIndex.NOT_FOUND) {
+                        flow = CardProfileCache.FLOW_TRACK2;
+                        trace.debug("fluxo a)");
+                        trace.debug("");
+                        trace.step(6, "ler arquivos e buscar PAN");
+                        trace.debug("06 leitura dos arquivos do cartão ignorada");
+                        trace.debug("06 leitura dos arquivos do cartão ignorada");
+                        
+                        trace.debug("a resposta contém uma tag de Dados Equivalentes da Track 2 [tag 0x57]");
+                        
+                        /**
+                         * PASSO 7: Obter PAN e data de expiração da Track 2
+                         */
+                        
+                        trace.debug("a resposta contém uma tag de Dados Equivalentes da Track 2 [tag 0x57]");
+                        if (trace.isEnabled(TraceLog.Level.DEBUG)) {
+                            byte[] gpoResponseTag57 = tracedPanValue(tlv.copyValue(tag57));
+                            trace.debug("encontrada tag 0x57 na resposta GPO com tamanho: {} dados: {}", gpoResponseTag57.length, gpoResponseTag57);
+                        }
+                        // decodifica direto da resposta do GPO, sem copiar a tag
+                        int track2Offset = tlv.valueOffset(tag57);
+                        int track2Length = tlv.valueLength(tag57);
+                        pan = getPanFromTrack2EquivalentData(tlv.data(), track2Offset, track2Length, digits);
+                        expiryDate = getExpirationDateFromTrack2EquivalentData(tlv.data(), track2Offset, track2Length, digits);
+                        trace.debug("encontrado um PAN {} com data de expiração: {}", traced(pan), expiryDate);
+                        if (progressListener != null) {
+                            progressListener.onCardData(pan, expiryDate);
+                        }
+                        trace.debug("");
+                        trace.step(7, "exibir PAN e data de expiração");
+                        trace.debug("07 obter PAN e data de expiração da tag 0x57 (Dados Equivalentes da Track 2)");
+                        trace.debug("07 obtenção do PAN e data de expiração da tag 0x57 (Dados Equivalentes da Track 2) concluída");
+                        trace.debug("dados para AID {}", aidSelected);
+                        trace.debug("PAN: {}", traced(pan));
+                        String expirationDateTemplate = expiryDate.length() == 4 ? "Data de expiração (AAMM): {}" : "Data de expiração (AAMMDD): {}";
+                        trace.debug(expirationDateTemplate, expiryDate);
+                        trace.debug("dados para AID {}", aidSelected);
+                        trace.debug("PAN: {}", traced(pan));
+                        trace.debug(expirationDateTemplate, expiryDate);
+                        trace.debug("");
+                        
+                        // Determinar o tipo de cartão com base no AID selecionado
+                        cardType = selectedApplication.getBrand();
+                        foundFields |= CardFields.CARD_NUMBER | CardFields.EXPIRY_DATE | CardFields.CARD_TYPE;
+                        profileCache.learn(profileFingerprint, CardProfileCache.FLOW_TRACK2, CardProfileCache.NOT_FOUND);
+                        applicationResult = SessionTimings.ApplicationResult.PARTIAL;
+                        if (CardFields.isSatisfied(foundFields, requiredFields)) {
+                            timings.setApplicationResult(aidNumber, SessionTimings.ApplicationResult.SUCCESS);
+                            skippedExchangeCount = aidList.size() - aidNumber - 1;
+                            break aids;
+                        }
+                    }
+                    
+                    /**
+                     * fluxo b)
+                     * A resposta é do tipo 'Response Message Template Format 1' e precisamos conhecer
+                     * o significado de cada byte, então precisamos analisar o conteúdo para obter os dados para o
+                     * 'Application File Locator' (AFL).
+                     * encontrado usando um cartão American Express
+                     */
+                    
+                    int tag80 = tlv.find(0x80);
+                    if (tag80 != TlvIndex.NOT_FOUND) {
+                        flow = CardProfileCache.FLOW_FORMAT1;
+                        trace.debug("fluxo b)");
+                        trace.debug("a resposta é do tipo 'Response Message Template Format 1' [tag 0x80]");
+                        byte[] gpoResponseTag80 = tlv.copyValue(tag80);
+                        trace.debug("encontrada tag 0x80 na resposta GPO com tamanho: {} dados: {}", gpoResponseTag80.length, gpoResponseTag80);
+                        aflBytes = Arrays.copyOfRange(gpoResponseTag80, 2, gpoResponseTag80.length);
+                    }
+                    
+                    /**
+                     * fluxo c)
+                     * A resposta é do tipo 'Response Message Template Format 2' e precisamos encontrar
+                     * a tag 0x94; o conteúdo é o 'Application File Locator' (AFL)
+                     * encontrado usando um cartão MasterCard
+                     */
+                    
+                    if (tlv.contains(0x77)) {
+                        if (flow == 0) {
+                            flow = CardProfileCache.FLOW_FORMAT2;
+                        }
+                        trace.debug("fluxo c)");
+                        trace.debug("a resposta é do tipo 'Response Message Template Format 2' [tag 0x77]");
+                        trace.debug("encontrada tag 0x77 na resposta GPO");
+                    }
+                    
+                    int tag94 = tlv.find(0x94);
+                    if (tag94 != TlvIndex.NOT_FOUND) {
+                        trace.debug("encontrado 'AFL' [tag 0x94] na resposta do tipo 'Response Message Template Format 2' [tag 0x77]");
+                        byte[] gpoResponseTag94 = tlv.copyValue(tag94);
+                        trace.debug("encontrada tag 0x94 na resposta GPO com tamanho: {} dados: {}", gpoResponseTag94.length, gpoResponseTag94);
+                        aflBytes = gpoResponseTag94;
+                    }
+                    
+                    // Se ainda não encontramos o PAN, precisamos ler os registros com base no AFL
+                    if (pan == null && aflBytes != null) {
+                        trace.debug("");
+                        trace.step(6, "ler arquivos e buscar PAN");
+                        trace.debug("06 ler os arquivos do cartão e buscar PAN e data de expiração");
+                        trace.debug("06 leitura dos arquivos do cartão e busca por PAN e data de expiração");
+                        
+                        List<byte[]> tag94BytesList = divideArray(aflBytes, 4);
+                        int tag94BytesListLength = tag94BytesList.size();
+                        trace.debug("");
+                        trace.debug(tag94BytesListLength == 1 ? "O AFL contém {} entrada para ler" : "O AFL contém {} entradas para ler", tag94BytesListLength);
+                        
+                        // O AFL é um array de bytes de 4 bytes de comprimento, então se seu array aflBytes tem 12 bytes de comprimento, há três conjuntos para ler.
+                        
+                        /**
+                         * agora vamos ler os arquivos especificados do cartão. O sistema é o seguinte:
+                         * O primeiro byte é o SFI, o segundo byte é o primeiro registro a ser lido,
+                         * o terceiro byte é o último registro a ser lido e o quarto byte indica o número
+                         * de setores envolvidos na autorização offline.
+                         * Aqui um exemplo: 10 01 03 00
+                         * SFI:             10
+                         * primeiro registro:  01
+                         * último registro:       03
+                         * offline:                  00
+                         * significa que somos solicitados a ler 3 registros (números 1, 2 e 3) do SFI 10
+                         */
+                        
+                        // lista (SFI, registro) na ordem do AFL: todos os comandos READ RECORD já são conhecidos aqui
+                        int totalRecords = countRecords(tag94BytesList, 0);
+                        int[] recordLocations = new int[totalRecords];
+                        int recordCount = 0;
+                        for (int i = 0; i < tag94BytesListLength; i++) {
+                            byte[] tag94BytesListEntry = tag94BytesList.get(i);
+                            byte sfiOrg = tag94BytesListEntry[0];
+                            int rec1 = byteToInt(tag94BytesListEntry[1]);
+                            int recL = byteToInt(tag94BytesListEntry[2]);
+                            // o quarto byte (registros da autorização offline) não é usado aqui
+                            int numberOfRecordsToRead = recL - rec1 + 1;
+                            trace.debug(numberOfRecordsToRead == 1 ? "para SFI {} leremos {} registro" : "para SFI {} leremos {} registros", Byte.valueOf(sfiOrg), numberOfRecordsToRead);
+                            for (int iRecord = rec1; iRecord <= recL; iRecord++) {
+                                recordLocations[recordCount++] = CardProfileCache.location(sfiOrg, iRecord);
+                            }
+                        }
+                        
+                        // perfil aprendido: o registro que trouxe o PAN na última leitura deste emissor vai primeiro
+                        int learnedLocation = profileCache.lookup(profileFingerprint);
+                        int learnedIndex = indexOf(recordLocations, recordCount, learnedLocation);
+                        if (learnedIndex > 0) {
+                            System.arraycopy(recordLocations, 0, recordLocations, 1, learnedIndex);
+                            recordLocations[0] = learnedLocation;
+                        }
+                        if (learnedIndex >= 0) {
+                            trace.debug("perfil de cartão conhecido, lendo primeiro o registro {} do SFI {}",
+                                    Integer.valueOf(CardProfileCache.recordOf(learnedLocation)), Byte.valueOf((byte) CardProfileCache.sfiOf(learnedLocation)));
+                        }
+                        
+                        // a partir daqui o GPO já foi feito: se o cartão sair do campo, a leitura
+                        // pode ser retomada com os registros que faltam (ver resume)
+                        ReadCheckpoint scan = new ReadCheckpoint(aidSelected, aidList.get(aidNumber).getPriority(), selectedApplication,
+                                profileFingerprint, tag80 != TlvIndex.NOT_FOUND ? CardProfileCache.FLOW_FORMAT1 : CardProfileCache.FLOW_FORMAT2,
+                                recordLocations, recordCount, learnedIndex, learnedLocation, requiredFields, new RecordMerge(foundFields));
+                        readRecords(transport, scan);
+                        learnProfile(scan);
+                        RecordMerge merged = scan.merged;
+                        int sentRecords = scan.sentRecords;
+                        
+                        if (merged.pan != null) {
+                            pan = merged.pan;
+                            expiryDate = merged.expiryDate;
+                            cardType = merged.cardType;
+                            applicationResult = SessionTimings.ApplicationResult.PARTIAL;
+                        }
+                        foundFields = merged.foundFields;
+                        if (CardFields.isSatisfied(foundFields, requiredFields)) {
+                            timings.setApplicationResult(aidNumber, SessionTimings.ApplicationResult.SUCCESS);
+                            // registros restantes do AFL, mais o SELECT dos AIDs restantes
+                            skippedExchangeCount = (totalRecords - sentRecords) + (aidList.size() - aidNumber - 1);
+                            break aids;
+                        }
+                    }
+                    timings.setApplicationResult(aidNumber, applicationResult);
+                } else {
+                    trace.debug("o comando de seleção de AID falhou");
+                    timings.setApplicationResult(aidNumber, SessionTimings.ApplicationResult.SELECT_FAILED);
+                }
+            }
+        } else {
+            trace.debug("A tag NFC descoberta não tem uma interface IsoDep.");
+        }
+
+        trace.step(99, "nossa jornada termina");
+        trace.debug("99 leitura do cartão concluída");
+        trace.debug("{} APDUs trocados, {} ignorados após obter os campos pedidos", timings.getApduCount(), Integer.valueOf(skippedExchangeCount));
+
+        return finishCard(pan, cardType, expiryDate, foundFields, requiredFields);
+    }
+
+    /**
+     * Continua a leitura interrompida pela perda do cartão ({@link #hasCheckpoint()}) sem repetir o
+     * GPO: seleciona de novo a mesma aplicação e envia só os READ RECORD que faltavam.
+     *
+     * Se a resposta do SELECT AID não for a mesma da leitura interrompida, ou se um registro trouxer
+     * um PAN diferente do já lido, o cartão é outro: o estado é descartado e é feita uma leitura
+     * completa. Quando o cartão recusa os READ RECORD sem um GPO na mesma sessão, a leitura termina
+     * incompleta; o GPO nunca é repetido aqui.
+     *
+     * @return o cartão lido, ou null quando algum campo pedido não foi encontrado
+     */
+    public Card resume(@NonNull ApduTransport transport, @NonNull SessionTimings timings) throws IOException {
+        ReadCheckpoint scan = checkpoint;
+        if (scan == null) {
+            throw new IllegalStateException("não há leitura interrompida para retomar");
+        }
+        checkpoint = null;
+        lastCard = null;
+        lastFoundFields = CardFields.NONE;
+        this.timings = timings;
+        startDeadline(timings);
+        skippedExchangeCount = 0;
+        selectedAid = scan.aid;
+        selectedApplication = scan.application;
+        flow = scan.flow;
+
+        trace.step(3, "retomar leitura da aplicação");
+        trace.debug("retomando AID {} no registro {} de {}", scan.aid, Integer.valueOf(scan.nextRecord + 1), Integer.valueOf(scan.recordCount));
+        byte[] selectAidCommand = selectApdu(scan.aid);
+        byte[] selectAidResponse = exchange(transport, SessionTimings.Phase.SELECT_AID, selectAidCommand);
+        trace.debug("03 resposta select AID com tamanho {} dados: {}", selectAidResponse.length, selectAidResponse);
+        if (!TlvIndex.isSuccess(selectAidResponse)
+                || CardProfileCache.fingerprint(scan.aid, selectAidResponse) != scan.profileFingerprint) {
+            trace.debug("outro cartão no campo, descartando a leitura interrompida");
+            return readCard(transport, scan.requiredFields, timings);
+        }
+        timings.addApplication(scan.aid, scan.priority);
+        if (progressListener != null) {
+            progressListener.onApplicationSelected(selectedApplication);
+        }
+
+        String panBefore = scan.merged.pan;
+        readRecords(transport, scan);
+        RecordMerge merged = scan.merged;
+        if (panBefore != null && !panBefore.equals(merged.pan)) {
+            trace.debug("PAN diferente do lido antes da perda do cartão, descartando a leitura interrompida");
+            return readCard(transport, scan.requiredFields, timings);
+        }
+        learnProfile(scan);
+        skippedExchangeCount = scan.recordCount - scan.sentRecords;
+
+        trace.step(99, "nossa jornada termina");
+        trace.debug("{} APDUs trocados na retomada, {} ignorados após obter os campos pedidos", timings.getApduCount(), Integer.valueOf(skippedExchangeCount));
+        boolean satisfied = merged.pan != null && CardFields.isSatisfied(merged.foundFields, scan.requiredFields);
+        timings.setApplicationResult(0, satisfied ? SessionTimings.ApplicationResult.SUCCESS
+                : merged.pan != null ? SessionTimings.ApplicationResult.PARTIAL : SessionTimings.ApplicationResult.NO_DATA);
+        return finishCard(merged.pan, merged.cardType, merged.expiryDate, merged.foundFields, scan.requiredFields);
+    }
+
+    /**
+     * guarda o que foi encontrado e devolve o cartão só quando todos os campos pedidos vieram
+     */
+    private Card finishCard(String pan, String cardType, String expiryDate, int foundFields, int requiredFields) {
+        if (pan == null) {
+            return null;
+        }
+        lastCard = new Card(pan, cardType, expiryDate, true, false);
+        lastFoundFields = foundFields;
+        return CardFields.isSatisfied(foundFields, requiredFields) ? lastCard : null;
+    }
+
+    /**
+     * Cartão da última leitura com o que foi encontrado, também quando faltou algum campo pedido
+     * e readCard devolveu null; quem pediu só parte dos campos pode ser atendido por ele. Null
+     * quando o PAN não foi lido.
+     */
+    public Card getLastCard() {
+        return lastCard;
+    }
+
+    /**
+     * campos ({@link CardFields}) encontrados na última leitura
+     */
+    public int getFoundFields() {
+        return lastFoundFields;
+    }
+
+    /**
+     * true quando a última leitura foi interrompida depois do GPO e pode continuar em {@link #resume}
+     */
+    public boolean hasCheckpoint() {
+        return checkpoint != null;
+    }
+
+    /**
+     * há quanto tempo a leitura foi interrompida, ou -1 sem leitura interrompida
+     */
+    public long getCheckpointAgeNanos() {
+        ReadCheckpoint scan = checkpoint;
+        return scan != null ? System.nanoTime() - scan.suspendedAtNanos : -1;
+    }
+
+    public void discardCheckpoint() {
+        checkpoint = null;
+    }
+
+    /**
+     * Liga a retomada de leituras interrompidas pela perda do cartão depois do GPO
+     * (ver {@link #resume}). Desligada, nenhum estado é guardado entre leituras.
+     */
+    public void setResumeAfterTagLost(boolean resumeAfterTagLost) {
+        this.resumeAfterTagLost = resumeAfterTagLost;
+        if (!resumeAfterTagLost) {
+            checkpoint = null;
+        }
+    }
+
+    /**
+     * quantidade de APDUs enviados ao cartão na última leitura
+     */
+    public int getExchangeCount() {
+        return timings.getApduCount();
+    }
+
+    /**
+     * quantidade de APDUs já conhecidos (READ RECORD restantes do AFL e SELECT dos AIDs restantes)
+     * que deixaram de ser enviados porque os campos pedidos já tinham sido encontrados
+     */
+    public int getSkippedExchangeCount() {
+        return skippedExchangeCount;
+    }
+
+    /**
+     * Mascara o PAN no rastreamento ({@link PanTokenizer#mask} no texto e
+     * {@link ApduTranscript#maskPan} nas respostas) para quem não pode ter o PAN em claro no
+     * log. Ao ligar, descarta o que já foi rastreado.
+     */
+    public void setMaskPanInTrace(boolean maskPanInTrace) {
+        this.maskPanInTrace = maskPanInTrace;
+        if (maskPanInTrace) {
+            trace.clear();
+        }
+    }
+
+    /**
+     * Guarda as respostas brutas (TLV com status word) do GPO e de cada READ RECORD da leitura,
+     * para entregá-las ao JS. Contêm o PAN em claro.
+     */
+    public void setCaptureRecords(boolean captureRecords) {
+        this.captureRecords = captureRecords;
+        if (!captureRecords) {
+            capturedRecordCount = 0;
+            Arrays.fill(capturedRecords, null);
+        }
+    }
+
+    /**
+     * respostas guardadas na última leitura; 0 quando a captura está desligada
+     */
+    public int getCapturedRecordCount() {
+        return capturedRecordCount;
+    }
+
+    /**
+     * posição da resposta i ({@link CardProfileCache#location}); {@link #GPO_RESPONSE_LOCATION}
+     * para a resposta do GPO
+     */
+    public int getCapturedRecordLocation(int index) {
+        return capturedLocations[index];
+    }
+
+    public byte[] getCapturedRecord(int index) {
+        return capturedRecords[index];
+    }
+
+    private void captureRecord(int location, byte[] response) {
+        if (!captureRecords) {
+            return;
+        }
+        if (capturedRecordCount == capturedRecords.length) {
+            capturedLocations = Arrays.copyOf(capturedLocations, capturedRecordCount * 2);
+            capturedRecords = Arrays.copyOf(capturedRecords, capturedRecordCount * 2);
+        }
+        capturedLocations[capturedRecordCount] = location;
+        capturedRecords[capturedRecordCount++] = response;
+        if (progressListener != null) {
+            progressListener.onRecord(location, response);
+        }
+    }
+
+    /**
+     * Ouvinte dos dados encontrados durante a leitura (aplicação, PAN e, com a captura ligada,
+     * cada resposta bruta), chamado na thread da leitura; null para nenhum.
+     */
+    public void setProgressListener(ReadProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Cancelamento cooperativo: consultado antes de cada APDU e quando um comando falha; true
+     * termina a leitura com {@link ReadCancelledException}. null para nenhum.
+     */
+    public void setCancellation(BooleanSupplier cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    private boolean isCancelled() {
+        BooleanSupplier check = cancellation;
+        return check != null && check.getAsBoolean();
+    }
+
+    /**
+     * Dados da cobrança enviados no PDOL (valor, moeda, país, data, hora, tipo e TTQ), já
+     * convertidos em bytes aqui, fora do toque; null volta aos valores padrão da
+     * {@link DolValues}. Vale para as leituras seguintes até ser trocado.
+     */
+    public void setTransactionContext(TransactionContext context) {
+        this.dolValues = context != null ? DolValues.getInstance().withTransaction(context) : DolValues.getInstance();
+    }
+
+    /**
+     * tabela usada no próximo GPO
+     */
+    public DolValues getDolValues() {
+        return dolValues;
+    }
+
+    /**
+     * estoque do Unpredictable Number; quem controla as threads chama
+     * {@link UnpredictableNumbers#prefetch()} fora da leitura
+     */
+    public UnpredictableNumbers getUnpredictableNumbers() {
+        return unpredictableNumbers;
+    }
+
+    /**
+     * AID da última aplicação selecionada com sucesso, ou null
+     */
+    public byte[] getSelectedAid() {
+        return selectedAid;
+    }
+
+    /**
+     * bandeira, produto e estratégia da última aplicação selecionada, ou {@link AidRegistry#UNKNOWN}
+     */
+    public AidRegistry.Entry getSelectedApplication() {
+        return selectedApplication;
+    }
+
+    /**
+     * Bandeiras ({@link AidRegistry.Entry#getBrand()}) cujas aplicações são selecionadas antes
+     * das demais, na ordem informada. Entre as restantes vale a tag 0x87 do PPSE.
+     */
+    public void setPreferredBrands(@NonNull List<String> preferredBrands) {
+        this.preferredBrands = Collections.unmodifiableList(new ArrayList<>(preferredBrands));
+    }
+
+    /**
+     * registro usado para resolver a bandeira; por padrão {@link AidRegistry#getDefault()}
+     */
+    public void setAidRegistry(@NonNull AidRegistry aidRegistry) {
+        this.aidRegistry = aidRegistry;
+    }
+
+    /**
+     * fluxo da resposta do GPO na última leitura ({@link CardProfileCache#FLOW_TRACK2} etc.), ou 0
+     */
+    public int getFlow() {
+        return flow;
+    }
+
+    public CardProfileCache getProfileCache() {
+        return profileCache;
+    }
+
+    /**
+     * tempos da última leitura
+     */
+    public SessionTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * envia um APDU registrando a duração e os bytes trocados na fase informada;
+     * a troca é registrada mesmo quando o transporte lança exceção
+     */
+    private byte[] exchange(ApduTransport transport, SessionTimings.Phase phase, byte[] command) throws IOException {
+        // a bandeira só é conhecida depois do SELECT AID
+        String brand = phase == SessionTimings.Phase.SELECT_PPSE || phase == SessionTimings.Phase.SELECT_AID
+                ? null : selectedApplication.isKnown() ? selectedApplication.getBrand() : null;
+        int timeout = commandTimeout(phase, brand);
+        if (timeout != transportTimeout) {
+            transport.setTimeout(timeout);
+            transportTimeout = timeout;
+        }
+        if (isCancelled()) {
+            throw new ReadCancelledException("leitura cancelada antes do " + phase, phase);
+        }
+        long start = System.nanoTime();
+        byte[] response = null;
+        try {
+            response = transport.transceive(command);
+            commandTimeouts.record(phase, brand, System.nanoTime() - start);
+            return response;
+        } catch (IOException e) {
+            // quem cancelou pode ter fechado o transporte para interromper este comando
+            if (isCancelled()) {
+                throw new ReadCancelledException("leitura cancelada durante o " + phase, phase, e);
+            }
+            // o IsoDep não distingue timeout de perda do cartão; o tempo decorrido distingue
+            if (!(e instanceof ReadTimeoutException) && System.nanoTime() - start >= timeout * 900_000L) {
+                if (timeoutCappedByDeadline) {
+                    throw new ReadTimeoutException("prazo da leitura de " + readDeadlineMillis + " ms esgotado esperando o "
+                            + phase, phase, true, e);
+                }
+                throw new ReadTimeoutException("o cartão não respondeu ao " + phase + " em " + timeout + " ms", phase, false, e);
+            }
+            throw e;
+        } finally {
+            timings.addApdu(phase, start, System.nanoTime() - start, command, response);
+        }
+    }
+
+    /**
+     * Timeout do próximo comando da fase: o aprendido em {@link CommandTimeouts}, reduzido para
+     * caber no prazo da leitura depois de reservar a latência típica dos passos seguintes.
+     *
+     * @throws ReadTimeoutException quando o prazo restante não cobre nem a latência típica do comando
+     */
+    private int commandTimeout(SessionTimings.Phase phase, String brand) throws ReadTimeoutException {
+        int timeout = commandTimeouts.timeoutMillis(phase, brand);
+        timeoutCappedByDeadline = false;
+        if (deadlineNanos == 0) {
+            return timeout;
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        long typical = commandTimeouts.typicalNanos(phase, brand);
+        if (remaining < typical) {
+            throw new ReadTimeoutException("prazo da leitura de " + readDeadlineMillis + " ms esgotado antes do " + phase
+                    + " (restavam " + Math.max(0, remaining / 1_000_000) + " ms)", phase, true);
+        }
+        long reserve = 0;
+        for (SessionTimings.Phase later : stepsAfter(phase)) {
+            reserve += commandTimeouts.typicalNanos(later, brand);
+        }
+        long available = Math.max(remaining - reserve, typical) / 1_000_000;
+        if (available >= timeout) {
+            return timeout;
+        }
+        timeoutCappedByDeadline = true;
+        return (int) Math.max(1, available);
+    }
+
+    private static final SessionTimings.Phase[] AFTER_PPSE = {SessionTimings.Phase.SELECT_AID, SessionTimings.Phase.GPO};
+    private static final SessionTimings.Phase[] AFTER_SELECT_AID = {SessionTimings.Phase.GPO};
+    private static final SessionTimings.Phase[] NONE_AFTER = {};
+
+    /**
+     * comandos que ainda virão depois deste em toda leitura; os READ RECORD dependem do AFL
+     * e do registro onde o PAN está, então não entram na reserva
+     */
+    private static SessionTimings.Phase[] stepsAfter(SessionTimings.Phase phase) {
+        switch (phase) {
+            case SELECT_PPSE:
+                return AFTER_PPSE;
+            case SELECT_AID:
+                return AFTER_SELECT_AID;
+            default:
+                return NONE_AFTER;
+        }
+    }
+
+    private void startDeadline(SessionTimings timings) {
+        deadlineNanos = readDeadlineMillis > 0 ? timings.getStartNanos() + readDeadlineMillis * 1_000_000L : 0;
+        transportTimeout = -1;
+        if (readDeadlineMillis > 0) {
+            trace.debug("prazo da leitura: {} ms desde a descoberta da tag", readDeadlineMillis);
+        }
+    }
+
+    /**
+     * Prazo total de cada leitura em ms, contado desde a descoberta da tag (início de
+     * {@link SessionTimings}); 0 desliga o prazo e cada comando usa só o seu timeout.
+     */
+    public void setReadDeadlineMillis(int readDeadlineMillis) {
+        this.readDeadlineMillis = Math.max(0, readDeadlineMillis);
+    }
+
+    public CommandTimeouts getCommandTimeouts() {
+        return commandTimeouts;
+    }
+
+    /**
+     * PAN como vai para o rastreamento
+     */
+    private String traced(String pan) {
+        return maskPanInTrace && pan != null ? PanTokenizer.mask(pan) : pan;
+    }
+
+    /**
+     * resposta como vai para o rastreamento; a cópia mascarada só é feita com o DEBUG ligado
+     */
+    private byte[] traced(byte[] response) {
+        return maskPanInTrace && trace.isEnabled(TraceLog.Level.DEBUG) ? ApduTranscript.maskPan(response) : response;
+    }
+
+    /**
+     * valor de uma tag 5A ou 57 como vai para o rastreamento
+     */
+    private byte[] tracedPanValue(byte[] value) {
+        if (!maskPanInTrace || !trace.isEnabled(TraceLog.Level.DEBUG)) {
+            return value;
+        }
+        byte[] masked = value.clone();
+        ApduTranscript.maskBcdPan(masked, 0, masked.length);
+        return masked;
+    }
+
+    /**
+     * log de rastreamento da leitura; o texto só é formatado em {@link TraceLog#render()}
+     */
+    public TraceLog getTrace() {
+        return trace;
+    }
+    
+    void clearData() {
+        trace.clear();
+        lastCard = null;
+        lastFoundFields = CardFields.NONE;
+        selectedAid = null;
+        selectedApplication = AidRegistry.UNKNOWN;
+        flow = 0;
+    }
+    
+    public static String trimLeadingLineFeeds(String input) {
+        String[] output = input.split("^\\n+", 2);
+        return output.length > 1 ? output[1] : output[0];
+    }
+    
+    /**
+     * constrói um comando select apdu
+     */
+    static byte[] selectApdu(@NonNull byte[] data) {
+        byte[] commandApdu = new byte[6 + data.length];
+        commandApdu[0] = (byte) 0x00;  // CLA
+        commandApdu[1] = (byte) 0xA4;  // INS
+        commandApdu[2] = (byte) 0x04;  // P1
+        commandApdu[3] = (byte) 0x00;  // P2
+        commandApdu[4] = (byte) (data.length & 0x0FF);       // Lc
+        System.arraycopy(data, 0, commandApdu, 5, data.length);
+        commandApdu[commandApdu.length - 1] = (byte) 0x00;  // Le
+        return commandApdu;
+    }
+    
+    /**
+     * converte um byte para int
+     */
+    public static int byteToInt(byte b) {
+        return (int) b & 0xFF;
+    }
+    
+    /**
+     * PAN, data de expiração e tipo acumulados a partir dos registros, na ordem de leitura
+     */
+    private static final class RecordMerge {
+        String pan;
+        String expiryDate;
+        String cardType;
+        int foundFields;
+        // SFI/registro de onde veio o PAN ({@link CardProfileCache#location(int, int)})
+        int panLocation = CardProfileCache.NOT_FOUND;
+
+        RecordMerge(int foundFields) {
+            this.foundFields = foundFields;
+        }
+    }
+
+    /**
+     * Leitura dos registros do AFL de uma aplicação depois do GPO. Se o cartão sair do campo no
+     * meio dos READ RECORD, este objeto guarda tudo o que é preciso para continuar sem repetir
+     * o GPO: a aplicação, os registros que faltam e os campos já encontrados.
+     */
+    private static final class ReadCheckpoint {
+        final byte[] aid;
+        final int priority;
+        final AidRegistry.Entry application;
+        final long profileFingerprint;
+        final int flow;
+        final int[] recordLocations;
+        final int recordCount;
+        final int learnedIndex;
+        final int learnedLocation;
+        final int requiredFields;
+        final RecordMerge merged;
+        // próximo registro a enviar e quantos já foram enviados, somando as tentativas
+        int nextRecord;
+        int sentRecords;
+        long suspendedAtNanos;
+
+        ReadCheckpoint(byte[] aid, int priority, AidRegistry.Entry application, long profileFingerprint, int flow,
+                       int[] recordLocations, int recordCount, int learnedIndex, int learnedLocation,
+                       int requiredFields, RecordMerge merged) {
+            this.aid = aid;
+            this.priority = priority;
+            this.application = application;
+            this.profileFingerprint = profileFingerprint;
+            this.flow = flow;
+            this.recordLocations = recordLocations;
+            this.recordCount = recordCount;
+            this.learnedIndex = learnedIndex;
+            this.learnedLocation = learnedLocation;
+            this.requiredFields = requiredFields;
+            this.merged = merged;
+        }
+    }
+
+    /**
+     * Envia os READ RECORD de scan a partir de scan.nextRecord até os campos pedidos serem
+     * encontrados, decodificando cada resposta antes do próximo comando. Numa IOException, com
+     * a retomada ligada, scan fica guardado para {@link #resume}.
+     */
+    private void readRecords(ApduTransport transport, ReadCheckpoint scan) throws IOException {
+        RecordMerge merged = scan.merged;
+        try {
+            while (scan.nextRecord < scan.recordCount) {
+                int sfiOrg = CardProfileCache.sfiOf(scan.recordLocations[scan.nextRecord]);
+                int iRecord = CardProfileCache.recordOf(scan.recordLocations[scan.nextRecord]);
+                int sfiNew = sfiOrg | 0x04; // adicionar 4 = definir bit 3
+                byte[] cmd = {(byte) 0x00, (byte) 0xB2, (byte) iRecord, (byte) sfiNew, (byte) 0x00};
+                trace.debug("comando readRecord SFI {} arquivo {} com tamanho: {} dados: {}", Byte.valueOf((byte) sfiOrg), Integer.valueOf(iRecord), cmd.length, cmd);
+                byte[] readRecordResponse = exchange(transport, SessionTimings.Phase.READ_RECORD, cmd);
+                scan.sentRecords++;
+                // só avança com a resposta: o registro que falhou é pedido de novo na retomada
+                scan.nextRecord++;
+                if (readRecordResponse != null) {
+                    byte[] tracedRecordResponse = traced(readRecordResponse);
+                    trace.debug("resposta readRecord com tamanho: {} dados: {}", readRecordResponse.length, tracedRecordResponse);
+                    trace.tlv(tracedRecordResponse);
+                    captureRecord(scan.recordLocations[scan.nextRecord - 1], readRecordResponse);
+                    if (mergeRecord(sfiOrg, iRecord, readRecordResponse, scan.aid, merged, scan.requiredFields)) {
+                        break;
+                    }
+                } else {
+                    trace.debug("a resposta readRecord foi NULA");
+                }
+            }
+        } catch (IOException e) {
+            // prazo esgotado ou leitura cancelada não é retomada: quem pediu já desistiu da leitura
+            boolean deadline = e instanceof ReadTimeoutException && ((ReadTimeoutException) e).isDeadline();
+            if (resumeAfterTagLost && !deadline && !(e instanceof ReadCancelledException) && !CardFields.isSatisfied(merged.foundFields, scan.requiredFields)) {
+                scan.suspendedAtNanos = System.nanoTime();
+                checkpoint = scan;
+                trace.debug("cartão perdido no registro {} de {}, leitura pode ser retomada sem novo GPO",
+                        Integer.valueOf(scan.nextRecord + 1), Integer.valueOf(scan.recordCount));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * aprende onde este emissor guarda o PAN
+     */
+    private void learnProfile(ReadCheckpoint scan) {
+        RecordMerge merged = scan.merged;
+        if (merged.pan != null && scan.learnedIndex >= 0 && merged.panLocation == scan.learnedLocation) {
+            profileCache.markHit(scan.learnedIndex);
+        } else {
+            profileCache.markMiss();
+        }
+        if (merged.pan != null) {
+            profileCache.learn(scan.profileFingerprint, scan.flow, merged.panLocation);
+        }
+    }
+
+    /**
+     * decodifica um registro e aplica PAN (5A) e validade (5F24); um registro com PAN
+     * substitui o anterior
+     *
+     * @return true quando os campos pedidos foram todos encontrados
+     */
+    private boolean mergeRecord(int sfi, int record, byte[] response, byte[] aidSelected, RecordMerge merged, int requiredFields) {
+        byte[] readRecordResponseTag5a = null;
+        byte[] readRecordResponseTag5f24 = null;
+        try {
+            recordTlv.index(response);
+            if (recordTlv.isMalformed()) {
+                LOG.warning("Parsing dados inválidos na resposta readRecord SFI " + sfi + " registro " + record);
+            }
+            readRecordResponseTag5a = recordTlv.copyValueOf(0x5A);
+            readRecordResponseTag5f24 = recordTlv.copyValueOf(0x5F24);
+        } catch (RuntimeException e) {
+            LOG.warning("Exceção ao decodificar registro SFI " + sfi + " registro " + record + ": " + e.getMessage());
+        }
+        if (readRecordResponseTag5a != null) {
+            trace.debug("encontrada tag 0x5a na resposta readRecord com tamanho: {} dados: {}", readRecordResponseTag5a.length, tracedPanValue(readRecordResponseTag5a));
+        }
+        if (readRecordResponseTag5f24 != null) {
+            trace.debug("encontrada tag 0x5f24 na resposta readRecord com tamanho: {} dados: {}", readRecordResponseTag5f24.length, readRecordResponseTag5f24);
+        }
+        
+        if (readRecordResponseTag5a != null) {
+            // Agora temos o PAN e a data de expiração
+            merged.pan = getPanFromRecord(readRecordResponseTag5a, digits);
+            merged.panLocation = CardProfileCache.location(sfi, record);
+            // AAMMDD ou AAMM convertido para MM/AA
+            merged.expiryDate = getExpirationDateFromRecord(readRecordResponseTag5f24, digits);
+            
+            trace.debug("");
+            trace.step(7, "exibir PAN e data de expiração");
+            trace.debug("07 obter PAN e data de expiração das tags 0x5a e 0x5f24");
+            trace.debug("07 obtenção do PAN e data de expiração das tags 0x5a e 0x5f24 concluída");
+            trace.debug("dados para AID {}", aidSelected);
+            trace.debug("PAN: {}", traced(merged.pan));
+            String expirationDateTemplate = readRecordResponseTag5f24 != null && readRecordResponseTag5f24.length == 2 ? "Data de expiração (AAMM): {}" : "Data de expiração (AAMMDD): {}";
+            trace.debug(expirationDateTemplate, merged.expiryDate);
+            trace.debug("");
+            
+            // Determinar o tipo de cartão com base no AID selecionado
+            merged.cardType = selectedApplication.getBrand();
+            merged.foundFields |= CardFields.CARD_NUMBER | CardFields.CARD_TYPE;
+            if (readRecordResponseTag5f24 != null) {
+                merged.foundFields |= CardFields.EXPIRY_DATE;
+            }
+            if (progressListener != null) {
+                progressListener.onCardData(merged.pan, readRecordResponseTag5f24 != null ? merged.expiryDate : null);
+            }
+        }
+        return CardFields.isSatisfied(merged.foundFields, requiredFields);
+    }
+
+    /**
+     * posição de value nos primeiros length elementos, ou -1
+     */
+    private static int indexOf(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * soma dos registros das entradas do AFL a partir de fromEntry
+     */
+    private static int countRecords(List<byte[]> aflEntries, int fromEntry) {
+        int records = 0;
+        for (int i = fromEntry; i < aflEntries.size(); i++) {
+            byte[] entry = aflEntries.get(i);
+            records += Math.max(0, byteToInt(entry[2]) - byteToInt(entry[1]) + 1);
+        }
+        return records;
+    }
+    
+    /**
+     * divide um array de bytes em partes
+     */
+    private static List<byte[]> divideArray(byte[] source, int chunksize) {
+        List<byte[]> result = new ArrayList<byte[]>();
+        int start = 0;
+        while (start < source.length) {
+            int end = Math.min(source.length, start + chunksize);
+            result.add(Arrays.copyOfRange(source, start, end));
+            start += chunksize;
+        }
+        return result;
+    }
+    
+    /**
+     * monta o comando GPO com os valores da cobrança (ou os padrão) para cada tag pedida no
+     * PDOL e um Unpredictable Number novo; a tabela descritiva só é montada quando o trace está
+     * em VERBOSE
+     *
+     * @return null quando os dados do PDOL não cabem num APDU curto
+     */
+    private byte[] getGpoFromPdolExtended(@NonNull DOL pdol, int ttqVariant) {
+        DolValues values = dolValues;
+        byte[] command = pdol.buildGpoCommand(values, ttqVariant);
+        if (command == null) {
+            trace.debug("PDOL pede {} bytes, acima do limite de um APDU curto; aplicação ignorada", Integer.valueOf(pdol.getTotalLength()));
+            LOG.warning("PDOL pede " + pdol.getTotalLength() + " bytes, acima do limite de um APDU curto");
+            return null;
+        }
+        // 9F37: Unpredictable Number
+        int unpredictableNumber = pdol.indexOf(0x9F37);
+        if (unpredictableNumber >= 0) {
+            unpredictableNumbers.fill(command, pdol.getGpoDataOffset() + pdol.getOffset(unpredictableNumber), pdol.getLength(unpredictableNumber));
+        }
+        if (!trace.isEnabled(TraceLog.Level.VERBOSE)) {
+            return command;
+        }
+
+        int tagAndLengthSize = pdol.size();
+        StringBuilder returnString = new StringBuilder();
+        returnString.append("The card is requesting " + tagAndLengthSize + (tagAndLengthSize == 1 ? " tag" : " tags")).append("\n");
+        returnString.append("\n");
+        returnString.append("Tag  Tag Name                        Length Value").append("\n");
+        returnString.append("-----------------------------------------------------").append("\n");
+        if (tagAndLengthSize < 1) {
+            returnString.append("     no PDOL provided, returning an empty command").append("\n");
+        }
+        List<com.github.devnied.emvnfccard.iso7816emv.TagAndLength> tagAndLength = pdol.getTagAndLengthList();
+        for (int i = 0; i < tagAndLengthSize; i++) {
+            int lengthOfTag = pdol.getLength(i);
+            int valueOffset = pdol.getGpoDataOffset() + pdol.getOffset(i);
+            byte[] usedValue = Arrays.copyOfRange(command, valueOffset, valueOffset + lengthOfTag);
+            String tagName = i < tagAndLength.size() ? tagAndLength.get(i).getTag().getName() : values.getDolName(pdol.getTag(i));
+            returnString.append(trimStringRight(Integer.toHexString(pdol.getTag(i)), 5))
+                       .append(trimStringRight(tagName, 36))
+                       .append(trimStringRight(String.valueOf(lengthOfTag), 3))
+                       .append(Nibbles.toHexSpaced(usedValue))
+                       .append("\n");
+        }
+        returnString.append("-----------------------------------------------------");
+        trace.verbose("");
+        trace.verbose(returnString.toString());
+        return command;
+    }
+
+    /**
+     * PAN da Track 2 (tag 57) contida em data[offset, offset + length), decodificado em buffer
+     */
+    static String getPanFromTrack2EquivalentData(byte[] data, int offset, int length, char[] buffer) {
+        if (data == null) {
+            return "";
+        }
+        return new String(buffer, 0, Nibbles.decodeTrack2Pan(data, offset, length, buffer));
+    }
+
+    /**
+     * validade da Track 2 (tag 57) como MM/AA, ou "" quando não há separador D
+     */
+    static String getExpirationDateFromTrack2EquivalentData(byte[] data, int offset, int length, char[] buffer) {
+        if (data == null) {
+            return "";
+        }
+        return new String(buffer, 0, Nibbles.decodeTrack2Expiry(data, offset, length, buffer));
+    }
+
+    /**
+     * PAN da tag 5A sem o preenchimento F
+     */
+    static String getPanFromRecord(byte[] tag5a, char[] buffer) {
+        if (tag5a == null) {
+            return "";
+        }
+        return new String(buffer, 0, Nibbles.decodePan(tag5a, 0, tag5a.length, buffer));
+    }
+
+    /**
+     * data da tag 5F24 como MM/AA; tamanhos fora do padrão voltam em hexadecimal, como vieram
+     */
+    static String getExpirationDateFromRecord(byte[] tag5f24, char[] buffer) {
+        if (tag5f24 == null) {
+            return "";
+        }
+        int length = Nibbles.decodeExpiry(tag5f24, 0, tag5f24.length, buffer);
+        return length > 0 ? new String(buffer, 0, length) : Nibbles.toHex(tag5f24);
+    }
+
+    private String trimStringRight(String data, int len) {
+        if (data.length() >= len) {
+            data = data.substring(0, (len - 1));
+        }
+        while (data.length() < len) {
+            data = data + " ";
+        }
+        return data;
+    }
+
+}
@@ -0,0 +1,254 @@
+package com.nfcreader;
+
+/**
+ * Codificação hexadecimal e decodificação BCD por nibble, sem passar por String intermediária.
+ *
+ * Os dados de cartão chegam em BCD compactado: o PAN da tag 5A com preenchimento F no final, a
+ * Track 2 da tag 57 com o separador D entre o PAN e a validade, e a data da tag 5F24 como AAMMDD.
+ * Os métodos aqui percorrem esses bytes nibble a nibble direto do array da resposta (com offset e
+ * tamanho, para não exigir cópia da TLV) e escrevem os dígitos num char[] fornecido por quem chama;
+ * a única alocação é a String final, feita pelo chamador quando ele precisa dela.
+ *
+ * A codificação hexadecimal usa uma tabela única em maiúsculas e é compartilhada por todo o módulo
+ * (trace, transcrições, cartão virtual, valores de DOL).
+ */
+public final class Nibbles {
+
+    /** separador entre PAN e validade na Track 2 */
+    public static final int TRACK2_SEPARATOR = 0xD;
+    /** preenchimento de BCD de tamanho ímpar */
+    public static final int PADDING = 0xF;
+    /** maior PAN permitido pela ISO/IEC 7812 */
+    public static final int MAX_PAN_DIGITS = 19;
+    /** tamanho de buffer suficiente para qualquer campo decodificado por esta classe (MM/AA cabe) */
+    public static final int BUFFER_SIZE = 40;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final int TRACK2_FALLBACK_DIGITS = 16;
+
+    private Nibbles() {
+    }
+
+    // ----------------------------------------------------------------------------------------
+    // hexadecimal
+    // ----------------------------------------------------------------------------------------
+
+    /**
+     * bytes em hexadecimal maiúsculo; "" para null
+     */
+    public static String toHex(byte[] bytes) {
+        return bytes == null ? "" : toHex(bytes, 0, bytes.length);
+    }
+
+    public static String toHex(byte[] bytes, int offset, int length) {
+        char[] out = new char[length * 2];
+        encodeHex(bytes, offset, length, out, 0);
+        return new String(out);
+    }
+
+    /**
+     * bytes em hexadecimal separados por espaço (com espaço também após o último), como no
+     * relatório do PDOL; "" para null
+     */
+    public static String toHexSpaced(byte[] bytes) {
+        if (bytes == null) {
+            return "";
+        }
+        char[] out = new char[bytes.length * 3];
+        for (int i = 0, o = 0; i < bytes.length; i++) {
+            out[o++] = HEX[(bytes[i] >> 4) & 0xF];
+            out[o++] = HEX[bytes[i] & 0xF];
+            out[o++] = ' ';
+        }
+        return new String(out);
+    }
+
+    /**
+     * escreve bytes[offset, offset + length) em hexadecimal a partir de out[outOffset]; retorna o
+     * número de caracteres escritos
+     */
+    public static int encodeHex(byte[] bytes, int offset, int length, char[] out, int outOffset) {
+        int o = outOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out[o++] = HEX[(bytes[i] >> 4) & 0xF];
+            out[o++] = HEX[bytes[i] & 0xF];
+        }
+        return o - outOffset;
+    }
+
+    /**
+     * acrescenta os bytes em hexadecimal ao StringBuilder, sem criar String intermediária
+     */
+    public static StringBuilder appendHex(StringBuilder sb, byte[] bytes) {
+        if (bytes != null) {
+            for (byte b : bytes) {
+                sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * um byte em hexadecimal com dois dígitos
+     */
+    public static String toHex(byte b) {
+        return new String(new char[] {HEX[(b >> 4) & 0xF], HEX[b & 0xF]});
+    }
+
+    /**
+     * converte hexadecimal (maiúsculo ou minúsculo) para bytes; espaços entre os pares são ignorados
+     */
+    public static byte[] fromHex(CharSequence hex) {
+        int digits = 0;
+        for (int i = 0; i < hex.length(); i++) {
+            if (hex.charAt(i) != ' ') {
+                digits++;
+            }
+        }
+        if ((digits & 1) != 0) {
+            throw new IllegalArgumentException("hexadecimal com número ímpar de dígitos: " + hex);
+        }
+        byte[] bytes = new byte[digits / 2];
+        int high = -1;
+        int count = 0;
+        for (int i = 0; i < hex.length(); i++) {
+            char c = hex.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            int value = Character.digit(c, 16);
+            if (value < 0) {
+                throw new IllegalArgumentException("caractere não hexadecimal '" + c + "' em: " + hex);
+            }
+            if (high < 0) {
+                high = value;
+            } else {
+                bytes[count++] = (byte) ((high << 4) | value);
+                high = -1;
+            }
+        }
+        return bytes;
+    }
+
+    // ----------------------------------------------------------------------------------------
+    // nibbles e BCD
+    // ----------------------------------------------------------------------------------------
+
+    /**
+     * Escreve value em BCD compactado (numérico "n" do EMV) em dest[offset, offset + length),
+     * alinhado à direita e completado com zeros à esquerda, ex. 1000 em 6 bytes -> 00 00 00 00 10 00
+     *
+     * @throws IllegalArgumentException se value for negativo ou tiver mais de length * 2 dígitos
+     */
+    public static void encodeBcd(long value, byte[] dest, int offset, int length) {
+        if (value < 0) {
+            throw new IllegalArgumentException("valor BCD negativo: " + value);
+        }
+        long rest = value;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            int low = (int) (rest % 10);
+            rest /= 10;
+            int high = (int) (rest % 10);
+            rest /= 10;
+            dest[i] = (byte) ((high << 4) | low);
+        }
+        if (rest != 0) {
+            throw new IllegalArgumentException(value + " não cabe em " + (length * 2) + " dígitos BCD");
+        }
+    }
+
+    /**
+     * nibble de índice index (0 = nibble alto do primeiro byte) em data a partir de offset
+     */
+    public static int nibble(byte[] data, int offset, int index) {
+        int b = data[offset + (index >> 1)];
+        return (index & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+    }
+
+    /**
+     * índice do primeiro nibble igual a value entre os length bytes a partir de offset, ou -1
+     */
+    public static int indexOfNibble(byte[] data, int offset, int length, int value) {
+        for (int i = 0, n = length * 2; i < n; i++) {
+            if (nibble(data, offset, i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * quantidade de nibbles em [0, nibbleCount) depois de descartar o preenchimento F no final
+     */
+    public static int trimPadding(byte[] data, int offset, int nibbleCount) {
+        int n = nibbleCount;
+        while (n > 0 && nibble(data, offset, n - 1) == PADDING) {
+            n--;
+        }
+        return n;
+    }
+
+    /**
+     * escreve os nibbles [from, to) como dígitos hexadecimais em out a partir de outOffset; para
+     * BCD válido são só dígitos decimais. Retorna o número de caracteres escritos
+     */
+    public static int decodeDigits(byte[] data, int offset, int from, int to, char[] out, int outOffset) {
+        int o = outOffset;
+        for (int i = from; i < to; i++) {
+            out[o++] = HEX[nibble(data, offset, i)];
+        }
+        return o - outOffset;
+    }
+
+    /**
+     * PAN em BCD com preenchimento F (tag 5A) escrito em out; retorna o número de dígitos
+     */
+    public static int decodePan(byte[] data, int offset, int length, char[] out) {
+        return decodeDigits(data, offset, 0, trimPadding(data, offset, length * 2), out, 0);
+    }
+
+    /**
+     * PAN da Track 2 (tag 57): os dígitos antes do separador D, sem preenchimento F. Sem separador,
+     * cai para os primeiros 16 nibbles, o tamanho típico de um PAN. Retorna o número de dígitos
+     */
+    public static int decodeTrack2Pan(byte[] data, int offset, int length, char[] out) {
+        int separator = indexOfNibble(data, offset, length, TRACK2_SEPARATOR);
+        if (separator > 0) {
+            return decodeDigits(data, offset, 0, trimPadding(data, offset, separator), out, 0);
+        }
+        return decodeDigits(data, offset, 0, Math.min(TRACK2_FALLBACK_DIGITS, length * 2), out, 0);
+    }
+
+    /**
+     * validade da Track 2 (AAMM logo após o separador D) escrita em out como MM/AA; retorna 5, ou 0
+     * quando não há separador ou os quatro dígitos não cabem na tag
+     */
+    public static int decodeTrack2Expiry(byte[] data, int offset, int length, char[] out) {
+        int separator = indexOfNibble(data, offset, length, TRACK2_SEPARATOR);
+        if (separator <= 0 || separator + 4 >= length * 2) {
+            return 0;
+        }
+        return writeMonthYear(data, offset, separator + 1, out);
+    }
+
+    /**
+     * data AAMM ou AAMMDD em BCD (tag 5F24) escrita em out como MM/AA; retorna 5, ou 0 quando o
+     * tamanho não é 2 nem 3 bytes
+     */
+    public static int decodeExpiry(byte[] data, int offset, int length, char[] out) {
+        if (length != 2 && length != 3) {
+            return 0;
+        }
+        return writeMonthYear(data, offset, 0, out);
+    }
+
+    private static int writeMonthYear(byte[] data, int offset, int yearNibble, char[] out) {
+        out[0] = HEX[nibble(data, offset, yearNibble + 2)];
+        out[1] = HEX[nibble(data, offset, yearNibble + 3)];
+        out[2] = '/';
+        out[3] = HEX[nibble(data, offset, yearNibble)];
+        out[4] = HEX[nibble(data, offset, yearNibble + 1)];
+        return 5;
+    }
+}
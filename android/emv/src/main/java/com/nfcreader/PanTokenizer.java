@@ -0,0 +1,142 @@
+package com.nfcreader;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Troca o PAN por um token ainda no caminho de leitura, para que só o token, o PAN mascarado
+ * e o BIN cheguem ao JS.
+ *
+ * O token é o HMAC-SHA256 dos dígitos do PAN, truncado em {@link #TOKEN_BYTES} bytes e escrito
+ * em hexadecimal: o mesmo cartão com a mesma chave dá sempre o mesmo token, e sem a chave não se
+ * volta ao PAN. A chave é a do app, quando ele define uma, ou a de {@link #withRandomKey()}, que
+ * dá tokens válidos só enquanto o processo vive: entre execuções do app o mesmo cartão recebe
+ * outro token. O {@link Mac} é criado e iniciado com a chave uma única vez e reaproveitado em
+ * todos os toques; a instância não é thread-safe e deve ficar na thread da leitura.
+ */
+public final class PanTokenizer {
+
+    public static final String ALGORITHM = "HmacSHA256";
+    public static final int MIN_KEY_BYTES = 16;
+    // chave gerada por withRandomKey, o tamanho da saída do SHA-256
+    public static final int RANDOM_KEY_BYTES = 32;
+    public static final int TOKEN_BYTES = 16;
+    public static final int BIN_DIGITS = 6;
+    public static final int LAST_DIGITS = 4;
+
+    private static final char MASK = '*';
+
+    private final Mac mac;
+    private final byte[] input = new byte[Nibbles.MAX_PAN_DIGITS];
+    private final byte[] digest;
+    private final char[] text = new char[TOKEN_BYTES * 2];
+
+    // resultado da última chamada a tokenize; o PAN em claro não é guardado
+    private String token;
+    private String maskedPan;
+    private String bin;
+
+    /**
+     * @throws InvalidKeyException com menos de {@link #MIN_KEY_BYTES} bytes de chave
+     */
+    public PanTokenizer(byte[] key) throws GeneralSecurityException {
+        if (key == null || key.length < MIN_KEY_BYTES) {
+            throw new InvalidKeyException("a chave de tokenização precisa de pelo menos " + MIN_KEY_BYTES + " bytes");
+        }
+        mac = Mac.getInstance(ALGORITHM);
+        mac.init(new SecretKeySpec(key, ALGORITHM));
+        digest = new byte[mac.getMacLength()];
+    }
+
+    /**
+     * Tokenizador com uma chave aleatória que nunca sai desta instância: o mesmo PAN dá o mesmo
+     * token enquanto ela existir, mas os tokens não valem entre execuções do app
+     */
+    public static PanTokenizer withRandomKey() {
+        byte[] key = new byte[RANDOM_KEY_BYTES];
+        new SecureRandom().nextBytes(key);
+        try {
+            return new PanTokenizer(key);
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 é obrigatório em toda JVM e no Android
+            throw new IllegalStateException(e);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    /**
+     * tokeniza o PAN; o resultado também fica em {@link #getToken()}, {@link #getMaskedPan()} e
+     * {@link #getBin()} até a próxima chamada
+     *
+     * @return o token
+     */
+    public String tokenize(String pan) {
+        int digits = Math.min(pan.length(), input.length);
+        for (int i = 0; i < digits; i++) {
+            input[i] = (byte) pan.charAt(i);
+        }
+        mac.update(input, 0, digits);
+        try {
+            mac.doFinal(digest, 0);
+        } catch (ShortBufferException e) {
+            // digest tem o tamanho do Mac
+            throw new IllegalStateException(e);
+        }
+        Arrays.fill(input, (byte) 0);
+        Nibbles.encodeHex(digest, 0, TOKEN_BYTES, text, 0);
+        token = new String(text);
+        maskedPan = mask(pan);
+        bin = bin(pan);
+        return token;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getMaskedPan() {
+        return maskedPan;
+    }
+
+    public String getBin() {
+        return bin;
+    }
+
+    /**
+     * esquece o resultado da última tokenização
+     */
+    public void clear() {
+        token = null;
+        maskedPan = null;
+        bin = null;
+    }
+
+    /**
+     * PAN com tudo entre o BIN e os {@link #LAST_DIGITS} últimos dígitos trocado por '*';
+     * PANs curtos demais para isso ficam só com os últimos dígitos
+     */
+    public static String mask(String pan) {
+        int length = pan.length();
+        int keepStart = length > BIN_DIGITS + LAST_DIGITS ? BIN_DIGITS : 0;
+        int keepEnd = Math.min(LAST_DIGITS, length);
+        char[] masked = new char[length];
+        for (int i = 0; i < length; i++) {
+            masked[i] = i < keepStart || i >= length - keepEnd ? pan.charAt(i) : MASK;
+        }
+        return new String(masked);
+    }
+
+    /**
+     * os {@link #BIN_DIGITS} primeiros dígitos do PAN (o emissor)
+     */
+    public static String bin(String pan) {
+        return pan.length() > BIN_DIGITS ? pan.substring(0, BIN_DIGITS) : "";
+    }
+}
@@ -0,0 +1,31 @@
+package com.nfcreader;
+
+import java.io.IOException;
+
+/**
+ * Leitura abandonada a pedido de quem a iniciou: o cancelamento é verificado antes de cada
+ * APDU, e um comando interrompido no meio (o transporte fechado por outra thread) também
+ * termina aqui. Uma leitura cancelada não deixa estado para {@link EmvCardReader#resume}.
+ */
+public class ReadCancelledException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SessionTimings.Phase phase;
+
+    public ReadCancelledException(String message, SessionTimings.Phase phase) {
+        this(message, phase, null);
+    }
+
+    public ReadCancelledException(String message, SessionTimings.Phase phase, Throwable cause) {
+        super(message, cause);
+        this.phase = phase;
+    }
+
+    /**
+     * fase do comando que deixou de ser enviado ou que foi interrompido
+     */
+    public SessionTimings.Phase getPhase() {
+        return phase;
+    }
+}
@@ -0,0 +1,212 @@
+package com.nfcreader;
+
+import java.util.Arrays;
+
+/**
+ * Agrupa os dados que o {@link EmvCardReader} encontra durante a leitura em poucos eventos
+ * para o JS: no máximo {@link #getMaxEvents()} por toque, seja qual for a quantidade de
+ * registros lidos.
+ *
+ * A aplicação selecionada e o PAN são publicados assim que chegam, desde que sobre espaço; a
+ * aplicação nunca ocupa a última vaga, que fica para o PAN. As respostas brutas dos registros
+ * (só com a captura ligada) são acumuladas e seguem junto com o próximo evento, ou sozinhas
+ * quando o último evento tem mais de {@link #getRecordIntervalNanos()}. Cada evento traz tudo o
+ * que já é conhecido do cartão e os registros lidos desde o anterior; o que não coube segue no
+ * resultado final, que tem o cartão e todos os registros capturados.
+ *
+ * Os callbacks rodam na thread da leitura; {@link Sink#publish} também, e recebe uma cópia
+ * que pode ser entregue a outra thread.
+ */
+public final class ReadProgress implements ReadProgressListener {
+
+    public static final int DEFAULT_MAX_EVENTS = 3;
+    public static final long DEFAULT_RECORD_INTERVAL_NANOS = 30_000_000L;
+
+    /**
+     * o que fez o evento ser publicado
+     */
+    public enum Stage {
+        APPLICATION,
+        CARD_DATA,
+        RECORDS
+    }
+
+    public interface Sink {
+        void publish(Update update);
+    }
+
+    /**
+     * Estado da leitura no momento do evento. records segue o formato das respostas brutas
+     * do {@link CardResultFrame}: short quantidade e, para cada uma, byte SFI, byte registro,
+     * short tamanho e os bytes, em little endian.
+     */
+    public static final class Update {
+        private final Stage stage;
+        private final AidRegistry.Entry application;
+        private final String cardNumber;
+        private final String expiryDate;
+        private final int recordCount;
+        private final byte[] records;
+
+        Update(Stage stage, AidRegistry.Entry application, String cardNumber, String expiryDate, int recordCount, byte[] records) {
+            this.stage = stage;
+            this.application = application;
+            this.cardNumber = cardNumber;
+            this.expiryDate = expiryDate;
+            this.recordCount = recordCount;
+            this.records = records;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        /**
+         * última aplicação selecionada, ou null se ainda não houve SELECT AID aceito
+         */
+        public AidRegistry.Entry getApplication() {
+            return application;
+        }
+
+        public String getCardNumber() {
+            return cardNumber;
+        }
+
+        public String getExpiryDate() {
+            return expiryDate;
+        }
+
+        /**
+         * quantidade de respostas brutas em {@link #getRecords()}
+         */
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        public byte[] getRecords() {
+            return records;
+        }
+    }
+
+    private final Sink sink;
+    private volatile int maxEvents = DEFAULT_MAX_EVENTS;
+    private volatile long recordIntervalNanos = DEFAULT_RECORD_INTERVAL_NANOS;
+
+    // estado do toque em curso, só usado na thread da leitura
+    private int sentEvents;
+    private long lastPublishNanos;
+    private AidRegistry.Entry application;
+    private String cardNumber;
+    private String expiryDate;
+    private int recordCount;
+    private byte[] records = new byte[512];
+    private int recordsLength = 2;
+
+    public ReadProgress(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Limite de eventos por toque; 0 desliga os eventos de progresso. Com 1 só o PAN é
+     * publicado, já com a bandeira.
+     */
+    public void setMaxEvents(int maxEvents) {
+        this.maxEvents = Math.max(0, maxEvents);
+    }
+
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    public void setRecordIntervalNanos(long recordIntervalNanos) {
+        this.recordIntervalNanos = recordIntervalNanos;
+    }
+
+    public long getRecordIntervalNanos() {
+        return recordIntervalNanos;
+    }
+
+    /**
+     * começa um toque novo: zera a contagem de eventos e descarta o que não foi publicado
+     */
+    public void start() {
+        sentEvents = 0;
+        lastPublishNanos = System.nanoTime();
+        application = null;
+        cardNumber = null;
+        expiryDate = null;
+        recordCount = 0;
+        recordsLength = 2;
+    }
+
+    /**
+     * eventos publicados desde {@link #start()}
+     */
+    public int getSentEvents() {
+        return sentEvents;
+    }
+
+    @Override
+    public void onApplicationSelected(AidRegistry.Entry application) {
+        if (maxEvents == 0) {
+            return;
+        }
+        this.application = application;
+        if (sentEvents < maxEvents - 1) {
+            publish(Stage.APPLICATION);
+        }
+    }
+
+    @Override
+    public void onCardData(String cardNumber, String expiryDate) {
+        if (maxEvents == 0) {
+            return;
+        }
+        this.cardNumber = cardNumber;
+        this.expiryDate = expiryDate;
+        if (sentEvents < maxEvents) {
+            publish(Stage.CARD_DATA);
+        }
+    }
+
+    @Override
+    public void onRecord(int location, byte[] response) {
+        if (maxEvents == 0) {
+            return;
+        }
+        ensure(4 + response.length);
+        records[recordsLength++] = (byte) CardProfileCache.sfiOf(location);
+        records[recordsLength++] = (byte) CardProfileCache.recordOf(location);
+        records[recordsLength++] = (byte) response.length;
+        records[recordsLength++] = (byte) (response.length >> 8);
+        System.arraycopy(response, 0, records, recordsLength, response.length);
+        recordsLength += response.length;
+        recordCount++;
+        // enquanto o PAN não chegou, a última vaga fica reservada para ele
+        int limit = cardNumber != null ? maxEvents : maxEvents - 1;
+        if (sentEvents < limit && System.nanoTime() - lastPublishNanos >= recordIntervalNanos) {
+            publish(Stage.RECORDS);
+        }
+    }
+
+    private void publish(Stage stage) {
+        byte[] pending = null;
+        if (recordCount > 0) {
+            records[0] = (byte) recordCount;
+            records[1] = (byte) (recordCount >> 8);
+            pending = Arrays.copyOf(records, recordsLength);
+        }
+        Update update = new Update(stage, application, cardNumber, expiryDate, recordCount, pending);
+        sentEvents++;
+        lastPublishNanos = System.nanoTime();
+        recordCount = 0;
+        recordsLength = 2;
+        sink.publish(update);
+    }
+
+    private void ensure(int bytes) {
+        if (recordsLength + bytes > records.length) {
+            records = Arrays.copyOf(records, Math.max(records.length * 2, recordsLength + bytes));
+        }
+    }
+}
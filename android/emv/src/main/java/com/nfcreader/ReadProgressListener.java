@@ -0,0 +1,27 @@
+package com.nfcreader;
+
+/**
+ * Recebe os dados do cartão à medida que o {@link EmvCardReader} os encontra, antes do fim da
+ * leitura. Os métodos são chamados na thread da leitura, entre uma troca de APDU e a seguinte,
+ * e não devem bloquear.
+ */
+public interface ReadProgressListener {
+
+    /**
+     * SELECT AID aceito; a bandeira e o produto já são conhecidos pelo AID. Numa leitura com
+     * várias aplicações pode ser chamado mais de uma vez
+     */
+    void onApplicationSelected(AidRegistry.Entry application);
+
+    /**
+     * PAN encontrado no GPO (Track 2) ou num registro; expiryDate é null quando o registro do
+     * PAN não traz a validade
+     */
+    void onCardData(String cardNumber, String expiryDate);
+
+    /**
+     * resposta bruta do GPO ou de um READ RECORD, só com {@link EmvCardReader#setCaptureRecords}
+     * ligado; location como em {@link EmvCardReader#getCapturedRecordLocation}
+     */
+    void onRecord(int location, byte[] response);
+}
@@ -0,0 +1,140 @@
+package com.nfcreader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pedidos de leitura pendentes sobre a mesma sessão armada. Cada chamador entra com seus campos
+ * ({@link CardFields}) e seu prazo por toque; um único toque lê o cartão para a união dos campos
+ * pedidos e o resultado é repartido entre todos os pedidos que ele atende.
+ *
+ * Tirar um pedido daqui ({@link #remove}, {@link #takeCovered}, {@link #takeAll}) é o que dá o
+ * direito de concluí-lo: cada pedido sai uma única vez, então a promise de cada chamador é
+ * resolvida ou rejeitada exatamente uma vez, seja pela leitura, pelo timeout ou pelo
+ * cancelamento. Os métodos são sincronizados na instância; quem precisa combinar a entrada de
+ * um pedido com a troca de estado da {@link ReadSession} sincroniza no próprio registro.
+ *
+ * @param <T> o que conclui o pedido (no módulo, a promise do JS)
+ */
+public final class ReadRequests<T> {
+
+    public static final class Request<T> {
+        private final int id;
+        private final int fields;
+        private final int deadlineMillis;
+        private final T handle;
+
+        public Request(int id, int fields, int deadlineMillis, T handle) {
+            this.id = id;
+            this.fields = fields;
+            this.deadlineMillis = deadlineMillis;
+            this.handle = handle;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getFields() {
+            return fields;
+        }
+
+        /**
+         * prazo de cada toque pedido por este chamador; 0 quando não há
+         */
+        public int getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        public T getHandle() {
+            return handle;
+        }
+    }
+
+    private final ArrayList<Request<T>> requests = new ArrayList<>();
+
+    public synchronized void add(Request<T> request) {
+        requests.add(request);
+    }
+
+    /**
+     * tira o pedido com este id
+     *
+     * @return o pedido, ou null se ele já foi concluído
+     */
+    public synchronized Request<T> remove(int id) {
+        for (int i = 0; i < requests.size(); i++) {
+            if (requests.get(i).id == id) {
+                return requests.remove(i);
+            }
+        }
+        return null;
+    }
+
+    public synchronized boolean isEmpty() {
+        return requests.isEmpty();
+    }
+
+    public synchronized int size() {
+        return requests.size();
+    }
+
+    /**
+     * união dos campos pedidos; {@link CardFields#NONE} sem pedidos
+     */
+    public synchronized int requiredFields() {
+        int fields = CardFields.NONE;
+        for (int i = 0; i < requests.size(); i++) {
+            fields |= requests.get(i).fields;
+        }
+        return fields;
+    }
+
+    /**
+     * o menor prazo por toque entre os pedidos que têm um; 0 quando nenhum tem
+     */
+    public synchronized int deadlineMillis() {
+        int deadline = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            int candidate = requests.get(i).deadlineMillis;
+            if (candidate > 0 && (deadline == 0 || candidate < deadline)) {
+                deadline = candidate;
+            }
+        }
+        return deadline;
+    }
+
+    /**
+     * tira os pedidos atendidos pelos campos encontrados no cartão; os demais continuam
+     * aguardando o próximo toque
+     */
+    public synchronized List<Request<T>> takeCovered(int foundFields) {
+        List<Request<T>> covered = null;
+        for (int i = requests.size() - 1; i >= 0; i--) {
+            if (CardFields.isSatisfied(foundFields, requests.get(i).fields)) {
+                if (covered == null) {
+                    covered = new ArrayList<>(requests.size());
+                }
+                covered.add(requests.remove(i));
+            }
+        }
+        if (covered == null) {
+            return Collections.emptyList();
+        }
+        Collections.reverse(covered);
+        return covered;
+    }
+
+    /**
+     * tira todos os pedidos, na ordem de chegada
+     */
+    public synchronized List<Request<T>> takeAll() {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Request<T>> all = new ArrayList<>(requests);
+        requests.clear();
+        return all;
+    }
+}
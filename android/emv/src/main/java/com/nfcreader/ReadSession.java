@@ -0,0 +1,134 @@
+package com.nfcreader;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Estado da sessão de leitura, compartilhado entre a thread do JS (iniciar, parar), a do
+ * callback NFC (a tag descoberta) e a do ciclo de vida da Activity, sem locks: cada mudança é
+ * uma troca atômica a partir do estado esperado, e só uma thread ganha cada transição.
+ *
+ * <pre>
+ * IDLE ──arm──▶ ARMED ──beginRead──▶ READING ──finish──▶ IDLE
+ *                 ▲                    │ │
+ *                 └──────endRead───────┘ └─cancel─▶ CANCELLING ──finish/endRead──▶ IDLE
+ * ARMED ──cancel──▶ IDLE
+ * </pre>
+ *
+ * Em CANCELLING a leitura em curso ainda não terminou; o leitor vê {@link #isCancelled()}
+ * antes do próximo APDU e desiste.
+ */
+public final class ReadSession {
+
+    public enum State {
+        IDLE,
+        // aguardando o cartão, com o reader mode ligado
+        ARMED,
+        // um cartão está sendo lido na thread do callback NFC
+        READING,
+        // parada pedida durante a leitura; termina quando a thread da leitura sair
+        CANCELLING
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * IDLE → ARMED
+     *
+     * @return false se já havia uma leitura armada, em curso ou sendo cancelada
+     */
+    public boolean arm() {
+        return state.compareAndSet(State.IDLE, State.ARMED);
+    }
+
+    /**
+     * ARMED → READING; com duas descobertas da mesma tag (reader mode e intent) só uma ganha
+     *
+     * @return false se não há leitura armada ou outra já começou
+     */
+    public boolean beginRead() {
+        return state.compareAndSet(State.ARMED, State.READING);
+    }
+
+    /**
+     * Fim de um toque quando a sessão continua aguardando cartões (modo sessão ou leitura
+     * suspensa): READING → ARMED. Se a parada foi pedida durante a leitura, CANCELLING → IDLE.
+     *
+     * @return true se a sessão continua armada
+     */
+    public boolean endRead() {
+        while (true) {
+            State current = state.get();
+            if (current == State.READING) {
+                if (state.compareAndSet(State.READING, State.ARMED)) {
+                    return true;
+                }
+            } else if (current == State.CANCELLING) {
+                if (state.compareAndSet(State.CANCELLING, State.IDLE)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Fim da leitura pela thread que a fez: READING ou CANCELLING → IDLE.
+     *
+     * @return o estado anterior; READING quando a leitura terminou por conta própria
+     */
+    public State finish() {
+        while (true) {
+            State current = state.get();
+            if (current != State.READING && current != State.CANCELLING) {
+                return current;
+            }
+            if (state.compareAndSet(current, State.IDLE)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Pedido de parada: ARMED → IDLE e READING → CANCELLING; IDLE e CANCELLING não mudam.
+     *
+     * @return o estado anterior
+     */
+    public State cancel() {
+        while (true) {
+            State current = state.get();
+            State next;
+            switch (current) {
+                case ARMED:
+                    next = State.IDLE;
+                    break;
+                case READING:
+                    next = State.CANCELLING;
+                    break;
+                default:
+                    return current;
+            }
+            if (state.compareAndSet(current, next)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * true enquanto a leitura em curso deve ser abandonada
+     */
+    public boolean isCancelled() {
+        return state.get() == State.CANCELLING;
+    }
+
+    /**
+     * true de {@link #arm()} até a sessão voltar a IDLE
+     */
+    public boolean isActive() {
+        return state.get() != State.IDLE;
+    }
+}
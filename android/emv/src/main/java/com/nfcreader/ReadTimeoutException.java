@@ -0,0 +1,39 @@
+package com.nfcreader;
+
+import java.io.IOException;
+
+/**
+ * Leitura interrompida por tempo: o cartão não respondeu a um comando dentro do timeout da
+ * fase, ou o prazo total da leitura não comporta o próximo comando.
+ */
+public class ReadTimeoutException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SessionTimings.Phase phase;
+    private final boolean deadline;
+
+    public ReadTimeoutException(String message, SessionTimings.Phase phase, boolean deadline) {
+        this(message, phase, deadline, null);
+    }
+
+    public ReadTimeoutException(String message, SessionTimings.Phase phase, boolean deadline, Throwable cause) {
+        super(message, cause);
+        this.phase = phase;
+        this.deadline = deadline;
+    }
+
+    /**
+     * fase do comando que não foi respondido ou que não chegou a ser enviado
+     */
+    public SessionTimings.Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * true quando o prazo total da leitura acabou; false quando um comando excedeu seu timeout
+     */
+    public boolean isDeadline() {
+        return deadline;
+    }
+}
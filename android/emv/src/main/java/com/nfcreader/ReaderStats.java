@@ -0,0 +1,143 @@
+package com.nfcreader;
+
+import java.util.Arrays;
+
+/**
+ * Estatísticas acumuladas de todas as sessões de leitura desde que o módulo foi criado.
+ *
+ * Para cada {@link SessionTimings.Phase}, para a sessão inteira e para o tempo até o primeiro
+ * APDU guarda as durações das últimas {@link #WINDOW} sessões em que a medida ocorreu, num
+ * buffer circular; os percentis são calculados sobre essa janela apenas quando alguém pede
+ * ({@link #percentileNanos}).
+ *
+ * Uma sessão iniciada até {@link #RETRY_WINDOW_NANOS} depois de uma sessão com falha é contada
+ * como nova tentativa (o cliente aproximando o cartão de novo).
+ */
+public class ReaderStats {
+
+    public static final int WINDOW = 512;
+    public static final long RETRY_WINDOW_NANOS = 10_000_000_000L;
+
+    private static final int PHASE_COUNT = SessionTimings.Phase.values().length;
+    // linhas extras depois das fases: duração total da sessão e tempo até o primeiro APDU
+    private static final int TOTAL = PHASE_COUNT;
+    private static final int FIRST_APDU = PHASE_COUNT + 1;
+    private static final int ROWS = PHASE_COUNT + 2;
+
+    private final long[][] samples = new long[ROWS][WINDOW];
+    private final int[] sampleCount = new int[ROWS];
+    private final int[] sampleNext = new int[ROWS];
+
+    private int sessions;
+    private int successes;
+    private int retries;
+    private long apdus;
+    private long bytesOut;
+    private long bytesIn;
+    private long lastFailureNanos;
+    private boolean lastFailed;
+
+    public synchronized void record(SessionTimings timings, boolean success) {
+        long now = System.nanoTime();
+        if (lastFailed && now - lastFailureNanos <= RETRY_WINDOW_NANOS) {
+            retries++;
+        }
+        sessions++;
+        if (success) {
+            successes++;
+        }
+        lastFailed = !success;
+        if (!success) {
+            lastFailureNanos = now;
+        }
+        apdus += timings.getApduCount();
+        bytesOut += timings.getBytesOut();
+        bytesIn += timings.getBytesIn();
+
+        for (SessionTimings.Phase phase : SessionTimings.Phase.values()) {
+            long nanos = timings.getPhaseNanos(phase);
+            if (nanos > 0) {
+                add(phase.ordinal(), nanos);
+            }
+        }
+        add(TOTAL, timings.getTotalNanos());
+        long firstApdu = timings.getTimeToFirstApduNanos();
+        if (firstApdu >= 0) {
+            add(FIRST_APDU, firstApdu);
+        }
+    }
+
+    private void add(int row, long nanos) {
+        samples[row][sampleNext[row]] = nanos;
+        sampleNext[row] = (sampleNext[row] + 1) % WINDOW;
+        if (sampleCount[row] < WINDOW) {
+            sampleCount[row]++;
+        }
+    }
+
+    /**
+     * percentil (0..100) das durações da fase, ou -1 se a fase ainda não ocorreu;
+     * phase null corresponde à duração total da sessão
+     */
+    public synchronized long percentileNanos(SessionTimings.Phase phase, double percentile) {
+        return percentile(phase != null ? phase.ordinal() : TOTAL, percentile);
+    }
+
+    /**
+     * percentil (0..100) do tempo entre o callback da tag e o primeiro APDU, ou -1 sem amostras
+     */
+    public synchronized long timeToFirstApduPercentileNanos(double percentile) {
+        return percentile(FIRST_APDU, percentile);
+    }
+
+    private long percentile(int row, double percentile) {
+        int count = sampleCount[row];
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples[row], count);
+        Arrays.sort(sorted);
+        // nearest-rank
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+
+    public synchronized int getSampleCount(SessionTimings.Phase phase) {
+        return sampleCount[phase != null ? phase.ordinal() : TOTAL];
+    }
+
+    public synchronized int getTimeToFirstApduCount() {
+        return sampleCount[FIRST_APDU];
+    }
+
+    public synchronized int getSessions() {
+        return sessions;
+    }
+
+    public synchronized int getSuccesses() {
+        return successes;
+    }
+
+    /**
+     * fração de sessões com sucesso (0..1), ou 0 se ainda não houve sessões
+     */
+    public synchronized double getSuccessRate() {
+        return sessions > 0 ? (double) successes / sessions : 0;
+    }
+
+    public synchronized int getRetries() {
+        return retries;
+    }
+
+    public synchronized long getApdus() {
+        return apdus;
+    }
+
+    public synchronized long getBytesOut() {
+        return bytesOut;
+    }
+
+    public synchronized long getBytesIn() {
+        return bytesIn;
+    }
+}
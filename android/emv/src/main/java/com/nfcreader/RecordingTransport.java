@@ -0,0 +1,53 @@
+package com.nfcreader;
+
+import java.io.IOException;
+
+/**
+ * {@link ApduTransport} que repassa cada comando ao transporte real e grava a troca num
+ * {@link ApduTranscript}. Com maskPan os dígitos do PAN são mascarados antes de gravar; o
+ * leitor continua recebendo a resposta original.
+ */
+public class RecordingTransport implements ApduTransport {
+
+    private final ApduTransport delegate;
+    private final ApduTranscript transcript;
+    private final boolean maskPan;
+
+    public RecordingTransport(ApduTransport delegate, boolean maskPan) {
+        this.delegate = delegate;
+        this.maskPan = maskPan;
+        this.transcript = new ApduTranscript(maskPan);
+    }
+
+    @Override
+    public byte[] transceive(byte[] command) throws IOException {
+        long start = System.nanoTime();
+        try {
+            byte[] response = delegate.transceive(command);
+            long duration = System.nanoTime() - start;
+            if (response != null) {
+                transcript.add(start, duration, command, maskPan ? ApduTranscript.maskPan(response) : response, null);
+            } else {
+                transcript.add(start, duration, command, null, "resposta nula");
+            }
+            return response;
+        } catch (IOException e) {
+            transcript.add(start, System.nanoTime() - start, command, null, e.getMessage());
+            throw e;
+        }
+    }
+
+    @Override
+    public int getTimeout() {
+        return delegate.getTimeout();
+    }
+
+    @Override
+    public void setTimeout(int timeoutMillis) {
+        delegate.setTimeout(timeoutMillis);
+    }
+
+    public ApduTranscript getTranscript() {
+        return transcript;
+    }
+}
@@ -0,0 +1,119 @@
+package com.nfcreader;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@link ApduTransport} que devolve as respostas de um {@link ApduTranscript}, na ordem em que
+ * foram gravadas, para executar na JVM a leitura de um cartão capturado em campo:
+ *
+ * <pre>
+ * ApduTranscript transcript = ApduTranscript.readFrom(new FileInputStream(arquivo));
+ * Card card = new EmvCardReader().readCard(new ReplayTransport(transcript, ReplayTransport.Pacing.ORIGINAL));
+ * </pre>
+ *
+ * Cada comando recebido precisa ser igual ao gravado, exceto no GET PROCESSING OPTIONS, em
+ * que só o cabeçalho (CLA INS P1 P2) é comparado: os dados do PDOL mudam a cada transação
+ * (número imprevisível, data). Um comando diferente indica que a leitura tomou outro caminho
+ * e a reprodução falha com IOException. Trocas gravadas com erro lançam IOException com a
+ * mensagem original.
+ */
+public class ReplayTransport implements ApduTransport {
+
+    public enum Pacing {
+        FAST,          // responde imediatamente, para medir vazão
+        CARD_LATENCY,  // espera a duração gravada de cada troca (tempo de RF e do cartão)
+        ORIGINAL       // reproduz também o instante de envio de cada comando, como na captura
+    }
+
+    private static final int INS_GET_PROCESSING_OPTIONS = 0xA8;
+
+    private final ApduTranscript transcript;
+    private final Pacing pacing;
+    private int next = 0;
+    private long originNanos;
+    private int timeout = 0;
+
+    public ReplayTransport(ApduTranscript transcript, Pacing pacing) {
+        this.transcript = transcript;
+        this.pacing = pacing;
+    }
+
+    @Override
+    public byte[] transceive(byte[] command) throws IOException {
+        if (next >= transcript.size()) {
+            throw new IOException("Transcript encerrado após " + transcript.size() + " comandos");
+        }
+        int index = next++;
+        byte[] recorded = transcript.getCommand(index);
+        if (!matches(command, recorded)) {
+            throw new IOException("Comando " + (index + 1) + " diverge do transcript: "
+                    + Nibbles.toHex(command) + " != " + Nibbles.toHex(recorded));
+        }
+
+        long now = System.nanoTime();
+        if (index == 0) {
+            originNanos = now;
+        }
+        if (pacing == Pacing.ORIGINAL) {
+            sleepNanos(originNanos + transcript.getStartOffsetNanos(index) - now);
+        }
+        if (pacing != Pacing.FAST) {
+            sleepNanos(transcript.getDurationNanos(index));
+        }
+
+        byte[] response = transcript.getResponse(index);
+        if (response == null) {
+            throw new IOException(transcript.getError(index));
+        }
+        return response.clone();
+    }
+
+    @Override
+    public int getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public void setTimeout(int timeoutMillis) {
+        this.timeout = timeoutMillis;
+    }
+
+    /**
+     * quantidade de comandos já reproduzidos
+     */
+    public int getReplayedCount() {
+        return next;
+    }
+
+    /**
+     * true quando todos os comandos gravados foram pedidos pela leitura
+     */
+    public boolean isComplete() {
+        return next == transcript.size();
+    }
+
+    private static boolean matches(byte[] command, byte[] recorded) {
+        if (command == null || command.length < 4 || recorded.length < 4 || (command[1] & 0xFF) != INS_GET_PROCESSING_OPTIONS) {
+            return Arrays.equals(command, recorded);
+        }
+        for (int i = 0; i < 4; i++) {
+            if (command[i] != recorded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void sleepNanos(long nanos) throws IOException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Transceive interrompido");
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.nfcreader;
+
+import java.util.Arrays;
+
+/**
+ * Tempos de uma sessão de leitura (um toque do cartão), medidos com {@link System#nanoTime()}.
+ *
+ * Guarda a duração acumulada de cada {@link Phase} e, para cada APDU, a fase, a duração,
+ * os bytes enviados e recebidos e o status word. Os APDUs ficam em arrays de capacidade fixa;
+ * depois de {@link #MAX_APDUS} trocas só os totais continuam sendo somados.
+ *
+ * Também guarda as aplicações do PPSE na ordem em que o leitor decidiu tentá-las e o resultado
+ * de cada tentativa ({@link ApplicationResult}).
+ */
+public class SessionTimings {
+
+    public enum Phase {
+        DETECTION,   // do callback da tag até iniciar a conexão (lista de tecnologias, trace)
+        CONNECT,
+        SELECT_PPSE,
+        SELECT_AID,
+        GPO,
+        READ_RECORD
+    }
+
+    /**
+     * Resultado da tentativa de leitura de uma aplicação
+     */
+    public enum ApplicationResult {
+        NOT_TRIED,      // não selecionada: uma aplicação anterior já trouxe os campos pedidos
+        SELECT_FAILED,
+        GPO_FAILED,
+        NO_DATA,        // selecionada, mas sem PAN
+        PARTIAL,        // PAN encontrado, mas faltam campos pedidos
+        SUCCESS
+    }
+
+    public static final int MAX_APDUS = 64;
+    public static final int MAX_APPLICATIONS = 8;
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final byte[] apduPhases = new byte[MAX_APDUS];
+    private final long[] apduNanos = new long[MAX_APDUS];
+    private final int[] apduBytesOut = new int[MAX_APDUS];
+    private final int[] apduBytesIn = new int[MAX_APDUS];
+    private final int[] apduStatusWords = new int[MAX_APDUS];
+    private final byte[][] applicationAids = new byte[MAX_APPLICATIONS][];
+    private final int[] applicationPriorities = new int[MAX_APPLICATIONS];
+    private final ApplicationResult[] applicationResults = new ApplicationResult[MAX_APPLICATIONS];
+    private int applicationCount;
+
+    private long startNanos;
+    private long endNanos;
+    private long firstApduStartNanos;
+    private int apduCount;
+    private int lastStatusWord = -1;
+    private int bytesOut;
+    private int bytesIn;
+
+    public SessionTimings() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * reinicia a sessão a partir de agora
+     */
+    public void reset() {
+        Arrays.fill(phaseNanos, 0);
+        startNanos = System.nanoTime();
+        endNanos = 0;
+        firstApduStartNanos = 0;
+        apduCount = 0;
+        lastStatusWord = -1;
+        bytesOut = 0;
+        bytesIn = 0;
+        Arrays.fill(applicationAids, null);
+        applicationCount = 0;
+    }
+
+    public void addPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * registra uma troca de APDU iniciada em startNanos ({@link System#nanoTime()});
+     * response pode ser null quando o cartão não respondeu
+     */
+    public void addApdu(Phase phase, long startNanos, long nanos, byte[] command, byte[] response) {
+        if (apduCount == 0) {
+            firstApduStartNanos = startNanos;
+        }
+        int out = command != null ? command.length : 0;
+        int in = response != null ? response.length : 0;
+        phaseNanos[phase.ordinal()] += nanos;
+        bytesOut += out;
+        bytesIn += in;
+        lastStatusWord = TlvIndex.statusWord(response);
+        if (apduCount < MAX_APDUS) {
+            apduPhases[apduCount] = (byte) phase.ordinal();
+            apduNanos[apduCount] = nanos;
+            apduBytesOut[apduCount] = out;
+            apduBytesIn[apduCount] = in;
+            apduStatusWords[apduCount] = lastStatusWord;
+        }
+        apduCount++;
+    }
+
+    /**
+     * acrescenta uma aplicação na ordem em que será tentada, ainda como {@link ApplicationResult#NOT_TRIED};
+     * além de {@link #MAX_APPLICATIONS} as aplicações são ignoradas
+     */
+    public void addApplication(byte[] aid, int priority) {
+        if (applicationCount < MAX_APPLICATIONS) {
+            applicationAids[applicationCount] = aid;
+            applicationPriorities[applicationCount] = priority;
+            applicationResults[applicationCount] = ApplicationResult.NOT_TRIED;
+            applicationCount++;
+        }
+    }
+
+    public void setApplicationResult(int index, ApplicationResult result) {
+        if (index < applicationCount) {
+            applicationResults[index] = result;
+        }
+    }
+
+    /**
+     * marca o fim da sessão; chamadas seguintes não alteram o instante final
+     */
+    public void finish() {
+        if (endNanos == 0) {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * instante de início da sessão, no relógio de {@link System#nanoTime()}
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getTotalNanos() {
+        return (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+    }
+
+    /**
+     * tempo entre o início da sessão (callback da tag) e o envio do primeiro APDU,
+     * ou -1 se nenhum APDU foi enviado
+     */
+    public long getTimeToFirstApduNanos() {
+        return apduCount > 0 ? firstApduStartNanos - startNanos : -1;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * total de APDUs trocados, inclusive os que não couberam no detalhamento
+     */
+    public int getApduCount() {
+        return apduCount;
+    }
+
+    /**
+     * quantidade de APDUs com detalhamento disponível ({@link #getApduPhase(int)} etc.)
+     */
+    public int getRecordedApduCount() {
+        return Math.min(apduCount, MAX_APDUS);
+    }
+
+    /**
+     * status word da última resposta da sessão, ou -1 sem APDU ou com resposta vazia
+     */
+    public int getLastStatusWord() {
+        return lastStatusWord;
+    }
+
+    public int getBytesOut() {
+        return bytesOut;
+    }
+
+    public int getBytesIn() {
+        return bytesIn;
+    }
+
+    public Phase getApduPhase(int index) {
+        return PHASES[apduPhases[index]];
+    }
+
+    public long getApduNanos(int index) {
+        return apduNanos[index];
+    }
+
+    public int getApduBytesOut(int index) {
+        return apduBytesOut[index];
+    }
+
+    public int getApduBytesIn(int index) {
+        return apduBytesIn[index];
+    }
+
+    /**
+     * status word da resposta, ou -1 quando a resposta veio vazia ou curta demais
+     */
+    public int getApduStatusWord(int index) {
+        return apduStatusWords[index];
+    }
+
+    public int getApplicationCount() {
+        return applicationCount;
+    }
+
+    public byte[] getApplicationAid(int index) {
+        return applicationAids[index];
+    }
+
+    /**
+     * Application Priority Indicator (1 a 15) anunciado no PPSE, ou 0 sem prioridade
+     */
+    public int getApplicationPriority(int index) {
+        return applicationPriorities[index];
+    }
+
+    public ApplicationResult getApplicationResult(int index) {
+        return applicationResults[index];
+    }
+}
@@ -0,0 +1,208 @@
+package com.nfcreader;
+
+import java.util.Arrays;
+
+/**
+ * Índice BER-TLV de uma resposta APDU, construído numa única passada sobre o byte[] original.
+ *
+ * Cada objeto encontrado (inclusive os aninhados em tags construídas como 6F, A5, 77 e 70) é
+ * registrado como uma tripla tag/offset/tamanho num int[]; nenhum valor é copiado. As consultas
+ * ({@link #find(int)}, {@link #findNext(int, int)}) percorrem esse array sem alocar. A mesma
+ * instância pode ser reutilizada para várias respostas: {@link #index(byte[])} descarta o índice
+ * anterior e só realoca se a resposta tiver mais objetos do que a capacidade atual.
+ *
+ * Tags são representadas como int com os bytes na ordem em que aparecem, por exemplo 0x9F38
+ * para o PDOL e 0x5A para o PAN. Bytes de preenchimento 0x00 e 0xFF entre objetos são ignorados.
+ */
+public class TlvIndex {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int STRIDE = 3;
+    private static final int MAX_DEPTH = 8;
+
+    private byte[] data;
+    private int[] entries;
+    private int count;
+    private boolean malformed;
+
+    public TlvIndex() {
+        this(32);
+    }
+
+    public TlvIndex(int initialCapacity) {
+        entries = new int[Math.max(initialCapacity, 1) * STRIDE];
+    }
+
+    /**
+     * indexa o corpo de uma resposta APDU, ignorando SW1 SW2 no final
+     */
+    public TlvIndex index(byte[] response) {
+        int length = response != null && response.length >= 2 ? response.length - 2 : 0;
+        return index(response, 0, length);
+    }
+
+    /**
+     * indexa os objetos TLV contidos em data[offset, offset + length)
+     */
+    public TlvIndex index(byte[] data, int offset, int length) {
+        this.data = data;
+        count = 0;
+        malformed = false;
+        if (data != null && length > 0) {
+            walk(offset, offset + length, 0);
+        }
+        return this;
+    }
+
+    /**
+     * true quando a resposta não pôde ser percorrida até o fim; os objetos lidos
+     * antes do erro continuam disponíveis
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] data() {
+        return data;
+    }
+
+    /**
+     * @return a posição da primeira ocorrência da tag, ou {@link #NOT_FOUND}
+     */
+    public int find(int tag) {
+        return findNext(tag, NOT_FOUND);
+    }
+
+    /**
+     * @return a posição da próxima ocorrência da tag após a posição informada, ou {@link #NOT_FOUND}
+     */
+    public int findNext(int tag, int after) {
+        for (int i = after + 1; i < count; i++) {
+            if (entries[i * STRIDE] == tag) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    public boolean contains(int tag) {
+        return find(tag) != NOT_FOUND;
+    }
+
+    public int tagAt(int position) {
+        return entries[position * STRIDE];
+    }
+
+    public int valueOffset(int position) {
+        return entries[position * STRIDE + 1];
+    }
+
+    public int valueLength(int position) {
+        return entries[position * STRIDE + 2];
+    }
+
+    /**
+     * cópia do valor na posição informada, para quem precisa guardar o valor
+     * depois que o índice for reutilizado
+     */
+    public byte[] copyValue(int position) {
+        int offset = valueOffset(position);
+        return Arrays.copyOfRange(data, offset, offset + valueLength(position));
+    }
+
+    /**
+     * cópia do valor da primeira ocorrência da tag, ou null se ela não existir
+     */
+    public byte[] copyValueOf(int tag) {
+        int position = find(tag);
+        return position == NOT_FOUND ? null : copyValue(position);
+    }
+
+    /**
+     * status word (SW1 SW2) no final da resposta, ou -1 se a resposta for curta demais
+     */
+    public static int statusWord(byte[] response) {
+        if (response == null || response.length < 2) {
+            return -1;
+        }
+        return ((response[response.length - 2] & 0xFF) << 8) | (response[response.length - 1] & 0xFF);
+    }
+
+    public static boolean isSuccess(byte[] response) {
+        return statusWord(response) == 0x9000;
+    }
+
+    private void walk(int position, int end, int depth) {
+        while (position < end) {
+            int first = data[position] & 0xFF;
+            if (first == 0x00 || first == 0xFF) {
+                position++;
+                continue;
+            }
+
+            // tag: um byte, ou mais quando os 5 bits baixos são todos 1
+            int tag = first;
+            position++;
+            if ((first & 0x1F) == 0x1F) {
+                int tagBytes = 1;
+                int next;
+                do {
+                    if (position >= end || tagBytes == 4) {
+                        malformed = true;
+                        return;
+                    }
+                    next = data[position++] & 0xFF;
+                    tag = (tag << 8) | next;
+                    tagBytes++;
+                } while ((next & 0x80) != 0);
+            }
+
+            // tamanho: forma curta (< 0x80) ou longa (0x81..0x83 seguido de 1 a 3 bytes)
+            if (position >= end) {
+                malformed = true;
+                return;
+            }
+            int length = data[position++] & 0xFF;
+            if (length > 0x7F) {
+                int lengthBytes = length & 0x7F;
+                if (lengthBytes == 0 || lengthBytes > 3 || position + lengthBytes > end) {
+                    malformed = true;
+                    return;
+                }
+                length = 0;
+                for (int i = 0; i < lengthBytes; i++) {
+                    length = (length << 8) | (data[position++] & 0xFF);
+                }
+            }
+            if (length > end - position) {
+                malformed = true;
+                return;
+            }
+
+            add(tag, position, length);
+            if ((first & 0x20) != 0 && depth < MAX_DEPTH) {
+                walk(position, position + length, depth + 1);
+                if (malformed) {
+                    return;
+                }
+            }
+            position += length;
+        }
+    }
+
+    private void add(int tag, int offset, int length) {
+        int base = count * STRIDE;
+        if (base + STRIDE > entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        entries[base] = tag;
+        entries[base + 1] = offset;
+        entries[base + 2] = length;
+        count++;
+    }
+}
@@ -0,0 +1,272 @@
+package com.nfcreader;
+
+import com.github.devnied.emvnfccard.utils.TlvUtil;
+
+/**
+ * Log de rastreamento da leitura EMV, com nível configurável e capacidade fixa.
+ *
+ * As entradas são guardadas num buffer circular na forma bruta (modelo + argumentos) e só
+ * são formatadas quando alguém pede o texto com {@link #render()}. Com o nível em OFF as
+ * chamadas retornam imediatamente, sem alocar nada.
+ *
+ * Modelos usam "{}" como marcador de argumento. Argumentos byte[] são exibidos em hexadecimal
+ * e Byte como um único byte em hexadecimal; arrays registrados não devem ser alterados depois.
+ */
+public class TraceLog {
+
+    public enum Level {
+        OFF,
+        INFO,    // cabeçalhos dos passos
+        DEBUG,   // mensagens de cada comando e resposta
+        VERBOSE  // respostas TLV formatadas e tabelas completas
+    }
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final byte KIND_TEXT = 0;
+    private static final byte KIND_STEP = 1;
+    private static final byte KIND_TLV = 2;
+
+    private final int capacity;
+    private final byte[] kinds;
+    private final String[] templates;
+    private final Object[] firstArgs;
+    private final Object[] secondArgs;
+    private final Object[] thirdArgs;
+    private final int[] intArgs;
+    // posição (1..4) do argumento inteiro entre os marcadores, 0 quando não há inteiro
+    private final byte[] intPositions;
+    // quantidade de argumentos da entrada (objetos e inteiro); 0 é texto literal, mesmo com
+    // "{}" no modelo. Um argumento null conta como argumento e aparece como "null"
+    private final byte[] argCounts;
+
+    private volatile Level level;
+    private int next = 0;
+    private int size = 0;
+    private int dropped = 0;
+
+    public TraceLog() {
+        this(DEFAULT_CAPACITY, Level.OFF);
+    }
+
+    public TraceLog(int capacity, Level level) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity deve ser maior que zero");
+        }
+        this.capacity = capacity;
+        this.level = level;
+        kinds = new byte[capacity];
+        templates = new String[capacity];
+        firstArgs = new Object[capacity];
+        secondArgs = new Object[capacity];
+        thirdArgs = new Object[capacity];
+        intArgs = new int[capacity];
+        intPositions = new byte[capacity];
+        argCounts = new byte[capacity];
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel != Level.OFF && messageLevel.ordinal() <= level.ordinal();
+    }
+
+    /**
+     * cabeçalho de passo da jornada de leitura
+     */
+    public void step(int step, String message) {
+        if (isEnabled(Level.INFO)) {
+            append(KIND_STEP, message, null, null, null, step, (byte) 0, 0);
+        }
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, message, null, null, null, 0, (byte) 0, 0);
+        }
+    }
+
+    public void debug(String template, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, template, arg, null, null, 0, (byte) 0, 1);
+        }
+    }
+
+    public void debug(String template, Object first, Object second) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, template, first, second, null, 0, (byte) 0, 2);
+        }
+    }
+
+    public void debug(String template, Object first, Object second, Object third) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, template, first, second, third, 0, (byte) 0, 3);
+        }
+    }
+
+    public void debug(String template, int value) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, template, null, null, null, value, (byte) 1, 1);
+        }
+    }
+
+    public void debug(String template, int value, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, template, arg, null, null, value, (byte) 1, 2);
+        }
+    }
+
+    public void debug(String template, Object arg, int value) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, template, arg, null, null, value, (byte) 2, 2);
+        }
+    }
+
+    public void debug(String template, Object first, int value, Object second) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, template, first, second, null, value, (byte) 2, 3);
+        }
+    }
+
+    public void debug(String template, Object first, Object second, int value, Object third) {
+        if (isEnabled(Level.DEBUG)) {
+            append(KIND_TEXT, template, first, second, third, value, (byte) 3, 4);
+        }
+    }
+
+    public void verbose(String message) {
+        if (isEnabled(Level.VERBOSE)) {
+            append(KIND_TEXT, message, null, null, null, 0, (byte) 0, 0);
+        }
+    }
+
+    public void verbose(String template, Object arg) {
+        if (isEnabled(Level.VERBOSE)) {
+            append(KIND_TEXT, template, arg, null, null, 0, (byte) 0, 1);
+        }
+    }
+
+    /**
+     * resposta APDU que será formatada como árvore TLV apenas em {@link #render()}
+     */
+    public void tlv(byte[] responseData) {
+        if (isEnabled(Level.VERBOSE)) {
+            append(KIND_TLV, null, responseData, null, null, 0, (byte) 0, 1);
+        }
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < capacity; i++) {
+            templates[i] = null;
+            firstArgs[i] = null;
+            secondArgs[i] = null;
+            thirdArgs[i] = null;
+        }
+        next = 0;
+        size = 0;
+        dropped = 0;
+    }
+
+    /**
+     * formata as entradas guardadas, da mais antiga para a mais recente
+     */
+    public synchronized String render() {
+        StringBuilder sb = new StringBuilder(size * 64);
+        if (dropped > 0) {
+            sb.append("... ").append(dropped).append(dropped == 1 ? " entrada descartada" : " entradas descartadas").append("\n");
+        }
+        int start = (next - size + capacity) % capacity;
+        for (int n = 0; n < size; n++) {
+            int i = (start + n) % capacity;
+            switch (kinds[i]) {
+                case KIND_STEP:
+                    renderStep(sb, intArgs[i], templates[i]);
+                    break;
+                case KIND_TLV:
+                    renderTlv(sb, (byte[]) firstArgs[i]);
+                    break;
+                default:
+                    renderText(sb, i);
+                    sb.append("\n");
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private synchronized void append(byte kind, String template, Object first, Object second, Object third,
+                                     int intArg, byte intPosition, int argCount) {
+        kinds[next] = kind;
+        templates[next] = template;
+        firstArgs[next] = first;
+        secondArgs[next] = second;
+        thirdArgs[next] = third;
+        intArgs[next] = intArg;
+        intPositions[next] = intPosition;
+        argCounts[next] = (byte) argCount;
+        next = (next + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        } else {
+            dropped++;
+        }
+    }
+
+    private void renderStep(StringBuilder sb, int step, String message) {
+        String stepSeparatorString = "*********************************";
+        // a mensagem não deve exceder 29 caracteres, mensagens mais longas serão truncadas
+        String emptyMessage = "                                 ";
+        sb.append("\n");
+        sb.append(stepSeparatorString).append("\n");
+        sb.append("************ passo ").append(String.format("%02d", step)).append(" ************").append("\n");
+        sb.append("* ").append((message + emptyMessage).substring(0, 29)).append(" *").append("\n");
+        sb.append(stepSeparatorString).append("\n");
+    }
+
+    private void renderTlv(StringBuilder sb, byte[] responseData) {
+        sb.append("------------------------------------").append("\n");
+        sb.append(EmvCardReader.trimLeadingLineFeeds(TlvUtil.prettyPrintAPDUResponse(responseData))).append("\n");
+        sb.append("------------------------------------").append("\n");
+    }
+
+    private void renderText(StringBuilder sb, int i) {
+        String template = templates[i];
+        if (argCounts[i] == 0) {
+            // mensagem sem argumentos, usada como texto literal
+            sb.append(template);
+            return;
+        }
+        int position = 0;
+        int objectIndex = 0;
+        int from = 0;
+        int marker;
+        while ((marker = template.indexOf("{}", from)) >= 0) {
+            sb.append(template, from, marker);
+            position++;
+            if (position == intPositions[i]) {
+                sb.append(intArgs[i]);
+            } else {
+                appendArg(sb, objectIndex == 0 ? firstArgs[i] : objectIndex == 1 ? secondArgs[i] : thirdArgs[i]);
+                objectIndex++;
+            }
+            from = marker + 2;
+        }
+        sb.append(template, from, template.length());
+    }
+
+    private static void appendArg(StringBuilder sb, Object arg) {
+        if (arg instanceof byte[]) {
+            Nibbles.appendHex(sb, (byte[]) arg);
+        } else if (arg instanceof Byte) {
+            sb.append(Integer.toHexString((Byte) arg & 0xFF));
+        } else {
+            sb.append(arg);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.nfcreader;
+
+/**
+ * Dados da cobrança que o terminal informa ao cartão no PDOL: valor, moeda, país, data e hora,
+ * tipo da transação e, opcionalmente, os Terminal Transaction Qualifiers.
+ *
+ * É definido uma vez por cobrança e convertido em bytes por
+ * {@link DolValues#withTransaction(TransactionContext)} antes do toque; na leitura o GPO só
+ * copia esses bytes. Os códigos são os numéricos da ISO 4217 (moeda) e ISO 3166 (país), e o
+ * valor vai em unidades mínimas da moeda (centavos para BRL).
+ */
+public final class TransactionContext {
+
+    // 9F02 é n12
+    public static final long MAX_AMOUNT = 999_999_999_999L;
+    // 9C, n2
+    public static final int TYPE_PURCHASE = 0;
+    public static final int TYPE_CASHBACK = 9;
+    public static final int TYPE_REFUND = 20;
+
+    public static final int CURRENCY_BRL = 986;
+    public static final int COUNTRY_BRAZIL = 76;
+
+    private static final int TTQ_LENGTH = 4;
+
+    private final long amount;
+    private final int currencyCode;
+    private final int countryCode;
+    private final int transactionType;
+    private final long timestampMillis;
+    private final byte[] ttq;
+
+    /**
+     * @param ttq Terminal Transaction Qualifiers (4 bytes), ou null para manter o da tabela
+     * @throws IllegalArgumentException com valor, códigos ou TTQ fora do formato do EMV
+     */
+    public TransactionContext(long amount, int currencyCode, int countryCode, int transactionType, long timestampMillis, byte[] ttq) {
+        if (amount < 0 || amount > MAX_AMOUNT) {
+            throw new IllegalArgumentException("valor fora do intervalo de 9F02: " + amount);
+        }
+        if (currencyCode < 0 || currencyCode > 999) {
+            throw new IllegalArgumentException("código de moeda inválido: " + currencyCode);
+        }
+        if (countryCode < 0 || countryCode > 999) {
+            throw new IllegalArgumentException("código de país inválido: " + countryCode);
+        }
+        if (transactionType < 0 || transactionType > 99) {
+            throw new IllegalArgumentException("tipo de transação inválido: " + transactionType);
+        }
+        if (ttq != null && ttq.length != TTQ_LENGTH) {
+            throw new IllegalArgumentException("TTQ precisa de " + TTQ_LENGTH + " bytes, recebido " + ttq.length);
+        }
+        this.amount = amount;
+        this.currencyCode = currencyCode;
+        this.countryCode = countryCode;
+        this.transactionType = transactionType;
+        this.timestampMillis = timestampMillis;
+        this.ttq = ttq != null ? ttq.clone() : null;
+    }
+
+    /**
+     * valor em unidades mínimas da moeda
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    public int getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public int getCountryCode() {
+        return countryCode;
+    }
+
+    public int getTransactionType() {
+        return transactionType;
+    }
+
+    /**
+     * instante da transação; 9A e 9F21 são escritos no fuso do aparelho
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * @return uma cópia do TTQ, ou null quando vale o da tabela
+     */
+    public byte[] getTtq() {
+        return ttq != null ? ttq.clone() : null;
+    }
+}
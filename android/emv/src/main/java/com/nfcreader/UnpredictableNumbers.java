@@ -0,0 +1,95 @@
+package com.nfcreader;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Unpredictable Number (9F37) do GPO, tirado de um estoque de bytes do {@link SecureRandom}
+ * gerado antes do toque.
+ *
+ * {@link #prefetch()} renova o estoque fora do caminho da leitura (no módulo, na fila de
+ * efeitos, depois de cada toque); na leitura {@link #fill} só copia bytes já gerados. Cada byte
+ * é entregue uma única vez e zerado no estoque. Se o estoque acabar, a leitura gera um novo na
+ * hora, que é o caminho lento. Pode ser usado de threads diferentes.
+ */
+public final class UnpredictableNumbers {
+
+    // 9F37 é b4
+    public static final int LENGTH = 4;
+    // 16 GPOs por renovação
+    public static final int DEFAULT_POOL_BYTES = 16 * LENGTH;
+
+    private final SecureRandom random;
+    // bytes ainda não entregues: pool[0, available)
+    private byte[] pool;
+    private int available;
+    private int refillsOnRead;
+
+    public UnpredictableNumbers() {
+        this(new SecureRandom(), DEFAULT_POOL_BYTES);
+    }
+
+    public UnpredictableNumbers(SecureRandom random, int poolBytes) {
+        if (poolBytes < LENGTH) {
+            throw new IllegalArgumentException("estoque menor que um Unpredictable Number: " + poolBytes);
+        }
+        this.random = random;
+        this.pool = new byte[poolBytes];
+    }
+
+    /**
+     * Renova o estoque quando restar metade ou menos. O SecureRandom roda fora do lock, então
+     * uma leitura em curso não espera por ele (a primeira chamada também faz a semeadura)
+     */
+    public void prefetch() {
+        int size;
+        synchronized (this) {
+            if (available > pool.length / 2) {
+                return;
+            }
+            size = pool.length;
+        }
+        byte[] fresh = new byte[size];
+        random.nextBytes(fresh);
+        synchronized (this) {
+            if (available <= pool.length / 2) {
+                Arrays.fill(pool, (byte) 0);
+                pool = fresh;
+                available = fresh.length;
+            }
+        }
+    }
+
+    /**
+     * copia length bytes ainda não usados para dest[offset, offset + length)
+     */
+    public synchronized void fill(byte[] dest, int offset, int length) {
+        int done = 0;
+        while (done < length) {
+            if (available == 0) {
+                random.nextBytes(pool);
+                available = pool.length;
+                refillsOnRead++;
+            }
+            int n = Math.min(available, length - done);
+            available -= n;
+            System.arraycopy(pool, available, dest, offset + done, n);
+            Arrays.fill(pool, available, available + n, (byte) 0);
+            done += n;
+        }
+    }
+
+    /**
+     * bytes disponíveis sem chamar o SecureRandom
+     */
+    public synchronized int getAvailable() {
+        return available;
+    }
+
+    /**
+     * vezes em que o estoque acabou e {@link #fill} teve de gerar bytes na hora
+     */
+    public synchronized int getRefillsOnRead() {
+        return refillsOnRead;
+    }
+}
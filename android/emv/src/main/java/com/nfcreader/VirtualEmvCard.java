@@ -0,0 +1,289 @@
+package com.nfcreader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cartão EMV simulado em Java puro, usado como {@link ApduTransport} para executar
+ * o fluxo de leitura na JVM (medição de tempo até o PAN, testes de regressão) sem
+ * telefone nem cartão físico.
+ *
+ * Responde SELECT PPSE, SELECT AID, GET PROCESSING OPTIONS e READ RECORD conforme o
+ * {@link Profile} escolhido:
+ * - VISA: PDOL na resposta do SELECT AID, GPO em formato 2 com Track 2 (tag 0x57)
+ * - AMEX: PDOL na resposta do SELECT AID, GPO em formato 1 (tag 0x80) com AFL
+ * - MASTERCARD: sem PDOL, GPO em formato 2 (tag 0x77) com AFL na tag 0x94
+ *
+ * Cada comando aguarda a latência configurada antes de responder, simulando o tempo de RF.
+ * Respostas podem ser fixadas por comando com {@link #putResponse(String, String)}.
+ */
+public class VirtualEmvCard implements ApduTransport {
+
+    public enum Profile {
+        VISA("A0000000031010", "VISA CREDIT", "4761739001010010",
+                "9F66049F02069F03069F1A0295055F2A029A039C019F3704"),
+        AMEX("A000000025010801", "AMERICAN EXPRESS", "374245001751006",
+                "9F35019F3704"),
+        MASTERCARD("A0000000041010", "MASTERCARD", "5413330089010608",
+                null);
+
+        private final String aid;
+        private final String label;
+        private final String defaultPan;
+        private final String pdol;
+
+        Profile(String aid, String label, String defaultPan, String pdol) {
+            this.aid = aid;
+            this.label = label;
+            this.defaultPan = defaultPan;
+            this.pdol = pdol;
+        }
+
+        public String getAid() {
+            return aid;
+        }
+    }
+
+    private static final byte[] PPSE = "2PAY.SYS.DDF01".getBytes();
+    private static final byte[] SW_OK = {(byte) 0x90, (byte) 0x00};
+    private static final byte[] SW_WRONG_LENGTH = {(byte) 0x67, (byte) 0x00};
+    private static final byte[] SW_FILE_NOT_FOUND = {(byte) 0x6A, (byte) 0x82};
+    private static final byte[] SW_RECORD_NOT_FOUND = {(byte) 0x6A, (byte) 0x83};
+    private static final byte[] SW_INS_NOT_SUPPORTED = {(byte) 0x6D, (byte) 0x00};
+
+    private static final int INS_SELECT = 0xA4;
+    private static final int INS_GET_PROCESSING_OPTIONS = 0xA8;
+    private static final int INS_READ_RECORD = 0xB2;
+
+    private static final int SFI = 1;
+
+    private final Profile profile;
+    private String pan;
+    private String expiryDate = "2512"; // AAMM
+    private int recordCount = 1;
+    private long latencyMillis = 0;
+    private final Map<Integer, Long> latencyByInstruction = new HashMap<>();
+    private final Map<String, byte[]> scriptedResponses = new HashMap<>();
+    private int timeout = 0;
+    private int commandCount = 0;
+    private int transactionCounter = 0;
+
+    public VirtualEmvCard(Profile profile) {
+        this.profile = profile;
+        this.pan = profile.defaultPan;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public void setPan(String pan) {
+        this.pan = pan;
+    }
+
+    /**
+     * @param expiryDate data de expiração no formato AAMM, ou null para um registro sem a tag
+     *                   5F24 (nos perfis que leem registros; a Track 2 do VISA sempre traz a data)
+     */
+    public void setExpiryDate(String expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    /**
+     * número de registros no SFI apontado pelo AFL; o PAN fica sempre no último registro
+     * (ignorado no perfil VISA, que entrega o PAN já na resposta do GPO)
+     */
+    public void setRecordCount(int recordCount) {
+        if (recordCount < 1 || recordCount > 0xFF) {
+            throw new IllegalArgumentException("recordCount deve estar entre 1 e 255");
+        }
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * latência de RF aplicada a todos os comandos
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * latência de RF para uma instrução específica (INS), sobrepondo a latência geral
+     */
+    public void setLatencyMillis(int instruction, long latencyMillis) {
+        latencyByInstruction.put(instruction & 0xFF, latencyMillis);
+    }
+
+    /**
+     * fixa a resposta (com SW1 SW2) para um comando exato, ambos em hexadecimal
+     */
+    public void putResponse(String commandHex, String responseHex) {
+        scriptedResponses.put(commandHex.toUpperCase(Locale.ROOT), Nibbles.fromHex(responseHex));
+    }
+
+    /**
+     * quantidade de comandos recebidos desde a criação
+     */
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * contador de transações da aplicação (ATC), incrementado a cada GET PROCESSING OPTIONS
+     */
+    public int getTransactionCounter() {
+        return transactionCounter;
+    }
+
+    @Override
+    public int getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public void setTimeout(int timeoutMillis) {
+        this.timeout = timeoutMillis;
+    }
+
+    @Override
+    public byte[] transceive(byte[] command) throws IOException {
+        commandCount++;
+        if (command == null || command.length < 4) {
+            return SW_WRONG_LENGTH.clone();
+        }
+        int ins = command[1] & 0xFF;
+        simulateLatency(ins);
+
+        byte[] scripted = scriptedResponses.get(Nibbles.toHex(command));
+        if (scripted != null) {
+            return scripted.clone();
+        }
+
+        switch (ins) {
+            case INS_SELECT:
+                return select(command);
+            case INS_GET_PROCESSING_OPTIONS:
+                return getProcessingOptions();
+            case INS_READ_RECORD:
+                return readRecord(command[2] & 0xFF, (command[3] & 0xFF) >> 3);
+            default:
+                return SW_INS_NOT_SUPPORTED.clone();
+        }
+    }
+
+    private void simulateLatency(int ins) throws IOException {
+        Long specific = latencyByInstruction.get(ins);
+        long delay = specific != null ? specific : latencyMillis;
+        if (delay <= 0) {
+            return;
+        }
+        boolean timedOut = timeout > 0 && delay > timeout;
+        try {
+            Thread.sleep(timedOut ? timeout : delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Transceive interrompido");
+        }
+        if (timedOut) {
+            throw new IOException("Transceive failed: timeout de " + timeout + " ms excedido");
+        }
+    }
+
+    private byte[] select(byte[] command) {
+        if (command.length < 5 || command.length < 5 + (command[4] & 0xFF)) {
+            return SW_WRONG_LENGTH.clone();
+        }
+        byte[] name = Arrays.copyOfRange(command, 5, 5 + (command[4] & 0xFF));
+        byte[] aid = Nibbles.fromHex(profile.aid);
+        if (Arrays.equals(name, PPSE)) {
+            byte[] entry = tlv(0x61,
+                    tlv(0x4F, aid),
+                    tlv(0x50, profile.label.getBytes()),
+                    tlv(0x87, new byte[]{0x01}));
+            return withSw(tlv(0x6F,
+                    tlv(0x84, PPSE),
+                    tlv(0xA5, tlv(0xBF0C, entry))), SW_OK);
+        }
+        if (Arrays.equals(name, aid)) {
+            byte[] proprietary = profile.pdol != null
+                    ? concat(tlv(0x50, profile.label.getBytes()), tlv(0x9F38, Nibbles.fromHex(profile.pdol)))
+                    : tlv(0x50, profile.label.getBytes());
+            return withSw(tlv(0x6F, tlv(0x84, aid), tlv(0xA5, proprietary)), SW_OK);
+        }
+        return SW_FILE_NOT_FOUND.clone();
+    }
+
+    private byte[] getProcessingOptions() {
+        transactionCounter++;
+        byte[] aip = {(byte) 0x19, (byte) 0x80};
+        byte[] afl = {(byte) (SFI << 3), (byte) 0x01, (byte) recordCount, (byte) 0x00};
+        switch (profile) {
+            case VISA:
+                return withSw(tlv(0x77,
+                        tlv(0x82, new byte[]{(byte) 0x20, (byte) 0x00}),
+                        tlv(0x57, track2EquivalentData()),
+                        tlv(0x9F36, new byte[]{(byte) (transactionCounter >> 8), (byte) transactionCounter})), SW_OK);
+            case AMEX:
+                return withSw(tlv(0x80, concat(aip, afl)), SW_OK);
+            default:
+                return withSw(tlv(0x77, tlv(0x82, aip), tlv(0x94, afl)), SW_OK);
+        }
+    }
+
+    private byte[] readRecord(int record, int sfi) {
+        if (profile == Profile.VISA || sfi != SFI || record < 1 || record > recordCount) {
+            return SW_RECORD_NOT_FOUND.clone();
+        }
+        if (record < recordCount) {
+            // registros intermediários sem PAN, como os de dados de autenticação offline
+            return withSw(tlv(0x70,
+                    tlv(0x5F28, new byte[]{(byte) 0x00, (byte) 0x76}),
+                    tlv(0x9F07, new byte[]{(byte) 0xFF, (byte) 0x00})), SW_OK);
+        }
+        if (expiryDate == null) {
+            return withSw(tlv(0x70, tlv(0x5A, Nibbles.fromHex(padF(pan)))), SW_OK);
+        }
+        return withSw(tlv(0x70,
+                tlv(0x5A, Nibbles.fromHex(padF(pan))),
+                tlv(0x5F24, Nibbles.fromHex(expiryDate + "31"))), SW_OK);
+    }
+
+    private byte[] track2EquivalentData() {
+        return Nibbles.fromHex(padF(pan + "D" + expiryDate + "201" + "1000000000"));
+    }
+
+    private static String padF(String hex) {
+        return hex.length() % 2 == 0 ? hex : hex + "F";
+    }
+
+    private static byte[] tlv(int tag, byte[]... values) {
+        byte[] value = concat(values);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (tag > 0xFF) {
+            out.write(tag >> 8);
+        }
+        out.write(tag & 0xFF);
+        if (value.length > 0x7F) {
+            out.write(0x81);
+        }
+        out.write(value.length);
+        out.write(value, 0, value.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] withSw(byte[] data, byte[] sw) {
+        return concat(data, sw);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
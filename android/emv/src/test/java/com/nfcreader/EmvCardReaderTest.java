@@ -0,0 +1,49 @@
+package com.nfcreader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+/**
+ * Leitura completa sobre o {@link VirtualEmvCard}, um perfil por bandeira: PAN, validade,
+ * bandeira e quantidade de APDUs trocados até o PAN.
+ */
+public class EmvCardReaderTest {
+
+    // três registros no SFI 1; o PAN e a validade ficam no último
+    private static final int RECORD_COUNT = 3;
+
+    @Test
+    public void readsVisaFromTrack2InGpo() throws Exception {
+        // PPSE, SELECT AID e GPO: a tag 57 do GPO já traz o PAN, nenhum READ RECORD
+        assertRead(VirtualEmvCard.Profile.VISA, "4761739001010010", "Visa", 3);
+    }
+
+    @Test
+    public void readsMastercardFromRecords() throws Exception {
+        // PPSE, SELECT AID, GPO e os três registros do AFL
+        assertRead(VirtualEmvCard.Profile.MASTERCARD, "5413330089010608", "Mastercard", 6);
+    }
+
+    @Test
+    public void readsAmexFromRecords() throws Exception {
+        // GPO em formato 1 (tag 80) e os três registros do AFL
+        assertRead(VirtualEmvCard.Profile.AMEX, "374245001751006", "American Express", 6);
+    }
+
+    private static void assertRead(VirtualEmvCard.Profile profile, String pan, String brand, int apdus) throws Exception {
+        VirtualEmvCard virtualCard = new VirtualEmvCard(profile);
+        virtualCard.setRecordCount(RECORD_COUNT);
+        EmvCardReader reader = new EmvCardReader();
+
+        Card card = reader.readCard(virtualCard);
+
+        assertNotNull(profile + " não foi lido", card);
+        assertEquals(pan, card.getCardNumber());
+        assertEquals("12/25", card.getExpiryDate());
+        assertEquals(brand, card.getCardType());
+        assertEquals(apdus, reader.getExchangeCount());
+        assertEquals(apdus, virtualCard.getCommandCount());
+    }
+}
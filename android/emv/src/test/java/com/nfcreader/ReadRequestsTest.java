@@ -0,0 +1,57 @@
+package com.nfcreader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Pedidos que dividem um toque, repartidos como no módulo: a leitura é feita para a união dos
+ * campos e cada pedido sai do registro quando o cartão encontrado cobre os seus.
+ */
+public class ReadRequestsTest {
+
+    @Test
+    public void cardWithoutExpiryServesOnlyTheRequestThatDidNotAskForIt() throws Exception {
+        ReadRequests<String> requests = new ReadRequests<>();
+        requests.add(new ReadRequests.Request<>(1, CardFields.CARD_NUMBER, 0, "só PAN"));
+        requests.add(new ReadRequests.Request<>(2, CardFields.CARD_NUMBER | CardFields.EXPIRY_DATE, 0, "PAN e validade"));
+
+        // registro com o PAN e sem a tag 5F24
+        VirtualEmvCard virtualCard = new VirtualEmvCard(VirtualEmvCard.Profile.MASTERCARD);
+        virtualCard.setExpiryDate(null);
+        EmvCardReader reader = new EmvCardReader();
+
+        assertNull(reader.readCard(virtualCard, requests.requiredFields()));
+        Card partial = reader.getLastCard();
+        assertNotNull(partial);
+        assertEquals("5413330089010608", partial.getCardNumber());
+        assertEquals(CardFields.CARD_NUMBER | CardFields.CARD_TYPE, reader.getFoundFields());
+
+        List<ReadRequests.Request<String>> covered = requests.takeCovered(reader.getFoundFields());
+        assertEquals(1, covered.size());
+        assertEquals(1, covered.get(0).getId());
+        List<ReadRequests.Request<String>> remaining = requests.takeAll();
+        assertEquals(1, remaining.size());
+        assertEquals(2, remaining.get(0).getId());
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void completeCardServesEveryRequest() throws Exception {
+        ReadRequests<String> requests = new ReadRequests<>();
+        requests.add(new ReadRequests.Request<>(1, CardFields.CARD_NUMBER, 0, "só PAN"));
+        requests.add(new ReadRequests.Request<>(2, CardFields.CARD_NUMBER | CardFields.EXPIRY_DATE, 0, "PAN e validade"));
+        EmvCardReader reader = new EmvCardReader();
+
+        Card card = reader.readCard(new VirtualEmvCard(VirtualEmvCard.Profile.MASTERCARD), requests.requiredFields());
+
+        assertNotNull(card);
+        assertEquals(2, requests.takeCovered(reader.getFoundFields()).size());
+        assertTrue(requests.isEmpty());
+    }
+}
@@ -0,0 +1,100 @@
+package com.nfcreader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Ida e volta da captura: leitura gravada com {@link RecordingTransport}, transcript
+ * serializado e lido de volta, e a mesma leitura reproduzida com {@link ReplayTransport}.
+ */
+public class ReplayTransportTest {
+
+    private static final String PAN = "5413330089010608";
+    private static final String MASKED_PAN = "5413330000000608";
+    // único registro do Mastercard com o PAN em 5A, 57, 56 (Track 1) e 9F6B
+    private static final String RECORD_WITH_ALL_PAN_TAGS = "7060"
+            + "5A08" + PAN
+            + "5F2403251231"
+            + "5710" + PAN + "D25122010000000F"
+            // "B" + PAN + "^TESTE/CARTAO^2512201000"
+            + "5629" + "42" + "35343133333330303839303130363038" + "5E54455354452F43415254414F5E32353132323031303030"
+            + "9F6B10" + PAN + "D25122010000000F"
+            + "9000";
+
+    @Test
+    public void replayedReadMatchesRecordedRead() throws Exception {
+        for (VirtualEmvCard.Profile profile : VirtualEmvCard.Profile.values()) {
+            VirtualEmvCard virtualCard = new VirtualEmvCard(profile);
+            virtualCard.setRecordCount(3);
+            RecordingTransport recording = new RecordingTransport(virtualCard, false);
+            Card recorded = new EmvCardReader().readCard(recording);
+            assertNotNull(profile + " não foi lido", recorded);
+
+            ApduTranscript transcript = ApduTranscript.fromByteArray(recording.getTranscript().toByteArray());
+            assertEquals(virtualCard.getCommandCount(), transcript.size());
+            ReplayTransport replay = new ReplayTransport(transcript, ReplayTransport.Pacing.FAST);
+            Card replayed = new EmvCardReader().readCard(replay);
+
+            assertSameCard(recorded, replayed);
+            assertTrue(profile + " não consumiu o transcript", replay.isComplete());
+        }
+    }
+
+    @Test
+    public void maskedTranscriptHidesPanDigits() throws Exception {
+        VirtualEmvCard virtualCard = new VirtualEmvCard(VirtualEmvCard.Profile.MASTERCARD);
+        virtualCard.putResponse("00B2010C00", RECORD_WITH_ALL_PAN_TAGS);
+        RecordingTransport recording = new RecordingTransport(virtualCard, true);
+        assertEquals(PAN, new EmvCardReader().readCard(recording).getCardNumber());
+
+        byte[] serialized = recording.getTranscript().toByteArray();
+        // 5A, 57 e 9F6B guardam o PAN em BCD; 56 em ASCII
+        assertFalse(contains(serialized, hexBytes(PAN)));
+        assertFalse(contains(serialized, PAN.getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(contains(serialized, hexBytes(MASKED_PAN)));
+        assertTrue(contains(serialized, MASKED_PAN.getBytes(StandardCharsets.US_ASCII)));
+
+        ApduTranscript transcript = ApduTranscript.fromByteArray(serialized);
+        assertTrue(transcript.isPanMasked());
+        Card replayed = new EmvCardReader().readCard(new ReplayTransport(transcript, ReplayTransport.Pacing.FAST));
+        assertNotNull(replayed);
+        assertEquals(MASKED_PAN, replayed.getCardNumber());
+        assertEquals("12/25", replayed.getExpiryDate());
+    }
+
+    private static void assertSameCard(Card expected, Card actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getCardNumber(), actual.getCardNumber());
+        assertEquals(expected.getExpiryDate(), actual.getExpiryDate());
+        assertEquals(expected.getCardType(), actual.getCardType());
+        assertEquals(expected.isReady(), actual.isReady());
+        assertEquals(expected.isTagId(), actual.isTagId());
+    }
+
+    private static byte[] hexBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static boolean contains(byte[] data, byte[] sequence) {
+        for (int i = 0; i + sequence.length <= data.length; i++) {
+            int n = 0;
+            while (n < sequence.length && data[i + n] == sequence[n]) {
+                n++;
+            }
+            if (n == sequence.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
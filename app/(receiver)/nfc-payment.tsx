@@ -103,7 +103,7 @@ export default function NFCPaymentScreen() {
           setIsReady(true);
           
           // Iniciar a leitura NFC com o token
-          await processPaymentWithToken(token);
+          await processPaymentWithToken(token, { amount });
         } else {
           throw new Error('Falha ao gerar token de pagamento');
         }
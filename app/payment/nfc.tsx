@@ -135,7 +135,8 @@ const NFCPaymentScreen = () => {
       try {
         // Preparar dados para navegação
         const navigationData = {
-          cardNumber: cardData.cardNumber,
+          // o PAN não chega ao JS (tokenização nativa); segue o PAN mascarado
+          cardNumber: cardData.cardNumber || cardData.maskedPan,
           expiryDate: cardData.expiryDate,
           cardType: cardData.cardType || 'Desconhecido',
           chargeData: charge,
@@ -186,7 +187,7 @@ const NFCPaymentScreen = () => {
     setErrorMessage(null);
     try {
       console.log('Iniciando leitura do cartão...');
-      await startCardReading();
+      await startCardReading(undefined, { amount: calculateTotal() });
     } catch (error: any) {
       console.error('Erro ao iniciar leitura do cartão:', error);
       setErrorMessage(error.message || 'Erro ao iniciar leitura do cartão');
@@ -426,7 +427,9 @@ const NFCPaymentScreen = () => {
                 <View style={styles.paymentDetailRow}>
                   <Text style={styles.paymentDetailLabel}>Cartão</Text>
                   <Text style={styles.paymentDetailValue}>
-                    {cardData?.cardNumber ? '**** **** **** ' + cardData.cardNumber.slice(-4) : '****'}
+                    {cardData?.cardNumber || cardData?.maskedPan
+                      ? '**** **** **** ' + (cardData.cardNumber || cardData.maskedPan).slice(-4)
+                      : '****'}
                   </Text>
                 </View>
                 
@@ -0,0 +1,240 @@
+// Decodificação do bloco binário do resultado da leitura (CardResultFrame.java).
+// O bloco chega do módulo nativo em base64, uma única vez por leitura; os campos são lidos
+// com DataView e as respostas brutas dos registros viram ArrayBuffer sem cópia por campo.
+
+import type {
+  ApplicationResult,
+  ReaderPhase,
+  ReadStrategy,
+  TimingReport,
+} from './NfcReader';
+
+const MAGIC = 0x4643524e; // "NRCF"
+const VERSION = 2;
+const FLAG_READY = 0x01;
+const FLAG_TAG_ID = 0x02;
+const FLAG_TOKENIZED = 0x04;
+
+// mesma ordem dos enums Java (SessionTimings.Phase, SessionTimings.ApplicationResult,
+// AidRegistry.ReadStrategy)
+const PHASES: ReaderPhase[] = ['DETECTION', 'CONNECT', 'SELECT_PPSE', 'SELECT_AID', 'GPO', 'READ_RECORD'];
+const APPLICATION_RESULTS: ApplicationResult[] = ['NOT_TRIED', 'SELECT_FAILED', 'GPO_FAILED', 'NO_DATA', 'PARTIAL', 'SUCCESS'];
+const READ_STRATEGIES: ReadStrategy[] = ['GPO_TRACK2', 'READ_RECORDS'];
+
+const BASE64 = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+const BASE64_VALUES = new Uint8Array(128);
+for (let i = 0; i < BASE64.length; i++) {
+  BASE64_VALUES[BASE64.charCodeAt(i)] = i;
+}
+
+// Resposta bruta (TLV seguido do status word) do GPO ou de um READ RECORD
+export interface RawRecord {
+  // 0 para a resposta do GPO
+  sfi: number;
+  record: number;
+  data: ArrayBuffer;
+}
+
+export interface CardReadResult {
+  // vazio a menos que setClearPanResults(true)
+  cardNumber: string;
+  // vazios com setClearPanResults(true): HMAC do PAN, PAN com os dígitos do meio em '*' e BIN
+  cardToken: string;
+  maskedPan: string;
+  bin: string;
+  isTokenized: boolean;
+  cardType: string;
+  cardProduct: string;
+  readStrategy: ReadStrategy;
+  expiryDate: string;
+  isReady: boolean;
+  isTagId: boolean;
+  apduCount: number;
+  skippedApdus: number;
+  timing: TimingReport;
+  // só com setRawRecordCapture(true) e setClearPanResults(true); contém o PAN em claro
+  records: RawRecord[];
+}
+
+function base64ToBytes(text: string): Uint8Array {
+  let length = (text.length * 3) >> 2;
+  if (text.endsWith('==')) {
+    length -= 2;
+  } else if (text.endsWith('=')) {
+    length -= 1;
+  }
+  const bytes = new Uint8Array(length);
+  for (let i = 0, o = 0; i < text.length; i += 4) {
+    const n =
+      (BASE64_VALUES[text.charCodeAt(i)] << 18) |
+      (BASE64_VALUES[text.charCodeAt(i + 1)] << 12) |
+      (BASE64_VALUES[text.charCodeAt(i + 2) & 0x7f] << 6) |
+      BASE64_VALUES[text.charCodeAt(i + 3) & 0x7f];
+    if (o < length) bytes[o++] = n >> 16;
+    if (o < length) bytes[o++] = (n >> 8) & 0xff;
+    if (o < length) bytes[o++] = n & 0xff;
+  }
+  return bytes;
+}
+
+const HEX = '0123456789ABCDEF';
+
+class FrameReader {
+  private offset = 0;
+  private readonly view: DataView;
+
+  constructor(private readonly bytes: Uint8Array) {
+    this.view = new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength);
+  }
+
+  u8(): number {
+    return this.view.getUint8(this.offset++);
+  }
+
+  u16(): number {
+    const value = this.view.getUint16(this.offset, true);
+    this.offset += 2;
+    return value;
+  }
+
+  i32(): number {
+    const value = this.view.getInt32(this.offset, true);
+    this.offset += 4;
+    return value;
+  }
+
+  // texto UTF-8 com o tamanho em bytes na frente
+  string(): string {
+    const length = this.u16();
+    const end = this.offset + length;
+    let text = '';
+    while (this.offset < end) {
+      const b = this.bytes[this.offset++];
+      if (b < 0x80) {
+        text += String.fromCharCode(b);
+      } else if (b < 0xe0) {
+        text += String.fromCharCode(((b & 0x1f) << 6) | (this.bytes[this.offset++] & 0x3f));
+      } else {
+        const b1 = this.bytes[this.offset++] & 0x3f;
+        const b2 = this.bytes[this.offset++] & 0x3f;
+        text += String.fromCharCode(((b & 0x0f) << 12) | (b1 << 6) | b2);
+      }
+    }
+    return text;
+  }
+
+  hex(length: number): string {
+    let text = '';
+    for (let i = 0; i < length; i++) {
+      const b = this.bytes[this.offset++];
+      text += HEX[b >> 4] + HEX[b & 0x0f];
+    }
+    return text;
+  }
+
+  buffer(length: number): ArrayBuffer {
+    const start = this.bytes.byteOffset + this.offset;
+    this.offset += length;
+    return this.bytes.buffer.slice(start, start + length) as ArrayBuffer;
+  }
+}
+
+// short quantidade e, para cada resposta, SFI, registro e os bytes com o tamanho na frente
+function readRecords(reader: FrameReader): RawRecord[] {
+  const records: RawRecord[] = [];
+  const recordCount = reader.u16();
+  for (let i = 0; i < recordCount; i++) {
+    const sfi = reader.u8();
+    const record = reader.u8();
+    records.push({ sfi, record, data: reader.buffer(reader.u16()) });
+  }
+  return records;
+}
+
+// Respostas brutas de um evento nfcReadProgress (ReadProgress.java), no mesmo formato do bloco
+export function decodeRawRecords(records: string): RawRecord[] {
+  return readRecords(new FrameReader(base64ToBytes(records)));
+}
+
+// µs do bloco para ms do relatório; -1 continua -1
+function millis(micros: number): number {
+  return micros < 0 ? -1 : micros / 1000;
+}
+
+export function decodeCardResult(frame: string): CardReadResult {
+  const reader = new FrameReader(base64ToBytes(frame));
+  if (reader.i32() !== MAGIC || reader.u8() !== VERSION) {
+    throw new Error('Resultado da leitura em formato desconhecido');
+  }
+  const flags = reader.u8();
+  const apduCount = reader.u16();
+  const skippedApdus = reader.u16();
+  const readStrategy = READ_STRATEGIES[reader.u8()];
+  const cardNumber = reader.string();
+  const expiryDate = reader.string();
+  const cardType = reader.string();
+  const cardProduct = reader.string();
+  const cardToken = reader.string();
+  const maskedPan = reader.string();
+  const bin = reader.string();
+
+  const timing: TimingReport = {
+    totalMs: millis(reader.i32()),
+    timeToFirstApduMs: millis(reader.i32()),
+    apduCount,
+    bytesOut: reader.i32(),
+    bytesIn: reader.i32(),
+    phases: {},
+    apdus: [],
+    applications: [],
+  };
+  const phaseCount = reader.u8();
+  for (let i = 0; i < phaseCount; i++) {
+    const micros = reader.i32();
+    if (micros > 0) {
+      timing.phases[PHASES[i]] = micros / 1000;
+    }
+  }
+  const apdus = reader.u8();
+  for (let i = 0; i < apdus; i++) {
+    const phase = PHASES[reader.u8()];
+    const ms = millis(reader.i32());
+    const bytesOut = reader.u16();
+    const bytesIn = reader.u16();
+    const sw = reader.i32();
+    timing.apdus.push({
+      phase,
+      ms,
+      bytesOut,
+      bytesIn,
+      sw: sw >= 0 ? sw.toString(16).toUpperCase().padStart(4, '0') : '',
+    });
+  }
+  const applications = reader.u8();
+  for (let i = 0; i < applications; i++) {
+    const aid = reader.hex(reader.u8());
+    const priority = reader.u8();
+    const result = APPLICATION_RESULTS[reader.u8()];
+    const brand = reader.string();
+    timing.applications.push({ aid, brand, priority, result });
+  }
+  const records = readRecords(reader);
+
+  return {
+    cardNumber,
+    cardToken,
+    maskedPan,
+    bin,
+    isTokenized: (flags & FLAG_TOKENIZED) !== 0,
+    cardType,
+    cardProduct,
+    readStrategy,
+    expiryDate,
+    isReady: (flags & FLAG_READY) !== 0,
+    isTagId: (flags & FLAG_TAG_ID) !== 0,
+    apduCount,
+    skippedApdus,
+    timing,
+    records,
+  };
+}
@@ -0,0 +1,93 @@
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+import type { EventEmitter } from 'react-native/Libraries/Types/CodegenTypes';
+
+// Especificação do módulo nativo para o codegen (TurboModule, nova arquitetura). O codegen
+// gera a classe Java NativeNfcReaderSpec, que o NfcReaderModule estende; os tipos aqui são
+// os que o codegen aceita, e o NfcReader.ts expõe os tipos mais estreitos para o app.
+
+export type StatusEvent = {
+  status: string;
+};
+
+export type ReadErrorEvent = {
+  status: string;
+  error: string;
+  reason?: string;
+  phase?: string;
+  timing?: Object;
+};
+
+export type ReadSuspendedEvent = {
+  status: string;
+  error: string;
+  graceMs: number;
+  timing: Object;
+};
+
+// dados da cobrança para o PDOL; ver TransactionContext.java
+export type TransactionContextSpec = {
+  amountMinor: number;
+  currencyCode: number;
+  countryCode: number;
+  transactionType: number;
+  timestampMillis: number;
+  ttq?: string | null;
+};
+
+// records: respostas brutas em base64, no formato de CardResultFrame.java
+export type ReadProgressEvent = {
+  status: string;
+  stage: string;
+  cardType?: string;
+  cardProduct?: string;
+  cardNumber?: string;
+  cardToken?: string;
+  maskedPan?: string;
+  bin?: string;
+  expiryDate?: string;
+  records?: string;
+};
+
+export interface Spec extends TurboModule {
+  isSupported(): Promise<boolean>;
+  isEnabled(): Promise<boolean>;
+  // resolve com o resultado da leitura codificado em base64 (ver CardResultFrame.java);
+  // vários pedidos ao mesmo tempo compartilham o toque
+  startCardReading(
+    fields: ReadonlyArray<string> | null,
+    deadlineMillis: number,
+    timeoutMillis: number,
+    requestId: number,
+  ): Promise<string>;
+  startReaderSession(fields: ReadonlyArray<string> | null, deadlineMillis: number): Promise<boolean>;
+  cancelCardReading(requestId: number): void;
+  stopCardReading(): void;
+  setTraceLevel(level: string): void;
+  setPreferredBrands(brands: ReadonlyArray<string>): void;
+  setTagLostRecovery(enabled: boolean, graceMillis: number): void;
+  setRawRecordCapture(enabled: boolean): void;
+  setClearPanResults(enabled: boolean): void;
+  setReadProgressEvents(maxEvents: number): void;
+  setPanTokenizationKey(keyBase64: string | null): Promise<boolean>;
+  setTransactionContext(context: TransactionContextSpec | null): Promise<boolean>;
+  getTraceLog(): Promise<string>;
+  getReaderStats(): Promise<Object>;
+  readSessionJournal(fromSequence: number, maxEntries: number): Promise<Object>;
+  clearSessionJournal(): Promise<boolean>;
+  setTranscriptCapture(enabled: boolean, maskPan: boolean): void;
+  getLastTranscript(): Promise<string | null>;
+  registerAids(aids: ReadonlyArray<Object>): Promise<number>;
+  loadAidRegistry(assetName: string): Promise<number>;
+
+  readonly nfcCardDetected: EventEmitter<StatusEvent>;
+  readonly nfcReadingStarted: EventEmitter<StatusEvent>;
+  readonly nfcReadingStopped: EventEmitter<StatusEvent>;
+  // mesmo bloco em base64 da promise de startCardReading
+  readonly onCardRead: EventEmitter<string>;
+  readonly nfcReadingError: EventEmitter<ReadErrorEvent>;
+  readonly nfcReadSuspended: EventEmitter<ReadSuspendedEvent>;
+  readonly nfcReadProgress: EventEmitter<ReadProgressEvent>;
+}
+
+export default TurboModuleRegistry.getEnforcing<Spec>('NfcReader');
@@ -1,11 +1,153 @@
-import { NativeModules, NativeEventEmitter, Platform } from 'react-native';
-
-// Interface para o módulo nativo
-interface NativeNfcReader {
-  isSupported(): Promise<boolean>;
-  isEnabled(): Promise<boolean>;
-  startCardReading(): Promise<any>;
-  stopCardReading(): void;
+import type { EventSubscription } from 'react-native';
+import NativeNfcReader from './NativeNfcReader';
+import { decodeCardResult, decodeRawRecords, type CardReadResult, type RawRecord } from './CardResultFrame';
+
+export type { CardReadResult, RawRecord } from './CardResultFrame';
+
+// Níveis do log de rastreamento da leitura nativa
+export type TraceLevel = 'OFF' | 'INFO' | 'DEBUG' | 'VERBOSE';
+
+// Onde o PAN costuma estar para a aplicação: Track 2 no GPO ou registros do AFL
+export type ReadStrategy = 'GPO_TRACK2' | 'READ_RECORDS';
+
+// AID (ou só o RID) em hexadecimal e a bandeira/produto que ela identifica
+export interface AidRegistration {
+  aid: string;
+  brand: string;
+  product: string;
+  strategy?: ReadStrategy;
+}
+
+// Campos do cartão que a leitura precisa obter antes de parar
+export type CardField = 'cardNumber' | 'expiryDate' | 'cardType';
+
+// Dados da cobrança enviados ao cartão no GET PROCESSING OPTIONS
+export interface TransactionContext {
+  // valor na moeda (ex. 12.34), enviado em centavos
+  amount: number;
+  // ISO 4217 numérico; padrão 986 (BRL)
+  currencyCode?: number;
+  // ISO 3166 numérico; padrão 76 (Brasil)
+  countryCode?: number;
+  // tag 9C: 0 compra (padrão), 9 compra com troco, 20 devolução
+  transactionType?: number;
+  // data e hora da transação; padrão o momento da chamada
+  date?: Date;
+  // Terminal Transaction Qualifiers em hexadecimal (8 dígitos); sem ele vale o padrão nativo
+  ttq?: string;
+}
+
+// Opções de um pedido de leitura; cada chamador de startScan tem as suas
+export interface ScanOptions {
+  // quanto este pedido espera por um cartão; esgotado, só ele falha com READ_TIMEOUT
+  timeoutMs?: number;
+  // abortado, retira só este pedido (READ_CANCELLED) e os demais continuam aguardando
+  signal?: AbortSignal;
+}
+
+// Fases medidas em cada leitura
+export type ReaderPhase =
+  | 'DETECTION'
+  | 'CONNECT'
+  | 'SELECT_PPSE'
+  | 'SELECT_AID'
+  | 'GPO'
+  | 'READ_RECORD';
+
+// Relatório de tempos de uma leitura (um toque do cartão)
+export interface TimingReport {
+  totalMs: number;
+  // do callback da tag até o envio do primeiro APDU
+  timeToFirstApduMs: number;
+  apduCount: number;
+  bytesOut: number;
+  bytesIn: number;
+  phases: Partial<Record<ReaderPhase, number>>;
+  apdus: {
+    phase: ReaderPhase;
+    ms: number;
+    bytesOut: number;
+    bytesIn: number;
+    sw: string;
+  }[];
+  // aplicações do PPSE na ordem em que foram tentadas
+  applications: {
+    aid: string;
+    brand: string;
+    // Application Priority Indicator (tag 87), 0 sem prioridade
+    priority: number;
+    result: ApplicationResult;
+  }[];
+}
+
+// Resultado da tentativa de leitura de cada aplicação do cartão
+export type ApplicationResult =
+  | 'NOT_TRIED'
+  | 'SELECT_FAILED'
+  | 'GPO_FAILED'
+  | 'NO_DATA'
+  | 'PARTIAL'
+  | 'SUCCESS';
+
+// Percentis em ms; -1 quando a fase ainda não ocorreu
+export interface PhasePercentiles {
+  count: number;
+  p50Ms: number;
+  p95Ms: number;
+  p99Ms: number;
+}
+
+// Estatísticas acumuladas desde que o módulo nativo foi criado
+export interface ReaderStats {
+  sessions: number;
+  successes: number;
+  successRate: number;
+  retries: number;
+  apduCount: number;
+  bytesOut: number;
+  bytesIn: number;
+  phases: Record<ReaderPhase, PhasePercentiles>;
+  total: PhasePercentiles;
+  timeToFirstApdu: PhasePercentiles;
+  // perfis aprendidos: registro do PAN lido primeiro para emissores já vistos
+  profileCache: {
+    size: number;
+    lookups: number;
+    hits: number;
+    misses: number;
+    hitRate: number;
+    recordsSaved: number;
+  };
+  // timeout atual de cada comando, aprendido com a latência observada
+  commandTimeouts: Partial<Record<ReaderPhase, {
+    timeoutMs: number;
+    typicalMs: number;
+    samples: number;
+  }>>;
+}
+
+// Entrada do diário persistente de sessões (nunca contém PAN nem data de expiração)
+export interface JournalEntry {
+  sequence: number;
+  // início da sessão, ms desde a época
+  startedAt: number;
+  outcome: 'success' | 'incomplete' | 'error' | 'suspended' | 'timeout' | 'cancelled';
+  // fluxo da resposta do GPO; vazio quando não houve GPO
+  flow: 'track2' | 'format1' | 'format2' | '';
+  aid: string;
+  // status word da última resposta do cartão
+  sw: string;
+  apduCount: number;
+  bytesOut: number;
+  bytesIn: number;
+  totalMs: number;
+  timeToFirstApduMs: number;
+  phases: Partial<Record<ReaderPhase, number>>;
+}
+
+interface JournalPage {
+  entries: JournalEntry[];
+  nextSequence: number;
 }
 
 // Interface para eventos do cartão
@@ -13,25 +155,80 @@ interface CardDetectedEvent {
   status: string;
 }
 
-interface CardReadEvent {
-  cardNumber: string;
-  cardType: string;
-  expiryDate: string;
-  isReady: boolean;
-  isTagId: boolean;
+// Leitura concluída: o mesmo resultado da promise de startScan
+type CardReadEvent = CardReadResult;
+
+// Cartão saiu do campo depois do GPO; reaproximá-lo em graceMs continua a leitura
+interface ReadSuspendedEvent {
+  status: 'suspended';
+  error: string;
+  graceMs: number;
+  timing: TimingReport;
+}
+
+export type ReadProgressStage = 'APPLICATION' | 'CARD_DATA' | 'RECORDS';
+
+// Dados do cartão antes do fim da leitura: cada evento traz tudo o que já se sabe do cartão
+// e as respostas brutas lidas desde o evento anterior (só com setRawRecordCapture)
+export interface ReadProgressEvent {
+  stage: ReadProgressStage;
+  cardType?: string;
+  cardProduct?: string;
+  // por padrão vem cardToken, maskedPan e bin; cardNumber só com setClearPanResults(true)
+  cardNumber?: string;
+  cardToken?: string;
+  maskedPan?: string;
+  bin?: string;
+  // ausente enquanto a validade não foi encontrada
+  expiryDate?: string;
+  records: RawRecord[];
 }
 
 interface ErrorEvent {
   status: string;
   error: string;
+  // só em READ_TIMEOUT: prazo da leitura esgotado ou comando sem resposta, e em qual fase
+  reason?: 'deadline' | 'commandTimeout';
+  phase?: ReaderPhase;
+  timing?: TimingReport;
 }
 
-// Obtenha a referência ao módulo nativo
-const NativeNfcReader = NativeModules.NfcReader as NativeNfcReader;
-const eventEmitter = new NativeEventEmitter(NativeModules.NfcReader);
+// Eventos do módulo nativo (emissores tipados da spec do TurboModule)
+type NativeEvent =
+  | 'nfcCardDetected'
+  | 'onCardRead'
+  | 'nfcReadingError'
+  | 'nfcReadSuspended'
+  | 'nfcReadProgress'
+  | 'nfcReadingStarted'
+  | 'nfcReadingStopped';
+
+// identifica cada pedido de startScan no nativo, para cancelCardReading
+let nextRequestId = 1;
+
+// O evento onCardRead e as promises de startScan trazem o mesmo bloco; decodifica uma vez só
+let lastFrame: string | null = null;
+let lastResult: CardReadResult | null = null;
+
+function decodeFrame(frame: string): CardReadResult {
+  if (frame !== lastFrame) {
+    lastResult = decodeCardResult(frame);
+    lastFrame = frame;
+  }
+  return lastResult!;
+}
 
 // Classe do serviço NFC
 class NfcReaderService {
+  private subscriptions = new Map<NativeEvent, EventSubscription[]>();
+
+  private track(event: NativeEvent, subscription: EventSubscription): EventSubscription {
+    const list = this.subscriptions.get(event) ?? [];
+    list.push(subscription);
+    this.subscriptions.set(event, list);
+    return subscription;
+  }
+
   /**
    * Verifica se o dispositivo possui suporte a NFC
    */
@@ -57,23 +254,56 @@ class NfcReaderService {
   }
 
   /**
-   * Inicia o processo de leitura do cartão NFC
+   * Inicia o processo de leitura do cartão NFC.
+   * fields define os campos necessários; sem ele são lidos número e validade.
+   * deadlineMs é o prazo de cada toque desde a detecção do cartão; esgotado, a leitura
+   * falha com READ_TIMEOUT. Sem ele vale só o timeout de cada comando.
+   * Chamadas simultâneas (de telas diferentes, por exemplo) não se rejeitam: todas aguardam o
+   * mesmo toque, o cartão é lido uma vez para a união dos campos pedidos e cada promise resolve
+   * com o mesmo resultado
    */
-  async startScan(): Promise<any> {
+  async startScan(fields?: CardField[], deadlineMs?: number, options?: ScanOptions): Promise<CardReadResult> {
+    const requestId = nextRequestId++;
+    const signal = options?.signal;
+    const cancel = () => NativeNfcReader.cancelCardReading(requestId);
     try {
       console.log('[NfcReader] Iniciando startScan() - versão depuração');
-      console.log('[NfcReader] Configurando listeners de eventos');
+      if (signal?.aborted) {
+        throw Object.assign(new Error('Leitura cancelada'), { code: 'READ_CANCELLED' });
+      }
+      signal?.addEventListener('abort', cancel);
       console.log('[NfcReader] Chamando método nativo startCardReading()');
       
-      return await NativeNfcReader.startCardReading();
+      return decodeFrame(
+        await NativeNfcReader.startCardReading(fields ?? null, deadlineMs ?? 0, options?.timeoutMs ?? 0, requestId),
+      );
     } catch (error) {
       console.error('[NfcReader] Erro ao iniciar leitura do cartão:', error);
       throw error;
+    } finally {
+      signal?.removeEventListener('abort', cancel);
     }
   }
 
   /**
-   * Para o processo de leitura do cartão NFC
+   * Inicia uma sessão contínua para vários cartões em sequência. O leitor fica ativo entre
+   * os toques e cada cartão chega pelos eventos onCardRead / nfcReadingError; a sessão
+   * termina com stopScan() ou quando o app vai para segundo plano
+   */
+  async startSession(fields?: CardField[], deadlineMs?: number): Promise<boolean> {
+    try {
+      console.log('[NfcReader] Iniciando sessão contínua de leitura');
+      return await NativeNfcReader.startReaderSession(fields ?? null, deadlineMs ?? 0);
+    } catch (error) {
+      console.error('[NfcReader] Erro ao iniciar sessão de leitura:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Para o processo de leitura do cartão NFC (leitura única ou sessão). Um cartão sendo lido
+   * deixa de receber comandos e todas as promises de startScan pendentes, de qualquer chamador,
+   * são rejeitadas com READ_CANCELLED; para retirar só um pedido, use o signal de startScan
    */
   stopScan(): void {
     try {
@@ -84,78 +314,253 @@ class NfcReaderService {
     }
   }
 
+  /**
+   * Define o nível do log de rastreamento nativo (OFF desativa e não tem custo)
+   */
+  setTraceLevel(level: TraceLevel): void {
+    NativeNfcReader.setTraceLevel(level);
+  }
+
+  /**
+   * Liga a retomada da leitura quando o cartão sai do campo no meio dos registros:
+   * reaproximado em até graceMillis, a leitura continua sem repetir o GPO
+   */
+  setTagLostRecovery(enabled: boolean, graceMillis = 5000): void {
+    NativeNfcReader.setTagLostRecovery(enabled, graceMillis);
+  }
+
+  /**
+   * Define as bandeiras tentadas primeiro em cartões com várias aplicações
+   * (ex.: ['Elo', 'Visa']); as demais seguem a prioridade do cartão
+   */
+  setPreferredBrands(brands: string[]): void {
+    NativeNfcReader.setPreferredBrands(brands);
+  }
+
+  /**
+   * Inclui no resultado as respostas brutas (TLV) do GPO e dos registros lidos, como
+   * ArrayBuffer em records. Elas contêm o PAN em claro, por isso só são enviadas com
+   * setClearPanResults(true)
+   */
+  setRawRecordCapture(enabled: boolean): void {
+    NativeNfcReader.setRawRecordCapture(enabled);
+  }
+
+  /**
+   * Opt-in para receber o número do cartão em claro no resultado e nos eventos. Por padrão o
+   * PAN não chega ao JS: vêm cardToken, maskedPan e bin
+   */
+  setClearPanResults(enabled: boolean): void {
+    NativeNfcReader.setClearPanResults(enabled);
+  }
+
+  /**
+   * Define a chave HMAC (base64, 16 bytes ou mais) usada no cardToken, para que o mesmo
+   * cartão dê o mesmo token entre execuções; null volta à chave aleatória do processo, cujos
+   * tokens só valem até o app fechar. Retorna true se a chave do app ficou em uso
+   */
+  async setPanTokenizationKey(keyBase64: string | null): Promise<boolean> {
+    return NativeNfcReader.setPanTokenizationKey(keyBase64);
+  }
+
+  /**
+   * Define os dados da cobrança (valor, moeda, país, tipo, data/hora e TTQ) enviados ao cartão
+   * no GPO. O nativo converte tudo em bytes nesta chamada, antes do toque; chame uma vez por
+   * cobrança, antes de startScan. null volta aos valores padrão. Rejeita com
+   * INVALID_TRANSACTION_CONTEXT quando algum campo não cabe no formato do EMV
+   */
+  async setTransactionContext(context: TransactionContext | null): Promise<boolean> {
+    if (!context) {
+      return NativeNfcReader.setTransactionContext(null);
+    }
+    return NativeNfcReader.setTransactionContext({
+      amountMinor: Math.round(context.amount * 100),
+      currencyCode: context.currencyCode ?? 986,
+      countryCode: context.countryCode ?? 76,
+      transactionType: context.transactionType ?? 0,
+      timestampMillis: (context.date ?? new Date()).getTime(),
+      ttq: context.ttq ?? null,
+    });
+  }
+
+  /**
+   * Liga os eventos de progresso (addReadProgressListener) com no máximo maxEvents por
+   * cartão lido: bandeira, PAN e registros chegam agrupados, sem passar desse limite.
+   * 0 desliga; o padrão nativo é desligado
+   */
+  setReadProgressEvents(maxEvents: number): void {
+    NativeNfcReader.setReadProgressEvents(maxEvents);
+  }
+
+  /**
+   * Obtém o log de rastreamento da última leitura
+   */
+  async getTraceLog(): Promise<string> {
+    try {
+      return await NativeNfcReader.getTraceLog();
+    } catch (error) {
+      console.error('[NfcReader] Erro ao obter log de rastreamento:', error);
+      return '';
+    }
+  }
+
+  /**
+   * Obtém as estatísticas acumuladas de leitura (percentis por fase, taxa de sucesso, novas tentativas)
+   */
+  async getReaderStats(): Promise<ReaderStats | null> {
+    try {
+      return (await NativeNfcReader.getReaderStats()) as ReaderStats;
+    } catch (error) {
+      console.error('[NfcReader] Erro ao obter estatísticas de leitura:', error);
+      return null;
+    }
+  }
+
+  /**
+   * Percorre o diário de sessões gravado no aparelho, da entrada mais antiga para a mais
+   * nova, buscando pageSize entradas por vez no módulo nativo
+   */
+  async *readSessionJournal(fromSequence = 0, pageSize = 100): AsyncGenerator<JournalEntry> {
+    let next = fromSequence;
+    while (true) {
+      const page = (await NativeNfcReader.readSessionJournal(next, pageSize)) as JournalPage;
+      if (page.entries.length === 0) {
+        return;
+      }
+      yield* page.entries;
+      next = page.nextSequence;
+    }
+  }
+
+  /**
+   * Apaga o diário de sessões
+   */
+  async clearSessionJournal(): Promise<boolean> {
+    try {
+      return await NativeNfcReader.clearSessionJournal();
+    } catch (error) {
+      console.error('[NfcReader] Erro ao apagar o diário de sessões:', error);
+      return false;
+    }
+  }
+
+  /**
+   * Liga a captura dos APDUs de cada leitura, para reproduzir em JVM com ReplayTransport.
+   * maskPan (padrão) troca por 0 os dígitos do PAN, exceto os 6 primeiros e os 4 últimos
+   */
+  setTranscriptCapture(enabled: boolean, maskPan = true): void {
+    NativeNfcReader.setTranscriptCapture(enabled, maskPan);
+  }
+
+  /**
+   * Obtém o transcript binário da última leitura capturada, em base64
+   */
+  async getLastTranscript(): Promise<string | null> {
+    try {
+      return await NativeNfcReader.getLastTranscript();
+    } catch (error) {
+      console.error('[NfcReader] Erro ao obter transcript da leitura:', error);
+      return null;
+    }
+  }
+
+  /**
+   * Registra AIDs adicionais (ou substitui as existentes) no registro de bandeiras nativo.
+   * Retorna a quantidade de entradas do registro
+   */
+  async registerAids(aids: AidRegistration[]): Promise<number> {
+    return NativeNfcReader.registerAids(aids);
+  }
+
+  /**
+   * Carrega AIDs de um arquivo em assets (AID;bandeira;produto;estratégia por linha).
+   * Retorna a quantidade de entradas carregadas
+   */
+  async loadAidRegistry(assetName: string): Promise<number> {
+    return NativeNfcReader.loadAidRegistry(assetName);
+  }
+
   /**
    * Adiciona listener para evento de detecção de cartão
    */
   addCardDetectedListener(callback: (event: CardDetectedEvent) => void) {
-    console.log('[NfcReader] Adicionando listener para nfcCardDetected');
-    const subscription = eventEmitter.addListener('nfcCardDetected', (event) => {
-      console.log('[NfcReader] Cartão NFC detectado:', event);
-      callback(event);
-    });
-    return subscription;
+    return this.track('nfcCardDetected', NativeNfcReader.nfcCardDetected(callback));
   }
 
   /**
    * Adiciona listener para evento de leitura bem-sucedida do cartão
    */
   addCardReadListener(callback: (event: CardReadEvent) => void) {
-    console.log('[NfcReader] Adicionando listener para onCardRead');
-    const subscription = eventEmitter.addListener('onCardRead', (event) => {
-      console.log('[NfcReader] Dados do cartão recebidos:', event);
-      callback(event);
-    });
-    return subscription;
+    return this.track('onCardRead', NativeNfcReader.onCardRead((frame) => callback(decodeFrame(frame))));
+  }
+
+  /**
+   * Adiciona listener para os dados do cartão encontrados durante a leitura, antes do
+   * onCardRead (ver setReadProgressEvents)
+   */
+  addReadProgressListener(callback: (event: ReadProgressEvent) => void) {
+    return this.track(
+      'nfcReadProgress',
+      NativeNfcReader.nfcReadProgress((event) =>
+        callback({
+          stage: event.stage as ReadProgressStage,
+          cardType: event.cardType,
+          cardProduct: event.cardProduct,
+          cardNumber: event.cardNumber,
+          cardToken: event.cardToken,
+          maskedPan: event.maskedPan,
+          bin: event.bin,
+          expiryDate: event.expiryDate,
+          records: event.records ? decodeRawRecords(event.records) : [],
+        }),
+      ),
+    );
   }
 
   /**
    * Adiciona listener para erros na leitura do cartão
    */
   addErrorListener(callback: (event: ErrorEvent) => void) {
-    console.log('[NfcReader] Adicionando listener para nfcReadingError');
-    const subscription = eventEmitter.addListener('nfcReadingError', (event) => {
-      console.log('[NfcReader] Erro na leitura NFC:', event);
-      callback(event);
-    });
-    return subscription;
+    return this.track(
+      'nfcReadingError',
+      NativeNfcReader.nfcReadingError((event) => {
+        console.log('[NfcReader] Erro na leitura NFC:', event.error);
+        callback(event as ErrorEvent);
+      }),
+    );
+  }
+
+  /**
+   * Adiciona listener para a leitura suspensa pela perda do cartão
+   */
+  addReadSuspendedListener(callback: (event: ReadSuspendedEvent) => void) {
+    return this.track(
+      'nfcReadSuspended',
+      NativeNfcReader.nfcReadSuspended((event) => callback(event as ReadSuspendedEvent)),
+    );
   }
 
   /**
    * Adiciona listener para evento de início da leitura NFC
    */
   addReadingStartedListener(callback: (event: any) => void) {
-    console.log('[NfcReader] Adicionando listener para nfcReadingStarted');
-    const subscription = eventEmitter.addListener('nfcReadingStarted', (event) => {
-      console.log('[NfcReader] Leitura NFC iniciada:', event);
-      callback(event);
-    });
-    return subscription;
+    return this.track('nfcReadingStarted', NativeNfcReader.nfcReadingStarted(callback));
   }
 
   /**
    * Adiciona listener para evento de interrupção da leitura NFC
    */
   addReadingStoppedListener(callback: (event: any) => void) {
-    console.log('[NfcReader] Adicionando listener para nfcReadingStopped');
-    const subscription = eventEmitter.addListener('nfcReadingStopped', (event) => {
-      console.log('[NfcReader] Evento nfcReadingStopped recebido:', event);
-      console.log('[NfcReader] Limpando listeners');
-      callback(event);
-    });
-    return subscription;
+    return this.track('nfcReadingStopped', NativeNfcReader.nfcReadingStopped(callback));
   }
-  
+
   /**
    * Remove todos os listeners de eventos
    */
   removeAllListeners() {
     console.log('[NfcReader] Removendo todos os listeners');
-    
-    eventEmitter.removeAllListeners('nfcCardDetected');
-    eventEmitter.removeAllListeners('onCardRead');
-    eventEmitter.removeAllListeners('nfcReadingError');
-    eventEmitter.removeAllListeners('nfcReadingStarted');
-    eventEmitter.removeAllListeners('nfcReadingStopped');
+    this.subscriptions.forEach((list) => list.forEach((subscription) => subscription.remove()));
+    this.subscriptions.clear();
   }
 }
 
@@ -1,17 +1,35 @@
 import { useEffect, useState, useCallback, useRef } from 'react';
 import { Alert, Platform } from 'react-native';
-import { NfcReader } from '../app/services/NfcReader';
+import { NfcReader, type TransactionContext } from '../app/services/NfcReader';
 import { PaymentToken, generatePaymentToken, verifyPaymentToken, decodePaymentToken } from '../utils/tokenization';
 
 // Tipos de dados
 type CardData = {
+  // vazio por padrão (a tokenização nativa fica sempre ligada); valem cardToken, maskedPan e bin
   cardNumber: string;
+  cardToken: string;
+  maskedPan: string;
+  bin: string;
   cardType: string;
   expiryDate: string;
   isReady: boolean;
   isTagId: boolean;
 };
 
+// Dados que chegam durante a leitura, antes do cardData: a bandeira logo após a seleção
+// da aplicação, depois o PAN e a validade
+export type PartialCardData = {
+  cardType: string;
+  cardProduct: string;
+  cardNumber: string;
+  maskedPan: string;
+  bin: string;
+  expiryDate: string;
+};
+
+// eventos de progresso por cartão: bandeira, PAN e, no máximo, um lote de registros
+const READ_PROGRESS_EVENTS = 3;
+
 export type NFCStatus = 'idle' | 'waiting' | 'reading' | 'detected' | 'error' | 'success' | 'cancelled';
 
 // Interface para dados do cobrador
@@ -59,12 +77,15 @@ export const useNFC = () => {
   const [status, setStatus] = useState<NFCStatus>('idle');
   const [error, setError] = useState<string | null>(null);
   const [cardData, setCardData] = useState<CardData | null>(null);
+  const [partialCard, setPartialCard] = useState<PartialCardData | null>(null);
   const [paymentToken, setPaymentToken] = useState<PaymentToken | null>(null);
   const [transactionResult, setTransactionResult] = useState<TransactionResult | null>(null);
   const [tokenDebugInfo, setTokenDebugInfo] = useState<TokenDebugInfo>({ tokenCreated: false });
   
   // Ref para rastrear se o componente está montado
   const isMounted = useRef(true);
+  // pedido de leitura deste hook; abortá-lo não interrompe os pedidos de outras telas
+  const readAbort = useRef<AbortController | null>(null);
   
   // Verificar suporte a NFC
   useEffect(() => {
@@ -91,6 +112,7 @@ export const useNFC = () => {
     
     return () => {
       isMounted.current = false;
+      readAbort.current?.abort();
     };
   }, []);
   
@@ -163,8 +185,8 @@ export const useNFC = () => {
     }
   }, []);
   
-  // Função para iniciar a leitura do cartão com token
-  const startCardReading = useCallback(async (tokenizedData?: string) => {
+  // Função para iniciar a leitura do cartão com token; transaction leva o valor da cobrança ao GPO
+  const startCardReading = useCallback(async (tokenizedData?: string, transaction?: TransactionContext) => {
     if (!isSupported) {
       setError('NFC não é suportado neste dispositivo');
       return;
@@ -174,6 +196,7 @@ export const useNFC = () => {
       setStatus('reading');
       setError(null);
       setCardData(null);
+      setPartialCard(null);
       
       console.log('[NFCDebug] Iniciando leitura do cartão...');
       
@@ -188,12 +211,24 @@ export const useNFC = () => {
         console.log('[NFCDebug] Preparando terminal com dados do token');
       }
       
+      if (transaction) {
+        // montado no nativo antes do toque; no GPO só é copiado
+        await NfcReader.setTransactionContext(transaction);
+      }
+      
       console.log('[NFCDebug] Chamando NfcReader.startScan()');
-      const result = await NfcReader.startScan();
+      readAbort.current?.abort();
+      const controller = new AbortController();
+      readAbort.current = controller;
+      const result = await NfcReader.startScan(undefined, undefined, { signal: controller.signal });
       console.log('[NFCDebug] Resultado da inicialização da leitura:', result);
       
       // O resultado real será processado pelos listeners de eventos
     } catch (error: any) {
+      // stopCardReading (ou um novo startCardReading) já cuidou do estado
+      if (error?.code === 'READ_CANCELLED') {
+        return;
+      }
       console.error('[NFCDebug] Erro ao iniciar leitura do cartão:', error);
       setStatus('error');
       setError(error?.message || 'Erro ao iniciar leitura do cartão');
@@ -204,7 +239,9 @@ export const useNFC = () => {
   const stopCardReading = useCallback(() => {
     try {
       console.log('[NFCDebug] Parando leitura NFC');
-      NfcReader.stopScan();
+      // retira só o pedido deste hook; sem outros pedidos o nativo desliga o leitor
+      readAbort.current?.abort();
+      readAbort.current = null;
       
       // Atualizamos o status para cancelled
       setStatus('cancelled');
@@ -215,13 +252,13 @@ export const useNFC = () => {
   }, []);
   
   // Função para processar pagamento com dados tokenizados
-  const processPaymentWithToken = useCallback(async (tokenData: string) => {
+  const processPaymentWithToken = useCallback(async (tokenData: string, transaction?: TransactionContext) => {
     try {
       setStatus('waiting');
       console.log('[NFCDebug] Processando pagamento com token');
       
       // Iniciar a leitura do cartão com o token
-      await startCardReading(tokenData);
+      await startCardReading(tokenData, transaction);
       
       // A partir daqui, os listeners de NFC assumem o controle
       // e atualizarão o status conforme o andamento
@@ -240,6 +277,7 @@ export const useNFC = () => {
     setStatus('idle');
     setError(null);
     setCardData(null);
+    setPartialCard(null);
     setPaymentToken(null);
     setTransactionResult(null);
     setTokenDebugInfo({ tokenCreated: false });
@@ -259,12 +297,32 @@ export const useNFC = () => {
       }
     });
     
+    // Listener para os dados que chegam durante a leitura; com a bandeira em mãos a tela
+    // já pode preparar o que depende dela sem esperar o último registro
+    NfcReader.setReadProgressEvents(READ_PROGRESS_EVENTS);
+    const readProgressSubscription = NfcReader.addReadProgressListener((event) => {
+      console.log('[NFCDebug] Progresso da leitura:', event.stage, event.cardType);
+      if (isMounted.current) {
+        setPartialCard({
+          cardType: event.cardType || '',
+          cardProduct: event.cardProduct || '',
+          cardNumber: event.cardNumber || '',
+          maskedPan: event.maskedPan || '',
+          bin: event.bin || '',
+          expiryDate: event.expiryDate || ''
+        });
+      }
+    });
+    
     // Listener para a leitura bem-sucedida do cartão
     const cardReadSubscription = NfcReader.addCardReadListener((data) => {
       console.log('[NFCDebug] Cartão lido com sucesso:', data);
       if (isMounted.current) {
         setCardData({
           cardNumber: data.cardNumber || '',
+          cardToken: data.cardToken || '',
+          maskedPan: data.maskedPan || '',
+          bin: data.bin || '',
           cardType: data.cardType || '',
           expiryDate: data.expiryDate || '',
           isReady: !!data.isReady,
@@ -323,6 +381,7 @@ export const useNFC = () => {
     return () => {
       console.log('[NFCDebug] Removendo listeners de eventos');
       cardDetectedSubscription.remove();
+      readProgressSubscription.remove();
       cardReadSubscription.remove();
       errorSubscription.remove();
       readingStartedSubscription.remove();
@@ -335,6 +394,7 @@ export const useNFC = () => {
     status,
     error,
     cardData,
+    partialCard,
     transactionResult,
     tokenDebugInfo,
     createPaymentToken,